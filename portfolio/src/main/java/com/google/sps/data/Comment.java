@@ -20,19 +20,35 @@ public final class Comment {
   private final long id;
   private String name;
   private String message;
-  private final String timestamp;
+  private final long timestamp;
 
   /** Makes a new comment.
    * @param id - unique id for each comment
    * @param name - name of individual writing comment
    * @param message - the comment's text message
-   * @param timestamp - the time the comment was made
+   * @param timestamp - the time the comment was made, in milliseconds since the epoch
    * @return a comment item
    */
-  public Comment(long id, String name, String message, String timestamp) {
+  public Comment(long id, String name, String message, long timestamp) {
     this.id = id;
     this.name = name;
     this.message = message;
     this.timestamp = timestamp;
   }
+
+  public long getId() {
+    return id;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public String getMessage() {
+    return message;
+  }
+
+  public long getTimestamp() {
+    return timestamp;
+  }
 }
@@ -0,0 +1,193 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import com.google.appengine.api.datastore.DatastoreService;
+import com.google.appengine.api.datastore.DatastoreServiceFactory;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.EntityNotFoundException;
+import com.google.appengine.api.datastore.KeyFactory;
+import com.google.appengine.api.datastore.Transaction;
+import java.util.ConcurrentModificationException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * In-process cache of the serialized comment pages served by {@code DataServlet}.
+ *
+ * <p>Every write to the comments bumps a version number stored in Datastore. Each instance
+ * re-reads that version at most once every {@code MAX_STALENESS_MS}, and cache keys include the
+ * version, so a write made on one App Engine instance is seen by all the others within that window.
+ * When comments are not stored in Datastore, each instance has its own comments and the version is
+ * only kept in memory.
+ */
+public final class CommentCache {
+
+  // How long an instance may serve pages without checking for writes made by other instances.
+  public static final long MAX_STALENESS_MS = 5000;
+
+  // Number of pages to keep. Older pages are evicted first.
+  private static final int MAX_ENTRIES = 256;
+
+  private static final String VERSION_KIND = "CommentVersion";
+  private static final String VERSION_NAME = "comments";
+  private static final int MAX_INVALIDATE_ATTEMPTS = 3;
+
+  private static final CommentCache INSTANCE = new CommentCache();
+
+  private final Map<String, String> pages = new LinkedHashMap<String, String>(16, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+      return size() > MAX_ENTRIES;
+    }
+  };
+
+  // Whether other instances write the same comments, so the version has to live in Datastore.
+  private final boolean shared =
+      CommentRepository.getInstance() instanceof DatastoreCommentRepository;
+
+  private volatile long version = -1;
+  private volatile long versionCheckedAt = 0;
+
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  private final AtomicLong invalidations = new AtomicLong();
+
+  private CommentCache() {}
+
+  /** Returns the cache shared by all servlets in this instance. */
+  public static CommentCache getInstance() {
+    return INSTANCE;
+  }
+
+  /**
+   * Returns the cached JSON for a page, or computes it with {@code loader} and caches it.
+   * @param pageKey - identifies the page, e.g. its size and the token it starts at
+   * @param loader - builds the page JSON from Datastore on a miss
+   */
+  public String get(String pageKey, Supplier<String> loader) {
+    String key = currentVersion() + ":" + pageKey;
+
+    String json;
+    synchronized (pages) {
+      json = pages.get(key);
+    }
+    if (json != null) {
+      hits.incrementAndGet();
+      return json;
+    }
+
+    misses.incrementAndGet();
+    json = loader.get();
+    synchronized (pages) {
+      pages.put(key, json);
+    }
+    return json;
+  }
+
+  /**
+   * Drops every cached page and tells the other instances to do the same. Call this after any
+   * comment is added or removed.
+   */
+  public void invalidate() {
+    invalidations.incrementAndGet();
+    synchronized (pages) {
+      pages.clear();
+      if (!shared) {
+        version++;
+        return;
+      }
+    }
+
+    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+    for (int attempt = 1; attempt <= MAX_INVALIDATE_ATTEMPTS; attempt++) {
+      Transaction transaction = datastore.beginTransaction();
+      try {
+        long next = readVersion(datastore, transaction) + 1;
+        Entity entity = new Entity(VERSION_KIND, VERSION_NAME);
+        entity.setUnindexedProperty("version", next);
+        datastore.put(transaction, entity);
+        transaction.commit();
+
+        version = next;
+        versionCheckedAt = System.currentTimeMillis();
+        return;
+      } catch (ConcurrentModificationException e) {
+        // Another instance bumped the version at the same time. Try again.
+      } finally {
+        if (transaction.isActive()) {
+          transaction.rollback();
+        }
+      }
+    }
+
+    // Other instances still pick up our write once the version changes again. Make sure this
+    // instance re-reads the version on its next request.
+    System.out.println("Warning! Could not bump the comment cache version.");
+    versionCheckedAt = 0;
+  }
+
+  /**
+   * Returns the current version of the comments, which changes whenever one is added or removed.
+   * It may lag writes made on other instances by up to {@code MAX_STALENESS_MS}.
+   */
+  public long getVersion() {
+    return currentVersion();
+  }
+
+  /** Returns hit, miss and invalidation counts plus the current size, for monitoring. */
+  public Map<String, Long> getStats() {
+    Map<String, Long> stats = new LinkedHashMap<>();
+    stats.put("hits", hits.get());
+    stats.put("misses", misses.get());
+    stats.put("invalidations", invalidations.get());
+    synchronized (pages) {
+      stats.put("entries", (long) pages.size());
+    }
+    stats.put("version", version);
+    return stats;
+  }
+
+  /** Returns the version to cache under, re-reading it from Datastore if it may be stale. */
+  private long currentVersion() {
+    if (!shared) {
+      return version;
+    }
+    long now = System.currentTimeMillis();
+    if (now - versionCheckedAt >= MAX_STALENESS_MS) {
+      long latest = readVersion(DatastoreServiceFactory.getDatastoreService(), null);
+      if (latest != version) {
+        // Pages cached under the old version can never be hit again.
+        synchronized (pages) {
+          pages.clear();
+        }
+        version = latest;
+      }
+      versionCheckedAt = now;
+    }
+    return version;
+  }
+
+  private static long readVersion(DatastoreService datastore, Transaction transaction) {
+    try {
+      Entity entity = datastore.get(transaction, KeyFactory.createKey(VERSION_KIND, VERSION_NAME));
+      return (long) entity.getProperty("version");
+    } catch (EntityNotFoundException e) {
+      return 0;
+    }
+  }
+}
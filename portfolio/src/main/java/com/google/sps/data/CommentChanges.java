@@ -0,0 +1,62 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import java.util.Collection;
+
+/**
+ * Keeps everything derived from the comments (the page cache, the precomputed feed, the search
+ * index and the open event streams) in step with the {@link CommentRepository}. Call these right
+ * after comments are written or deleted.
+ */
+public final class CommentChanges {
+
+  private CommentChanges() {}
+
+  /** Call with the comments returned by {@link CommentRepository#addAll}, so that they have ids. */
+  public static void added(Collection<Comment> comments) {
+    CommentSearchIndex index = CommentSearchIndex.getInstance();
+    for (Comment comment : comments) {
+      index.add(comment.getId(), comment.getName(), comment.getMessage(), comment.getTimestamp());
+    }
+    CommentCache.getInstance().invalidate();
+    CommentFeed.getInstance().changed();
+    CommentEvents.getInstance().added(comments);
+  }
+
+  /**
+   * Call after existing comments have been rewritten, with their new contents. Open event streams
+   * aren't told, since no comment was added or removed.
+   */
+  public static void changed(Collection<Comment> comments) {
+    CommentSearchIndex index = CommentSearchIndex.getInstance();
+    for (Comment comment : comments) {
+      index.add(comment.getId(), comment.getName(), comment.getMessage(), comment.getTimestamp());
+    }
+    CommentCache.getInstance().invalidate();
+    CommentFeed.getInstance().changed();
+  }
+
+  /** Call after comments have been deleted. */
+  public static void removed(Collection<Long> ids) {
+    CommentSearchIndex index = CommentSearchIndex.getInstance();
+    for (long id : ids) {
+      index.remove(id);
+    }
+    CommentCache.getInstance().invalidate();
+    CommentFeed.getInstance().changed();
+    CommentEvents.getInstance().removed(ids);
+  }
+}
@@ -0,0 +1,84 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import com.google.appengine.api.datastore.DatastoreService;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.EntityNotFoundException;
+import com.google.appengine.api.datastore.Key;
+import com.google.appengine.api.datastore.KeyFactory;
+import com.google.appengine.api.datastore.Transaction;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Number of comments in Datastore, kept as a sharded counter. A single counter entity could only
+ * be updated about once a second, so the count is split over {@code SHARDS} entities and each
+ * update picks one at random. Reading the count is one batch get of all the shards.
+ *
+ * <p>{@link DatastoreCommentRepository} updates a shard in the same transaction that adds or
+ * deletes the comments, so the count can't drift because of a failed request.
+ * {@link DatastoreCommentRepository#reconcileCount} repairs it if it drifts anyway, e.g. because
+ * comments were written before the counter existed.
+ */
+final class CommentCounter {
+
+  private static final int SHARDS = 20;
+
+  private final DatastoreService datastore;
+  private final String kind;
+
+  /**
+   * Creates the counter for comments of {@code commentKind}, e.g. CommentCountShard for Comment.
+   */
+  CommentCounter(DatastoreService datastore, String commentKind) {
+    this.datastore = datastore;
+    this.kind = commentKind + "CountShard";
+  }
+
+  /** Adds {@code delta} to a random shard as part of {@code transaction}. */
+  void add(Transaction transaction, long delta) {
+    Key key = shardKey(ThreadLocalRandom.current().nextInt(SHARDS));
+    long count;
+    try {
+      count = (long) datastore.get(transaction, key).getProperty("count");
+    } catch (EntityNotFoundException e) {
+      count = 0;
+    }
+
+    Entity shard = new Entity(key);
+    shard.setUnindexedProperty("count", count + delta);
+    datastore.put(transaction, shard);
+  }
+
+  /** Returns the sum of all shards. */
+  long get() {
+    List<Key> keys = new ArrayList<>(SHARDS);
+    for (int i = 0; i < SHARDS; i++) {
+      keys.add(shardKey(i));
+    }
+
+    long total = 0;
+    for (Entity shard : datastore.get(keys).values()) {
+      total += (long) shard.getProperty("count");
+    }
+    return total;
+  }
+
+  private Key shardKey(int shard) {
+    return KeyFactory.createKey(kind, "shard-" + shard);
+  }
+}
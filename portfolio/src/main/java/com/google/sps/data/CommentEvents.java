@@ -0,0 +1,166 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import com.google.gson.Gson;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Fans out comment changes to the open {@code /comment-events} streams as server-sent events.
+ *
+ * <p>Each change becomes one event with an increasing id: {@code added} with a comment, or
+ * {@code removed} with {@code {"ids": [...]}}. The last {@code HISTORY_SIZE} events are kept so a
+ * client that reconnects with {@code Last-Event-ID} gets what it missed. A client that missed more
+ * than that gets a {@code reset} event and should reload the list.
+ *
+ * <p>Events only reach streams open on the instance where the change was made.
+ */
+public final class CommentEvents {
+
+  /** Receives formatted events. */
+  public interface Listener {
+
+    /**
+     * Buffers an event for sending. Called while the publisher holds its lock, so it must only
+     * buffer: no blocking, no writing and no unsubscribing. {@link #flush} follows.
+     * @return false if the listener's buffer is full; the listener is then unsubscribed
+     */
+    boolean offer(String event);
+
+    /**
+     * Sends the buffered events. Called after {@link #offer}, without the publisher's lock, so it
+     * may unsubscribe the listener if sending fails.
+     */
+    void flush();
+
+    /** Called once when the listener is unsubscribed for falling behind. */
+    void dropped();
+  }
+
+  // Number of recent events kept for clients that reconnect.
+  public static final int HISTORY_SIZE = 32;
+
+  private static final CommentEvents INSTANCE = new CommentEvents();
+
+  private final Gson gson = new Gson();
+
+  // Guarded by this.
+  private final Set<Listener> listeners = new HashSet<>();
+  private final Deque<Event> history = new ArrayDeque<>();
+  private long lastId = 0;
+
+  private static final class Event {
+    final long id;
+    final String text;
+
+    Event(long id, String text) {
+      this.id = id;
+      this.text = text;
+    }
+  }
+
+  private CommentEvents() {}
+
+  /** Returns the event hub shared by all servlets in this instance. */
+  public static CommentEvents getInstance() {
+    return INSTANCE;
+  }
+
+  /**
+   * Starts sending events to {@code listener}. If {@code lastEventId} is positive, the events
+   * after it are offered first, or a {@code reset} event if they are no longer kept.
+   */
+  public void subscribe(Listener listener, long lastEventId) {
+    synchronized (this) {
+      if (lastEventId > 0) {
+        boolean haveAllMissed = lastEventId <= lastId
+            && (history.isEmpty() || history.peekFirst().id <= lastEventId + 1);
+        if (!haveAllMissed) {
+          listener.offer(format("reset", lastId, "{}"));
+        } else {
+          for (Event event : history) {
+            if (event.id > lastEventId) {
+              listener.offer(event.text);
+            }
+          }
+        }
+      }
+      listeners.add(listener);
+    }
+    listener.flush();
+  }
+
+  public synchronized void unsubscribe(Listener listener) {
+    listeners.remove(listener);
+  }
+
+  /** Returns the number of open streams, for monitoring. */
+  public synchronized int getSubscriberCount() {
+    return listeners.size();
+  }
+
+  /** Sends one {@code added} event per comment. */
+  public void added(Collection<Comment> comments) {
+    for (Comment comment : comments) {
+      publish("added", gson.toJson(comment));
+    }
+  }
+
+  /** Sends one {@code removed} event for all the ids. */
+  public void removed(Collection<Long> ids) {
+    publish("removed", gson.toJson(Collections.singletonMap("ids", ids)));
+  }
+
+  private void publish(String type, String data) {
+    List<Listener> offered = new ArrayList<>();
+    List<Listener> dropped = new ArrayList<>();
+    synchronized (this) {
+      long id = ++lastId;
+      Event event = new Event(id, format(type, id, data));
+      history.addLast(event);
+      if (history.size() > HISTORY_SIZE) {
+        history.removeFirst();
+      }
+
+      for (Listener listener : listeners) {
+        if (listener.offer(event.text)) {
+          offered.add(listener);
+        } else {
+          dropped.add(listener);
+        }
+      }
+      listeners.removeAll(dropped);
+    }
+
+    // Sending can fail and unsubscribe a listener, which must not happen while iterating above.
+    for (Listener listener : offered) {
+      listener.flush();
+    }
+    for (Listener listener : dropped) {
+      listener.dropped();
+    }
+  }
+
+  private static String format(String type, long id, String data) {
+    return "event: " + type + "\nid: " + id + "\ndata: " + data + "\n\n";
+  }
+}
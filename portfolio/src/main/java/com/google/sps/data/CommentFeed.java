@@ -0,0 +1,300 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import com.google.appengine.api.datastore.Blob;
+import com.google.appengine.api.datastore.DatastoreService;
+import com.google.appengine.api.datastore.DatastoreServiceFactory;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.Key;
+import com.google.appengine.api.datastore.KeyFactory;
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonWriter;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The first {@code PAGES} pages of the default comment list, built when comments change instead of
+ * when they are read. Each page is kept as JSON and gzipped JSON, in memory and (when comments are
+ * in Datastore) under one {@code CommentFeed} entity per page, so serving one is a memory hit or a
+ * single batch get.
+ *
+ * <p>Each snapshot records the {@link CommentCache} version it was built from, and is only served
+ * while that is still the current version. Rebuilds are coalesced: after a rebuild, further
+ * changes only mark the feed stale for {@code MIN_REBUILD_INTERVAL_MS}. The first write or read
+ * after the interval rebuilds it, and until then reads fall back to the page cache.
+ */
+public final class CommentFeed {
+
+  // Page size of the precomputed pages; matches the default page size of the comment list.
+  public static final int PAGE_SIZE = 10;
+
+  // Number of precomputed pages.
+  private static final int PAGES = 3;
+
+  // At most one rebuild per instance in this interval.
+  private static final long MIN_REBUILD_INTERVAL_MS = 1000;
+
+  private static final CommentFeed INSTANCE = new CommentFeed();
+
+  private final Gson gson = new Gson();
+
+  // Only persist the feed when other instances read the same comments.
+  private final boolean shared =
+      CommentRepository.getInstance() instanceof DatastoreCommentRepository;
+
+  private final AtomicBoolean rebuilding = new AtomicBoolean();
+  private volatile long lastRebuildAt = 0;
+  private volatile Snapshot snapshot;
+
+  // The version we last looked for in Datastore, so a stale feed is only read once per version.
+  private volatile long loadedVersion = -1;
+
+  /** One precomputed page. */
+  public static final class Page {
+    private final String start;
+    private final byte[] gzipped;
+    private volatile String json;
+
+    Page(String start, byte[] gzipped, String json) {
+      this.start = start;
+      this.gzipped = gzipped;
+      this.json = json;
+    }
+
+    /** Returns the page as gzipped JSON, ready to send with {@code Content-Encoding: gzip}. */
+    public byte[] getGzipped() {
+      return gzipped;
+    }
+
+    /** Returns the page as JSON, in the format of {@link CommentFeed#toJson}. */
+    public String getJson() {
+      if (json == null) {
+        json = gunzip(gzipped);
+      }
+      return json;
+    }
+  }
+
+  private static final class Snapshot {
+    final long version;
+    final List<Page> pages;
+
+    Snapshot(long version, List<Page> pages) {
+      this.version = version;
+      this.pages = pages;
+    }
+  }
+
+  private CommentFeed() {}
+
+  /** Returns the feed shared by all servlets in this instance. */
+  public static CommentFeed getInstance() {
+    return INSTANCE;
+  }
+
+  /**
+   * Returns the precomputed page that starts at {@code next} ({@code null} for the first page), or
+   * null if it isn't precomputed or the feed is being rebuilt.
+   */
+  public Page get(String next) {
+    long version = CommentCache.getInstance().getVersion();
+    Snapshot current = snapshot;
+    if ((current == null || current.version != version) && shared && loadedVersion != version) {
+      // Another instance may have rebuilt it already.
+      loadedVersion = version;
+      Snapshot stored = load();
+      if (stored != null && stored.version == version) {
+        snapshot = stored;
+        current = stored;
+      }
+    }
+    if (current == null || current.version != version) {
+      rebuildIfDue();
+      current = snapshot;
+      if (current == null || current.version != version) {
+        return null;
+      }
+    }
+
+    for (Page page : current.pages) {
+      if (Objects.equals(page.start, next)) {
+        return page;
+      }
+    }
+    return null;
+  }
+
+  /** Call after comments are added or removed, once the page cache has been invalidated. */
+  public void changed() {
+    rebuildIfDue();
+  }
+
+  /**
+   * Writes {@code page} as {@code {"comments": [...], "next": "...", "total": 42}}, one comment at
+   * a time and without building a list of Comment objects first. {@code total} is the number of
+   * comments in the whole list, so the page can show totals and page counts.
+   */
+  public static String toJson(Gson gson, CommentRepository.Page page, long total) {
+    StringWriter json = new StringWriter();
+    try {
+      JsonWriter writer = gson.newJsonWriter(json);
+      writer.beginObject();
+      writer.name("comments").beginArray();
+      for (Comment comment : page.getComments()) {
+        gson.toJson(comment, Comment.class, writer);
+      }
+      writer.endArray();
+
+      if (page.getNext() != null) {
+        writer.name("next").value(page.getNext());
+      }
+      writer.name("total").value(total);
+      writer.endObject();
+      writer.flush();
+    } catch (IOException e) {
+      // A StringWriter never throws.
+      throw new UncheckedIOException(e);
+    }
+    return json.toString();
+  }
+
+  private void rebuildIfDue() {
+    if (System.currentTimeMillis() - lastRebuildAt < MIN_REBUILD_INTERVAL_MS) {
+      return;
+    }
+    if (!rebuilding.compareAndSet(false, true)) {
+      // Someone else is rebuilding right now.
+      return;
+    }
+    try {
+      lastRebuildAt = System.currentTimeMillis();
+      rebuild();
+    } finally {
+      rebuilding.set(false);
+    }
+  }
+
+  private void rebuild() {
+    // Read the version first: a change made while we read the pages makes this snapshot stale
+    // rather than letting it pass for the newer version.
+    long version = CommentCache.getInstance().getVersion();
+    CommentRepository repository = CommentRepository.getInstance();
+
+    long total = repository.count();
+
+    List<Page> pages = new ArrayList<>(PAGES);
+    String next = null;
+    for (int i = 0; i < PAGES; i++) {
+      CommentRepository.Page page = repository.list(PAGE_SIZE, next, 0);
+      String json = toJson(gson, page, total);
+      pages.add(new Page(next, gzip(json), json));
+      next = page.getNext();
+      if (next == null) {
+        break;
+      }
+    }
+
+    Snapshot built = new Snapshot(version, pages);
+    if (shared) {
+      store(built);
+    }
+    snapshot = built;
+  }
+
+  private void store(Snapshot built) {
+    List<Entity> entities = new ArrayList<>(PAGES);
+    for (int i = 0; i < PAGES; i++) {
+      Entity entity = new Entity(pageKey(i));
+      entity.setUnindexedProperty("version", built.version);
+      if (i < built.pages.size()) {
+        Page page = built.pages.get(i);
+        entity.setUnindexedProperty("start", page.start);
+        entity.setUnindexedProperty("json", new Blob(page.gzipped));
+      }
+      entities.add(entity);
+    }
+    DatastoreServiceFactory.getDatastoreService().put(entities);
+  }
+
+  /** Reads the pages stored by the last rebuild on any instance, or null if there are none. */
+  private Snapshot load() {
+    List<Key> keys = new ArrayList<>(PAGES);
+    for (int i = 0; i < PAGES; i++) {
+      keys.add(pageKey(i));
+    }
+    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+    Map<Key, Entity> entities = datastore.get(keys);
+
+    Entity first = entities.get(keys.get(0));
+    if (first == null) {
+      return null;
+    }
+    long version = (long) first.getProperty("version");
+
+    List<Page> pages = new ArrayList<>(PAGES);
+    for (Key key : keys) {
+      Entity entity = entities.get(key);
+      // Pages from different rebuilds can't be mixed.
+      if (entity == null || (long) entity.getProperty("version") != version
+          || !entity.hasProperty("json")) {
+        break;
+      }
+      Blob json = (Blob) entity.getProperty("json");
+      pages.add(new Page((String) entity.getProperty("start"), json.getBytes(), null));
+    }
+    return new Snapshot(version, pages);
+  }
+
+  private static Key pageKey(int index) {
+    return KeyFactory.createKey("CommentFeed", "page-" + index);
+  }
+
+  private static byte[] gzip(String json) {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (GZIPOutputStream out = new GZIPOutputStream(bytes)) {
+      out.write(json.getBytes(StandardCharsets.UTF_8));
+    } catch (IOException e) {
+      // A ByteArrayOutputStream never throws.
+      throw new UncheckedIOException(e);
+    }
+    return bytes.toByteArray();
+  }
+
+  private static String gunzip(byte[] gzipped) {
+    try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(gzipped))) {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      byte[] buffer = new byte[8192];
+      int read;
+      while ((read = in.read(buffer)) > 0) {
+        bytes.write(buffer, 0, read);
+      }
+      return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+}
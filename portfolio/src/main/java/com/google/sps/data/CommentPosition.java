@@ -0,0 +1,70 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+/**
+ * Where a comment sorts in the newest-first order used by the in-memory and log repositories:
+ * by timestamp, then by id so that comments made in the same millisecond keep a stable order.
+ * Page tokens are the position of the last comment on the previous page.
+ */
+final class CommentPosition implements Comparable<CommentPosition> {
+
+  final long timestamp;
+  final long id;
+
+  CommentPosition(long timestamp, long id) {
+    this.timestamp = timestamp;
+    this.id = id;
+  }
+
+  static CommentPosition of(Comment comment) {
+    return new CommentPosition(comment.getTimestamp(), comment.getId());
+  }
+
+  /**
+   * Parses a page token made by {@link #toToken}.
+   * @throws IllegalArgumentException if {@code token} isn't one
+   */
+  static CommentPosition fromToken(String token) {
+    int separator = token.indexOf('_');
+    if (separator < 0) {
+      throw new IllegalArgumentException("Invalid page token: " + token);
+    }
+    // NumberFormatException is an IllegalArgumentException.
+    return new CommentPosition(Long.parseLong(token.substring(0, separator)),
+        Long.parseLong(token.substring(separator + 1)));
+  }
+
+  String toToken() {
+    return timestamp + "_" + id;
+  }
+
+  @Override
+  public int compareTo(CommentPosition other) {
+    // Newest first.
+    int byTime = Long.compare(other.timestamp, timestamp);
+    return byTime != 0 ? byTime : Long.compare(other.id, id);
+  }
+
+  @Override
+  public boolean equals(Object other) {
+    return other instanceof CommentPosition && compareTo((CommentPosition) other) == 0;
+  }
+
+  @Override
+  public int hashCode() {
+    return Long.hashCode(timestamp) * 31 + Long.hashCode(id);
+  }
+}
@@ -0,0 +1,46 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+
+/** Creates the repository picked by the {@code comments.storage} system property. */
+final class CommentRepositories {
+
+  static final CommentRepository INSTANCE =
+      create(System.getProperty("comments.storage", "datastore"));
+
+  private CommentRepositories() {}
+
+  private static CommentRepository create(String storage) {
+    switch (storage) {
+      case "datastore":
+        return new DatastoreCommentRepository();
+      case "memory":
+        return new InMemoryCommentRepository();
+      case "log":
+        try {
+          return new LogCommentRepository(
+              Paths.get(System.getProperty("comments.logPath", "comments.log")));
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      default:
+        throw new IllegalStateException("Unknown comments.storage: " + storage);
+    }
+  }
+}
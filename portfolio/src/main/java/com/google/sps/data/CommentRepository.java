@@ -0,0 +1,109 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Where comments are stored. Servlets go through this instead of Datastore, so the portfolio can
+ * also run (and be load-tested) with comments kept in memory or in a local log file.
+ *
+ * <p>The backend is picked with the {@code comments.storage} system property in
+ * appengine-web.xml: {@code datastore} (the default), {@code memory} or {@code log}. The log file
+ * is set with {@code comments.logPath}.
+ */
+public interface CommentRepository {
+
+  /** Most replies one thread can have. */
+  int MAX_THREAD_REPLIES = 1000;
+
+  /** One page of comments, newest first. */
+  final class Page {
+    private final List<Comment> comments;
+    private final String next;
+
+    public Page(List<Comment> comments, String next) {
+      this.comments = comments;
+      this.next = next;
+    }
+
+    public List<Comment> getComments() {
+      return comments;
+    }
+
+    /** Returns the token of the following page, or null if this is the last page. */
+    public String getNext() {
+      return next;
+    }
+  }
+
+  /**
+   * Stores new comments in one batch. The ids of {@code comments} are ignored.
+   * @return the stored comments, with their ids, in the same order
+   * @throws PartialAddException if the batch was stored in parts and a later part failed; the
+   *     exception has the comments that were stored
+   */
+  List<Comment> addAll(List<Comment> comments);
+
+  /**
+   * Returns up to {@code pageSize} comments made at or after {@code since}, newest first.
+   * @param next - token returned with the previous page, or null for the first page
+   * @throws IllegalArgumentException if {@code next} is not a valid token
+   */
+  Page list(int pageSize, String next, long since);
+
+  /**
+   * Deletes the comments with these ids. Ids that don't exist are ignored.
+   * @return the ids of the deleted comments, each once
+   */
+  List<Long> delete(Collection<Long> ids);
+
+  /**
+   * Deletes every comment made before {@code time}.
+   * @return the ids of the deleted comments
+   */
+  List<Long> deleteOlderThan(long time);
+
+  /**
+   * Deletes every comment.
+   * @return the ids of the deleted comments
+   */
+  List<Long> deleteAll();
+
+  /** Returns the number of comments, without reading them. Replies are not counted. */
+  long count();
+
+  /**
+   * Stores a reply in the thread of comment {@code commentId}. The id of {@code reply} is ignored.
+   * @param parentId - the reply being answered, or 0 to answer the comment itself
+   * @return the stored reply, or null if the comment or the parent reply doesn't exist
+   * @throws ThreadFullException if the thread already has {@code MAX_THREAD_REPLIES} replies
+   */
+  Reply addReply(long commentId, long parentId, Comment reply);
+
+  /**
+   * Returns comment {@code commentId} with its replies, see {@link CommentThread#build}.
+   * {@link #addReply} keeps threads to {@code MAX_THREAD_REPLIES} replies, so every reply is read
+   * and only {@code maxDepth} and {@code maxReplies} leave replies out.
+   * @return the thread, or null if the comment doesn't exist
+   */
+  CommentThread getThread(long commentId, int maxDepth, int maxReplies);
+
+  /** Returns the repository used by all servlets in this instance. */
+  static CommentRepository getInstance() {
+    return CommentRepositories.INSTANCE;
+  }
+}
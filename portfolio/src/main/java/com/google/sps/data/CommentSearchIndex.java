@@ -0,0 +1,218 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory inverted index over the name and message of every comment, ranked with BM25.
+ *
+ * <p>Query words match whole words, except words ending in {@code *}, which match every word
+ * starting with them (e.g. {@code tongue*} matches "tongue" and "tongues").
+ *
+ * <p>Each instance has its own index. It is loaded from Datastore at startup (see
+ * {@code SearchIndexLoader}) and then kept up to date by {@link CommentChanges}, so comments
+ * written through another instance show up here after this instance restarts.
+ */
+public final class CommentSearchIndex {
+
+  // Standard BM25 parameters: how quickly repeated words stop adding to the score, and how much
+  // long comments are penalised.
+  private static final double K1 = 1.2;
+  private static final double B = 0.75;
+
+  private static final CommentSearchIndex INSTANCE = new CommentSearchIndex();
+
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+  // word -> (comment id -> number of times the word appears in that comment). Sorted so that
+  // prefix queries are a range scan.
+  private final NavigableMap<String, Map<Long, Integer>> postings = new TreeMap<>();
+
+  // comment id -> the comment and its words, needed to return results and to remove comments.
+  private final Map<Long, Comment> comments = new HashMap<>();
+  private final Map<Long, Map<String, Integer>> termsByComment = new HashMap<>();
+  private final Map<Long, Integer> lengths = new HashMap<>();
+  private long totalLength = 0;
+
+  private CommentSearchIndex() {}
+
+  /** Returns the index shared by all servlets in this instance. */
+  public static CommentSearchIndex getInstance() {
+    return INSTANCE;
+  }
+
+  /**
+   * Adds a comment to the index, replacing any earlier version with the same id.
+   * @param id - unique id for each comment
+   * @param name - name of individual writing comment
+   * @param message - the comment's text message
+   * @param timestamp - the time the comment was made, in milliseconds since the epoch
+   */
+  public void add(long id, String name, String message, long timestamp) {
+    Comment comment = new Comment(id, name, message, timestamp);
+    Map<String, Integer> terms = new HashMap<>();
+    int length = 0;
+    for (String token : tokenize(name + " " + message)) {
+      terms.merge(token, 1, Integer::sum);
+      length++;
+    }
+
+    lock.writeLock().lock();
+    try {
+      removeLocked(id);
+      comments.put(id, comment);
+      termsByComment.put(id, terms);
+      lengths.put(id, length);
+      for (Map.Entry<String, Integer> term : terms.entrySet()) {
+        postings.computeIfAbsent(term.getKey(), key -> new HashMap<>()).put(id, term.getValue());
+      }
+      totalLength += length;
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /** Removes a comment from the index. Does nothing if it isn't indexed. */
+  public void remove(long id) {
+    lock.writeLock().lock();
+    try {
+      removeLocked(id);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /** Returns the number of indexed comments. */
+  public int size() {
+    lock.readLock().lock();
+    try {
+      return comments.size();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Returns the comments matching any word of {@code query}, best match first.
+   * @param query - words to search for; a trailing * makes a word a prefix
+   * @param limit - maximum number of comments to return
+   */
+  public List<Comment> search(String query, int limit) {
+    List<String> words = new ArrayList<>();
+    List<Boolean> prefixes = new ArrayList<>();
+    for (String word : query.trim().split("\\s+")) {
+      boolean prefix = word.endsWith("*");
+      for (String token : tokenize(word)) {
+        words.add(token);
+        prefixes.add(prefix);
+      }
+    }
+
+    lock.readLock().lock();
+    try {
+      int documentCount = comments.size();
+      if (documentCount == 0 || words.isEmpty()) {
+        return new ArrayList<>();
+      }
+      double averageLength = (double) totalLength / documentCount;
+
+      Map<Long, Double> scores = new HashMap<>();
+      for (int i = 0; i < words.size(); i++) {
+        String word = words.get(i);
+        Map<String, Map<Long, Integer>> matches = prefixes.get(i)
+            ? postings.subMap(word, true, word + Character.MAX_VALUE, false)
+            : postings.subMap(word, true, word, true);
+
+        for (Map<Long, Integer> posting : matches.values()) {
+          double idf =
+              Math.log(1 + (documentCount - posting.size() + 0.5) / (posting.size() + 0.5));
+          for (Map.Entry<Long, Integer> entry : posting.entrySet()) {
+            long id = entry.getKey();
+            int frequency = entry.getValue();
+            int length = lengths.get(id);
+            double score = idf * frequency * (K1 + 1)
+                / (frequency + K1 * (1 - B + B * length / averageLength));
+            scores.merge(id, score, Double::sum);
+          }
+        }
+      }
+
+      // Keep only the best {@code limit} scores.
+      PriorityQueue<Map.Entry<Long, Double>> best =
+          new PriorityQueue<>((a, b) -> Double.compare(a.getValue(), b.getValue()));
+      for (Map.Entry<Long, Double> score : scores.entrySet()) {
+        best.add(score);
+        if (best.size() > limit) {
+          best.poll();
+        }
+      }
+      List<Comment> results = new ArrayList<>();
+      while (!best.isEmpty()) {
+        results.add(0, comments.get(best.poll().getKey()));
+      }
+      return results;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  private void removeLocked(long id) {
+    Map<String, Integer> terms = termsByComment.remove(id);
+    if (terms == null) {
+      return;
+    }
+    comments.remove(id);
+    lengths.remove(id);
+    for (Map.Entry<String, Integer> term : terms.entrySet()) {
+      Map<Long, Integer> posting = postings.get(term.getKey());
+      posting.remove(id);
+      if (posting.isEmpty()) {
+        postings.remove(term.getKey());
+      }
+      totalLength -= term.getValue();
+    }
+  }
+
+  /** Splits text into lower-case words made of letters and digits. */
+  static List<String> tokenize(String text) {
+    List<String> tokens = new ArrayList<>();
+    if (text == null) {
+      return tokens;
+    }
+
+    String lower = text.toLowerCase(Locale.ROOT);
+    int start = -1;
+    for (int i = 0; i <= lower.length(); i++) {
+      boolean wordCharacter = i < lower.length() && Character.isLetterOrDigit(lower.charAt(i));
+      if (wordCharacter && start < 0) {
+        start = i;
+      } else if (!wordCharacter && start >= 0) {
+        tokens.add(lower.substring(start, i));
+        start = -1;
+      }
+    }
+    return tokens;
+  }
+}
@@ -0,0 +1,92 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A comment and its replies as a tree, built from a flat list of replies in one pass so that no
+ * reply has to be fetched on its own.
+ *
+ * <p>The tree can be cut to {@code maxDepth} levels of replies and {@code maxReplies} replies per
+ * comment, so a popular thread stays cheap to send and render. Where replies are left out,
+ * {@code moreReplies} says how many direct replies are missing.
+ */
+public final class CommentThread {
+
+  // Fields are read by Gson.
+  private final long id;
+  private final String name;
+  private final String message;
+  private final long timestamp;
+  private final List<CommentThread> replies = new ArrayList<>();
+  private int moreReplies;
+
+  private CommentThread(Comment comment) {
+    this.id = comment.getId();
+    this.name = comment.getName();
+    this.message = comment.getMessage();
+    this.timestamp = comment.getTimestamp();
+  }
+
+  /**
+   * Builds the thread of {@code root}. Replies whose parent isn't in {@code replies} are left out.
+   * @param maxDepth - levels of replies to include; 0 includes none
+   * @param maxReplies - replies to include under each comment or reply, oldest first
+   */
+  public static CommentThread build(
+      Comment root, Collection<Reply> replies, int maxDepth, int maxReplies) {
+    // Group the replies by what they answer, oldest first.
+    Map<Long, List<Comment>> children = new HashMap<>();
+    for (Reply reply : replies) {
+      children.computeIfAbsent(reply.getParentId(), parent -> new ArrayList<>())
+          .add(reply.getComment());
+    }
+    for (List<Comment> siblings : children.values()) {
+      siblings.sort(
+          Comparator.comparingLong(Comment::getTimestamp).thenComparingLong(Comment::getId));
+    }
+
+    CommentThread thread = new CommentThread(root);
+    attach(thread, 0, children, 0, maxDepth, maxReplies);
+    return thread;
+  }
+
+  /** Adds the replies to {@code parentId} under {@code node}, and theirs under them. */
+  private static void attach(CommentThread node, long parentId, Map<Long, List<Comment>> children,
+      int depth, int maxDepth, int maxReplies) {
+    List<Comment> direct = children.get(parentId);
+    if (direct == null) {
+      return;
+    }
+    if (depth >= maxDepth) {
+      node.moreReplies = direct.size();
+      return;
+    }
+
+    int shown = Math.min(direct.size(), maxReplies);
+    node.moreReplies = direct.size() - shown;
+    for (Comment reply : direct.subList(0, shown)) {
+      CommentThread child = new CommentThread(reply);
+      node.replies.add(child);
+      attach(child, reply.getId(), children, depth + 1, maxDepth, maxReplies);
+    }
+  }
+}
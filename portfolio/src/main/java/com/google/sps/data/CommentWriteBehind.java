@@ -0,0 +1,176 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Optional write-behind queue for new comments. Instead of one repository write per POST,
+ * comments are collected for up to {@code FLUSH_INTERVAL_MS} (or until {@code BATCH_SIZE} are
+ * waiting) and written with a single batched put.
+ *
+ * <p>Durability: a comment is only durable once its batch has been written. A POST that returns
+ * while write-behind is on has NOT stored the comment yet; if the instance crashes within the
+ * flush interval, the queued comments are lost. Queued comments are flushed when the app shuts
+ * down normally (see {@code WriteBehindShutdownListener}). Readers may not see a new comment until
+ * its batch is written.
+ *
+ * <p>Backpressure: the queue holds at most {@code QUEUE_CAPACITY} comments. When it is full, a
+ * submitter waits up to {@code OFFER_TIMEOUT_MS} and then writes its comment synchronously, so
+ * bursts slow down rather than lose comments.
+ *
+ * <p>Write-behind needs a thread that outlives requests, so it is off by default. Turn it on with
+ * the {@code comments.writeBehind} system property in appengine-web.xml, on instances that allow
+ * background threads.
+ */
+public final class CommentWriteBehind {
+
+  public static final boolean ENABLED = Boolean.getBoolean("comments.writeBehind");
+
+  private static final int BATCH_SIZE = 100;
+  private static final long FLUSH_INTERVAL_MS = 50;
+  private static final int QUEUE_CAPACITY = 2000;
+  private static final long OFFER_TIMEOUT_MS = 100;
+
+  private static CommentWriteBehind instance;
+
+  private final BlockingQueue<Comment> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+  private final CommentRepository repository = CommentRepository.getInstance();
+  private final Thread flusher;
+  private volatile boolean running = true;
+  // Submitters hold the read lock from checking running until their comment is queued, and
+  // shutdown clears running under the write lock, so no comment is queued after the final drain.
+  private final ReadWriteLock runningLock = new ReentrantReadWriteLock();
+
+  private CommentWriteBehind() {
+    flusher = new Thread(this::flushLoop, "comment-write-behind");
+    flusher.setDaemon(true);
+    flusher.start();
+  }
+
+  /** Returns the queue shared by all servlets in this instance, starting it on first use. */
+  public static synchronized CommentWriteBehind getInstance() {
+    if (instance == null) {
+      instance = new CommentWriteBehind();
+    }
+    return instance;
+  }
+
+  /**
+   * Queues a comment to be written with the next batch. If the queue stays full, writes the
+   * comment right away instead.
+   */
+  public void submit(Comment comment) {
+    runningLock.readLock().lock();
+    try {
+      if (running && queue.offer(comment, OFFER_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+        return;
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } finally {
+      runningLock.readLock().unlock();
+    }
+    CommentChanges.added(repository.addAll(Collections.singletonList(comment)));
+  }
+
+  /**
+   * Stops accepting comments and writes everything still queued. Called when the app shuts down.
+   */
+  public static synchronized void shutdown() {
+    if (instance == null) {
+      return;
+    }
+    instance.runningLock.writeLock().lock();
+    try {
+      instance.running = false;
+    } finally {
+      instance.runningLock.writeLock().unlock();
+    }
+    instance.flusher.interrupt();
+    try {
+      instance.flusher.join(TimeUnit.SECONDS.toMillis(5));
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+
+    // Anything the flusher didn't get to.
+    List<Comment> remaining = new ArrayList<>();
+    instance.queue.drainTo(remaining);
+    instance.write(remaining);
+    instance = null;
+  }
+
+  private void flushLoop() {
+    List<Comment> batch = new ArrayList<>(BATCH_SIZE);
+    while (running) {
+      try {
+        // Wait for the first comment, then give the rest of the batch until the interval is up.
+        Comment first = queue.take();
+        batch.add(first);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(FLUSH_INTERVAL_MS);
+        while (batch.size() < BATCH_SIZE) {
+          long remaining = deadline - System.nanoTime();
+          Comment next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : null;
+          if (next == null) {
+            break;
+          }
+          batch.add(next);
+          queue.drainTo(batch, BATCH_SIZE - batch.size());
+        }
+      } catch (InterruptedException e) {
+        // Shutting down. Write what we have and let shutdown() drain the rest.
+      }
+      write(batch);
+      batch.clear();
+    }
+  }
+
+  private void write(List<Comment> batch) {
+    if (batch.isEmpty()) {
+      return;
+    }
+    // Retry once; a second failure loses what is left of the batch. A retry only writes the
+    // comments that weren't stored, so none is stored twice.
+    List<Comment> stored = new ArrayList<>(batch.size());
+    for (int attempt = 1; attempt <= 2 && stored.size() < batch.size(); attempt++) {
+      try {
+        stored.addAll(repository.addAll(batch.subList(stored.size(), batch.size())));
+      } catch (PartialAddException e) {
+        stored.addAll(e.getStored());
+        warnIfLost(attempt, batch.size() - stored.size(), e);
+      } catch (RuntimeException e) {
+        warnIfLost(attempt, batch.size() - stored.size(), e);
+      }
+    }
+    // One cache invalidation per batch instead of one per comment.
+    if (!stored.isEmpty()) {
+      CommentChanges.added(stored);
+    }
+  }
+
+  private static void warnIfLost(int attempt, int lost, RuntimeException failure) {
+    if (attempt == 2) {
+      System.out.println("Warning! Lost " + lost + " queued comments: " + failure);
+    }
+  }
+}
@@ -0,0 +1,361 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import com.google.appengine.api.datastore.Cursor;
+import com.google.appengine.api.datastore.DatastoreService;
+import com.google.appengine.api.datastore.DatastoreServiceFactory;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.EntityNotFoundException;
+import com.google.appengine.api.datastore.FetchOptions;
+import com.google.appengine.api.datastore.Key;
+import com.google.appengine.api.datastore.KeyFactory;
+import com.google.appengine.api.datastore.Query;
+import com.google.appengine.api.datastore.Query.FilterOperator;
+import com.google.appengine.api.datastore.Query.FilterPredicate;
+import com.google.appengine.api.datastore.Query.SortDirection;
+import com.google.appengine.api.datastore.QueryResultList;
+import com.google.appengine.api.datastore.Transaction;
+import com.google.appengine.api.datastore.TransactionOptions;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Stores comments as entities in Datastore, shared by every instance of the app.
+ *
+ * <p>Comments are added and deleted in cross-group transactions that also update the
+ * {@link CommentCounter}, so {@link #count} stays exact. A cross-group transaction can touch at
+ * most 25 entity groups, so large batches are split into several transactions.
+ *
+ * <p>Replies are {@code Reply} entities whose ancestor is the comment they're under, so a whole
+ * thread is in the comment's entity group and is read with one ancestor query. Deleting a comment
+ * deletes its thread. A thread can have more replies than one commit may delete, so the replies
+ * are deleted in batches after the comment's transaction. If that fails part way, the replies left
+ * behind are never read: reading a thread and replying both start from the comment.
+ */
+public final class DatastoreCommentRepository implements CommentRepository {
+
+  // Keys read per round trip when streaming the results of a keys-only query.
+  private static final int QUERY_CHUNK_SIZE = 500;
+
+  // Comments per transaction: each is its own entity group, and the counter shard is one more.
+  private static final int TRANSACTION_SIZE = 24;
+
+  // Datastore deletes at most this many entities per call.
+  private static final int MAX_DELETE_BATCH = 500;
+
+  private static final int MAX_TRANSACTION_ATTEMPTS = 3;
+
+  private static final String REPLY_KIND = "Reply";
+
+  private final DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+  private final String kind;
+  private final CommentCounter counter;
+
+  public DatastoreCommentRepository() {
+    this("Comment");
+  }
+
+  /** Stores comments as entities of {@code kind}, e.g. to keep benchmark data apart. */
+  public DatastoreCommentRepository(String kind) {
+    this.kind = kind;
+    this.counter = new CommentCounter(datastore, kind);
+  }
+
+  @Override
+  public List<Comment> addAll(List<Comment> comments) {
+    List<Entity> entities = new ArrayList<>(comments.size());
+    for (Comment comment : comments) {
+      Entity entity = new Entity(kind);
+      entity.setProperty("name", comment.getName());
+      entity.setProperty("message", comment.getMessage());
+      entity.setProperty("timestamp", comment.getTimestamp());
+      entities.add(entity);
+    }
+
+    List<Comment> stored = new ArrayList<>(entities.size());
+    for (int start = 0; start < entities.size(); start += TRANSACTION_SIZE) {
+      List<Entity> chunk =
+          entities.subList(start, Math.min(start + TRANSACTION_SIZE, entities.size()));
+      try {
+        inTransaction(transaction -> {
+          datastore.put(transaction, chunk);
+          counter.add(transaction, chunk.size());
+        });
+      } catch (RuntimeException e) {
+        if (stored.isEmpty()) {
+          throw e;
+        }
+        // The earlier chunks are committed, so the caller must not add them again.
+        throw new PartialAddException(stored, e);
+      }
+      for (Entity entity : chunk) {
+        stored.add(toComment(entity));
+      }
+    }
+    return stored;
+  }
+
+  @Override
+  public Page list(int pageSize, String next, long since) {
+    // Checked before running the query, so a bad token is reported as such.
+    FetchOptions fetchOptions = FetchOptions.Builder.withLimit(pageSize);
+    if (next != null) {
+      fetchOptions.startCursor(Cursor.fromWebSafeString(next));
+    }
+
+    Query query = new Query(kind).addSort("timestamp", SortDirection.DESCENDING);
+    if (since > 0) {
+      query.setFilter(
+          new FilterPredicate("timestamp", FilterOperator.GREATER_THAN_OR_EQUAL, since));
+    }
+    QueryResultList<Entity> entities = datastore.prepare(query).asQueryResultList(fetchOptions);
+
+    List<Comment> comments = new ArrayList<>(entities.size());
+    for (Entity entity : entities) {
+      comments.add(toComment(entity));
+    }
+
+    // A short page means there is nothing after it.
+    String nextToken = null;
+    if (entities.size() == pageSize && entities.getCursor() != null) {
+      nextToken = entities.getCursor().toWebSafeString();
+    }
+    return new Page(comments, nextToken);
+  }
+
+  @Override
+  public List<Long> delete(Collection<Long> ids) {
+    List<Key> keys = new ArrayList<>(ids.size());
+    for (long id : ids) {
+      keys.add(KeyFactory.createKey(kind, id));
+    }
+    return deleteInTransactions(keys);
+  }
+
+  @Override
+  public List<Long> deleteOlderThan(long time) {
+    Query query = new Query(kind).setKeysOnly()
+        .setFilter(new FilterPredicate("timestamp", FilterOperator.LESS_THAN, time));
+    return deleteInTransactions(keysOf(query));
+  }
+
+  @Override
+  public List<Long> deleteAll() {
+    return deleteInTransactions(keysOf(new Query(kind).setKeysOnly()));
+  }
+
+  @Override
+  public long count() {
+    return counter.get();
+  }
+
+  @Override
+  public Reply addReply(long commentId, long parentId, Comment reply) {
+    Key commentKey = KeyFactory.createKey(kind, commentId);
+    Entity entity = new Entity(REPLY_KIND, commentKey);
+    entity.setProperty("name", reply.getName());
+    entity.setProperty("message", reply.getMessage());
+    entity.setProperty("timestamp", reply.getTimestamp());
+    entity.setProperty("parentId", parentId);
+
+    // One entity group, so this is an ordinary transaction.
+    Transaction transaction = datastore.beginTransaction();
+    try {
+      datastore.get(transaction, commentKey);
+      if (parentId != 0) {
+        datastore.get(transaction, KeyFactory.createKey(commentKey, REPLY_KIND, parentId));
+      }
+      // Capping threads lets getThread read every reply with one bounded query.
+      Query replies = new Query(REPLY_KIND, commentKey).setKeysOnly();
+      int replyCount = datastore.prepare(transaction, replies)
+          .countEntities(FetchOptions.Builder.withLimit(MAX_THREAD_REPLIES));
+      if (replyCount >= MAX_THREAD_REPLIES) {
+        throw new ThreadFullException(commentId);
+      }
+      datastore.put(transaction, entity);
+      transaction.commit();
+    } catch (EntityNotFoundException e) {
+      return null;
+    } finally {
+      if (transaction.isActive()) {
+        transaction.rollback();
+      }
+    }
+    return new Reply(toComment(entity), parentId);
+  }
+
+  @Override
+  public CommentThread getThread(long commentId, int maxDepth, int maxReplies) {
+    // A kindless ancestor query returns the comment and every reply under it. Threads are capped
+    // at MAX_THREAD_REPLIES, so the limit only guards against threads stored before the cap.
+    Query query = new Query(KeyFactory.createKey(kind, commentId));
+    List<Entity> entities =
+        datastore.prepare(query).asList(FetchOptions.Builder.withLimit(MAX_THREAD_REPLIES + 1));
+
+    Comment root = null;
+    List<Reply> replies = new ArrayList<>(entities.size());
+    for (Entity entity : entities) {
+      if (entity.getKey().getParent() == null) {
+        root = toComment(entity);
+      } else {
+        replies.add(new Reply(toComment(entity), (long) entity.getProperty("parentId")));
+      }
+    }
+    return root == null ? null : CommentThread.build(root, replies, maxDepth, maxReplies);
+  }
+
+  /**
+   * Counts the comments one by one and corrects the counter if it disagrees. This reads every
+   * key, so it is meant for an occasional maintenance job, not for serving requests.
+   * @return the count before and after, and the adjustment that was made
+   * @throws ConcurrentModificationException if comments changed while they were counted; the
+   *     count is left alone and the job can try again
+   */
+  public Map<String, Long> reconcileCount() {
+    long before = counter.get();
+    long counted = 0;
+    for (Key key : keysOf(new Query(kind).setKeysOnly())) {
+      counted++;
+    }
+
+    // Any write while we were counting would have moved the counter, and we can't tell whether
+    // the scan saw it.
+    if (counter.get() != before) {
+      throw new ConcurrentModificationException("Comments changed while they were counted");
+    }
+
+    long adjustment = counted - before;
+    if (adjustment != 0) {
+      inTransaction(transaction -> counter.add(transaction, adjustment));
+    }
+
+    Map<String, Long> result = new LinkedHashMap<>();
+    result.put("before", before);
+    result.put("counted", counted);
+    result.put("adjustment", adjustment);
+    return result;
+  }
+
+  private static Comment toComment(Entity entity) {
+    return new Comment(entity.getKey().getId(),
+        (String) entity.getProperty("name"),
+        (String) entity.getProperty("message"),
+        Timestamps.toMillis(entity.getProperty("timestamp")));
+  }
+
+  /** Streams the keys matched by a keys-only query, without loading the entities. */
+  private Iterable<Key> keysOf(Query query) {
+    Iterable<Entity> entities =
+        datastore.prepare(query).asIterable(FetchOptions.Builder.withChunkSize(QUERY_CHUNK_SIZE));
+    return () -> {
+      Iterator<Entity> iterator = entities.iterator();
+      return new Iterator<Key>() {
+        @Override
+        public boolean hasNext() {
+          return iterator.hasNext();
+        }
+
+        @Override
+        public Key next() {
+          return iterator.next().getKey();
+        }
+      };
+    };
+  }
+
+  /**
+   * Deletes the keys, {@code TRANSACTION_SIZE} at a time, and takes the comments that existed off
+   * the counter in the same transaction.
+   * @return the ids of the comments that were deleted
+   */
+  private List<Long> deleteInTransactions(Iterable<Key> keys) {
+    List<Long> deleted = new ArrayList<>();
+    List<Key> chunk = new ArrayList<>(TRANSACTION_SIZE);
+    for (Key key : keys) {
+      chunk.add(key);
+      if (chunk.size() == TRANSACTION_SIZE) {
+        deleteChunk(chunk, deleted);
+        chunk.clear();
+      }
+    }
+    if (!chunk.isEmpty()) {
+      deleteChunk(chunk, deleted);
+    }
+    return deleted;
+  }
+
+  private void deleteChunk(List<Key> keys, List<Long> deleted) {
+    List<Key> existing = new ArrayList<>(keys.size());
+    inTransaction(transaction -> {
+      // Only comments that still exist count, so deleting twice doesn't decrement twice.
+      existing.clear();
+      existing.addAll(datastore.get(transaction, keys).keySet());
+      if (!existing.isEmpty()) {
+        datastore.delete(transaction, existing);
+        counter.add(transaction, -existing.size());
+      }
+    });
+    deleteReplies(existing);
+    for (Key key : existing) {
+      deleted.add(key.getId());
+    }
+  }
+
+  /** Deletes the replies under {@code comments}, {@code MAX_DELETE_BATCH} at a time. */
+  private void deleteReplies(List<Key> comments) {
+    List<Key> batch = new ArrayList<>(MAX_DELETE_BATCH);
+    for (Key comment : comments) {
+      Query query = new Query(REPLY_KIND, comment).setKeysOnly();
+      FetchOptions fetchOptions = FetchOptions.Builder.withChunkSize(QUERY_CHUNK_SIZE);
+      for (Entity reply : datastore.prepare(query).asIterable(fetchOptions)) {
+        batch.add(reply.getKey());
+        if (batch.size() == MAX_DELETE_BATCH) {
+          datastore.delete(batch);
+          batch.clear();
+        }
+      }
+    }
+    if (!batch.isEmpty()) {
+      datastore.delete(batch);
+    }
+  }
+
+  /** Runs {@code work} in a cross-group transaction, retrying if it collides with another one. */
+  private void inTransaction(Consumer<Transaction> work) {
+    for (int attempt = 1; ; attempt++) {
+      Transaction transaction = datastore.beginTransaction(TransactionOptions.Builder.withXG(true));
+      try {
+        work.accept(transaction);
+        transaction.commit();
+        return;
+      } catch (ConcurrentModificationException e) {
+        if (attempt == MAX_TRANSACTION_ATTEMPTS) {
+          throw e;
+        }
+      } finally {
+        if (transaction.isActive()) {
+          transaction.rollback();
+        }
+      }
+    }
+  }
+}
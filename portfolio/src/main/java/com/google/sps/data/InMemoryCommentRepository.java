@@ -0,0 +1,144 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Keeps comments in memory only, for running the portfolio without Datastore and for load tests.
+ * Each instance has its own comments and they are lost when it stops.
+ */
+public final class InMemoryCommentRepository implements CommentRepository {
+
+  // Comments newest first, and where each id sorts, so deletes don't have to search.
+  private final ConcurrentSkipListMap<CommentPosition, Comment> comments =
+      new ConcurrentSkipListMap<>();
+  private final Map<Long, CommentPosition> positions = new ConcurrentHashMap<>();
+
+  // Replies by the id of the comment whose thread they're in. Guarded by this.
+  private final Map<Long, List<Reply>> replies = new HashMap<>();
+
+  private long lastId = 0;
+
+  @Override
+  public synchronized List<Comment> addAll(List<Comment> newComments) {
+    List<Comment> stored = new ArrayList<>(newComments.size());
+    for (Comment comment : newComments) {
+      Comment withId =
+          new Comment(++lastId, comment.getName(), comment.getMessage(), comment.getTimestamp());
+      CommentPosition position = CommentPosition.of(withId);
+      comments.put(position, withId);
+      positions.put(withId.getId(), position);
+      stored.add(withId);
+    }
+    return stored;
+  }
+
+  @Override
+  public Page list(int pageSize, String next, long since) {
+    NavigableMap<CommentPosition, Comment> after =
+        next == null ? comments : comments.tailMap(CommentPosition.fromToken(next), false);
+
+    List<Comment> page = new ArrayList<>(pageSize);
+    for (Comment comment : after.values()) {
+      if (page.size() == pageSize || comment.getTimestamp() < since) {
+        break;
+      }
+      page.add(comment);
+    }
+
+    // Like Datastore, a full page always has a token even if nothing follows it.
+    String nextToken =
+        page.size() == pageSize ? CommentPosition.of(page.get(page.size() - 1)).toToken() : null;
+    return new Page(page, nextToken);
+  }
+
+  @Override
+  public synchronized List<Long> delete(Collection<Long> ids) {
+    List<Long> deleted = new ArrayList<>();
+    for (long id : ids) {
+      CommentPosition position = positions.remove(id);
+      if (position != null) {
+        comments.remove(position);
+        deleted.add(id);
+      }
+      replies.remove(id);
+    }
+    return deleted;
+  }
+
+  @Override
+  public synchronized List<Long> deleteOlderThan(long time) {
+    // Everything older than time sorts after the newest possible comment made just before it.
+    NavigableMap<CommentPosition, Comment> older =
+        comments.tailMap(new CommentPosition(time - 1, Long.MAX_VALUE), true);
+    List<Long> deleted = new ArrayList<>();
+    for (Comment comment : older.values()) {
+      deleted.add(comment.getId());
+    }
+    delete(deleted);
+    return deleted;
+  }
+
+  @Override
+  public synchronized List<Long> deleteAll() {
+    List<Long> deleted = new ArrayList<>(positions.keySet());
+    comments.clear();
+    positions.clear();
+    replies.clear();
+    return deleted;
+  }
+
+  @Override
+  public long count() {
+    return positions.size();
+  }
+
+  @Override
+  public synchronized Reply addReply(long commentId, long parentId, Comment reply) {
+    if (!positions.containsKey(commentId)) {
+      return null;
+    }
+    List<Reply> thread = replies.computeIfAbsent(commentId, id -> new ArrayList<>());
+    if (parentId != 0 && thread.stream().noneMatch(r -> r.getComment().getId() == parentId)) {
+      return null;
+    }
+    if (thread.size() >= MAX_THREAD_REPLIES) {
+      throw new ThreadFullException(commentId);
+    }
+
+    Reply stored = new Reply(
+        new Comment(++lastId, reply.getName(), reply.getMessage(), reply.getTimestamp()), parentId);
+    thread.add(stored);
+    return stored;
+  }
+
+  @Override
+  public synchronized CommentThread getThread(long commentId, int maxDepth, int maxReplies) {
+    CommentPosition position = positions.get(commentId);
+    if (position == null) {
+      return null;
+    }
+    return CommentThread.build(comments.get(position),
+        replies.getOrDefault(commentId, new ArrayList<>()), maxDepth, maxReplies);
+  }
+}
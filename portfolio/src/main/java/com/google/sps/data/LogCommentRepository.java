@@ -0,0 +1,703 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+
+/**
+ * Stores comments in a local append-only log file, for running the portfolio without Datastore.
+ * Each instance has its own file.
+ *
+ * <p>Adding a comment appends an ADD record, replying appends a REPLY record and deleting a comment
+ * (with its replies) appends a DELETE record; nothing in the file is ever overwritten. An
+ * in-memory index maps every live comment to the offset of its ADD record, so a page is read with
+ * one positional read per comment. The index is rebuilt by replaying the log when the repository
+ * is opened.
+ *
+ * <p>Deleted comments leave dead records behind. Once dead records take up more than half of a
+ * log of at least {@code MIN_COMPACT_BYTES}, the live comments are copied to a new file that then
+ * replaces the log. {@link #compact} does the same on demand.
+ *
+ * <p>Every batch starts with a BATCH record holding the length of the records after it, and is
+ * forced to disk before the call returns. Each record carries a CRC. A crash can only tear the
+ * batch that was being appended, possibly with its later records on disk and earlier ones not, so
+ * when the log is reopened an incomplete last batch is dropped as a whole, as are unreadable bytes
+ * where its BATCH record should be. An incomplete batch with more of the file after it means the
+ * file is corrupt, and opening it fails instead of silently dropping the comments after it. Only
+ * the batch at hand is checked, so opening a damaged log costs no more than opening a sound one.
+ *
+ * <p>Compaction drops the records of deleted comments, including the newest ones, so the compacted
+ * file starts with an ID_MARK record holding the highest id handed out so far. Ids are never
+ * reused, even across compactions and restarts.
+ *
+ * <p>File format: a header of {@code MAGIC} and {@code VERSION}, then records of
+ * {@code [int payloadLength][int crc32(payload)][payload]}, where the payload is
+ * {@code ADD id timestamp nameLength name messageLength message}, {@code DELETE id},
+ * {@code REPLY commentId parentId id timestamp nameLength name messageLength message},
+ * {@code ID_MARK lastId} or {@code BATCH recordsLength}. Compaction writes its records without a
+ * BATCH record, since the file is forced before it replaces the log. Version 1 files have no
+ * ID_MARK records, versions 1 and 2 have no BATCH records, and both are still read.
+ */
+public final class LogCommentRepository implements CommentRepository, AutoCloseable {
+
+  private static final int MAGIC = 0x434d4c47;
+  private static final int VERSION = 3;
+  private static final int HEADER_BYTES = 8;
+  private static final int RECORD_HEADER_BYTES = 8;
+
+  private static final byte ADD = 1;
+  private static final byte DELETE = 2;
+  private static final byte REPLY = 3;
+  private static final byte ID_MARK = 4;
+  private static final byte BATCH = 5;
+  private static final int BATCH_RECORD_BYTES = RECORD_HEADER_BYTES + 5;
+
+  // Records larger than this can only come from a corrupt file.
+  private static final int MAX_PAYLOAD_BYTES = 16 * 1024 * 1024;
+
+  // Logs smaller than this are never compacted automatically.
+  private static final long MIN_COMPACT_BYTES = 1024 * 1024;
+
+  private final Path path;
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+  // Guarded by lock. The newest-first index maps each live comment to its ADD record.
+  private FileChannel channel;
+  private final TreeMap<CommentPosition, Long> offsets = new TreeMap<>();
+  private final Map<Long, CommentPosition> positions = new HashMap<>();
+  // Each comment's replies, oldest first, mapped from reply id to the offset of its REPLY record.
+  private final Map<Long, Map<Long, Long>> threads = new HashMap<>();
+  private long size;
+  private long liveBytes;
+  private long lastId;
+
+  /** Opens the log at {@code path}, creating it if it doesn't exist. */
+  public LogCommentRepository(Path path) throws IOException {
+    this.path = path;
+    channel = FileChannel.open(path,
+        StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    if (channel.size() == 0) {
+      ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).putInt(MAGIC).putInt(VERSION);
+      header.flip();
+      writeFully(channel, header, 0);
+      channel.force(false);
+      forceDirectory(path);
+    }
+    try {
+      replay();
+    } catch (IOException e) {
+      channel.close();
+      throw e;
+    }
+  }
+
+  @Override
+  public List<Comment> addAll(List<Comment> comments) {
+    if (comments.isEmpty()) {
+      return new ArrayList<>();
+    }
+    lock.writeLock().lock();
+    try {
+      List<Comment> stored = new ArrayList<>(comments.size());
+      List<ByteBuffer> records = new ArrayList<>(comments.size());
+      int total = 0;
+      for (Comment comment : comments) {
+        Comment withId = new Comment(lastId + stored.size() + 1, comment.getName(),
+            comment.getMessage(), comment.getTimestamp());
+        ByteBuffer record = commentRecord(withId, 0, 0);
+        stored.add(withId);
+        records.add(record);
+        total += record.remaining();
+      }
+
+      // One write and one force for the whole batch.
+      ByteBuffer batch = ByteBuffer.allocate(total);
+      for (ByteBuffer record : records) {
+        batch.put(record.duplicate());
+      }
+      batch.flip();
+      append(batch);
+
+      long offset = size - total;
+      for (int i = 0; i < stored.size(); i++) {
+        Comment comment = stored.get(i);
+        CommentPosition position = CommentPosition.of(comment);
+        offsets.put(position, offset);
+        positions.put(comment.getId(), position);
+        offset += records.get(i).remaining();
+      }
+      lastId += stored.size();
+      liveBytes += total;
+      return stored;
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  @Override
+  public Page list(int pageSize, String next, long since) {
+    CommentPosition after = next == null ? null : CommentPosition.fromToken(next);
+
+    lock.readLock().lock();
+    try {
+      NavigableMap<CommentPosition, Long> candidates =
+          after == null ? offsets : offsets.tailMap(after, false);
+
+      List<Comment> page = new ArrayList<>(pageSize);
+      for (Map.Entry<CommentPosition, Long> entry : candidates.entrySet()) {
+        if (page.size() == pageSize || entry.getKey().timestamp < since) {
+          break;
+        }
+        page.add(readComment(entry.getValue()));
+      }
+
+      // Like Datastore, a full page always has a token even if nothing follows it.
+      String nextToken =
+          page.size() == pageSize ? CommentPosition.of(page.get(page.size() - 1)).toToken() : null;
+      return new Page(page, nextToken);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public List<Long> delete(Collection<Long> ids) {
+    lock.writeLock().lock();
+    try {
+      return deleteLocked(ids);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  @Override
+  public List<Long> deleteOlderThan(long time) {
+    lock.writeLock().lock();
+    try {
+      List<Long> deleted = new ArrayList<>();
+      for (CommentPosition position
+          : offsets.tailMap(new CommentPosition(time - 1, Long.MAX_VALUE), true).keySet()) {
+        deleted.add(position.id);
+      }
+      deleteLocked(deleted);
+      return deleted;
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  @Override
+  public List<Long> deleteAll() {
+    lock.writeLock().lock();
+    try {
+      List<Long> deleted = new ArrayList<>(positions.keySet());
+      deleteLocked(deleted);
+      return deleted;
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  @Override
+  public long count() {
+    lock.readLock().lock();
+    try {
+      return positions.size();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public Reply addReply(long commentId, long parentId, Comment reply) {
+    lock.writeLock().lock();
+    try {
+      if (!positions.containsKey(commentId)) {
+        return null;
+      }
+      Map<Long, Long> thread = threads.computeIfAbsent(commentId, id -> new LinkedHashMap<>());
+      if (parentId != 0 && !thread.containsKey(parentId)) {
+        return null;
+      }
+      if (thread.size() >= MAX_THREAD_REPLIES) {
+        throw new ThreadFullException(commentId);
+      }
+
+      Comment withId =
+          new Comment(lastId + 1, reply.getName(), reply.getMessage(), reply.getTimestamp());
+      ByteBuffer record = commentRecord(withId, commentId, parentId);
+      int length = record.remaining();
+      append(record);
+
+      thread.put(withId.getId(), size - length);
+      lastId++;
+      liveBytes += length;
+      return new Reply(withId, parentId);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  @Override
+  public CommentThread getThread(long commentId, int maxDepth, int maxReplies) {
+    lock.readLock().lock();
+    try {
+      CommentPosition position = positions.get(commentId);
+      if (position == null) {
+        return null;
+      }
+      Comment root = readComment(offsets.get(position));
+
+      List<Reply> replies = new ArrayList<>();
+      for (long offset : threads.getOrDefault(commentId, new HashMap<>()).values()) {
+        replies.add(readReply(offset));
+      }
+      return CommentThread.build(root, replies, maxDepth, maxReplies);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /** Rewrites the log with only the live comments. */
+  public void compact() {
+    lock.writeLock().lock();
+    try {
+      compactLocked();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /** Returns the size of the log file in bytes. */
+  public long getSize() {
+    lock.readLock().lock();
+    try {
+      return size;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    lock.writeLock().lock();
+    try {
+      channel.close();
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /** Returns the ids that existed, each once. */
+  private List<Long> deleteLocked(Collection<Long> ids) {
+    Set<Long> found = new LinkedHashSet<>();
+    for (long id : ids) {
+      if (positions.containsKey(id)) {
+        found.add(id);
+      }
+    }
+    if (found.isEmpty()) {
+      return new ArrayList<>();
+    }
+
+    try {
+      ByteBuffer batch = ByteBuffer.allocate(found.size() * (RECORD_HEADER_BYTES + 9));
+      for (long id : found) {
+        ByteBuffer payload = ByteBuffer.allocate(9).put(DELETE).putLong(id);
+        payload.flip();
+        putRecord(batch, payload);
+      }
+      batch.flip();
+      append(batch);
+
+      for (long id : found) {
+        long offset = offsets.remove(positions.remove(id));
+        liveBytes -= recordLength(offset);
+        removeThread(id);
+      }
+
+      if (size >= MIN_COMPACT_BYTES && liveBytes < (size - HEADER_BYTES) / 2) {
+        try {
+          compactLocked();
+        } catch (IOException e) {
+          // The deletes are already on disk; compaction is tried again on the next delete.
+          System.out.println("Warning! Could not compact " + path + ": " + e);
+        }
+      }
+      return new ArrayList<>(found);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /** Drops the replies to comment {@code id} from the index. */
+  private void removeThread(long id) {
+    Map<Long, Long> thread = threads.remove(id);
+    if (thread != null) {
+      for (long offset : thread.values()) {
+        liveBytes -= recordLength(offset);
+      }
+    }
+  }
+
+  private void compactLocked() throws IOException {
+    Path compacted = path.resolveSibling(path.getFileName() + ".compact");
+    Map<CommentPosition, Long> newOffsets = new HashMap<>();
+    Map<Long, Map<Long, Long>> newThreads = new HashMap<>();
+    long newSize;
+    FileChannel out = FileChannel.open(compacted, StandardOpenOption.CREATE,
+        StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    try {
+      ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).putInt(MAGIC).putInt(VERSION);
+      header.flip();
+      writeFully(out, header, 0);
+      newSize = HEADER_BYTES;
+
+      // The newest comments may be among the dropped ones, so keep the highest id handed out.
+      ByteBuffer markPayload = ByteBuffer.allocate(9).put(ID_MARK).putLong(lastId);
+      markPayload.flip();
+      ByteBuffer mark = ByteBuffer.allocate(RECORD_HEADER_BYTES + 9);
+      putRecord(mark, markPayload);
+      mark.flip();
+      int markLength = mark.remaining();
+      writeFully(out, mark, newSize);
+      newSize += markLength;
+
+      // Live records are copied as they are, oldest comment first, each followed by its replies.
+      for (Map.Entry<CommentPosition, Long> entry : offsets.descendingMap().entrySet()) {
+        newOffsets.put(entry.getKey(), newSize);
+        newSize += copyRecord(entry.getValue(), out, newSize);
+
+        Map<Long, Long> thread = threads.get(entry.getKey().id);
+        if (thread != null) {
+          Map<Long, Long> newThread = new LinkedHashMap<>();
+          for (Map.Entry<Long, Long> reply : thread.entrySet()) {
+            newThread.put(reply.getKey(), newSize);
+            newSize += copyRecord(reply.getValue(), out, newSize);
+          }
+          newThreads.put(entry.getKey().id, newThread);
+        }
+      }
+      out.force(false);
+
+      // The new channel follows the file through the rename. If the rename fails, the old log and
+      // its channel are untouched and stay in use.
+      Files.move(compacted, path, StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException | RuntimeException e) {
+      out.close();
+      Files.deleteIfExists(compacted);
+      throw e;
+    }
+    forceDirectory(path);
+
+    channel.close();
+    channel = out;
+    offsets.putAll(newOffsets);
+    threads.clear();
+    threads.putAll(newThreads);
+    size = newSize;
+    liveBytes = newSize - HEADER_BYTES;
+  }
+
+  /** Rebuilds the index from the log, dropping a torn batch at the end if there is one. */
+  private void replay() throws IOException {
+    ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+    if (readFully(channel, header, 0) < HEADER_BYTES || header.getInt(0) != MAGIC
+        || header.getInt(4) < 1 || header.getInt(4) > VERSION) {
+      throw new IOException(path + " is not a comment log");
+    }
+
+    long fileSize = channel.size();
+    long offset = HEADER_BYTES;
+    while (offset < fileSize) {
+      ByteBuffer payload = readRecord(offset, fileSize);
+      if (payload == null) {
+        // Records outside a batch were forced before anything after them was written, so this is
+        // the BATCH record of the last batch, torn by a crash.
+        break;
+      }
+      long next = offset + RECORD_HEADER_BYTES + payload.remaining();
+      if (payload.get(0) != BATCH) {
+        // Compacted and version 1 and 2 records.
+        replayRecord(payload, offset);
+        offset = next;
+        continue;
+      }
+
+      long end = next + payload.getInt(1);
+      List<ByteBuffer> records = new ArrayList<>();
+      List<Long> recordOffsets = new ArrayList<>();
+      long recordOffset = next;
+      while (recordOffset < end && end <= fileSize) {
+        ByteBuffer record = readRecord(recordOffset, end);
+        if (record == null) {
+          break;
+        }
+        records.add(record);
+        recordOffsets.add(recordOffset);
+        recordOffset += RECORD_HEADER_BYTES + record.remaining();
+      }
+      if (recordOffset != end) {
+        if (end < fileSize) {
+          throw new IOException(path + " has a corrupt record at offset " + recordOffset);
+        }
+        // The last batch, torn by a crash. Nothing of it was acknowledged, so all of it goes.
+        break;
+      }
+      for (int i = 0; i < records.size(); i++) {
+        replayRecord(records.get(i), recordOffsets.get(i));
+      }
+      offset = end;
+    }
+
+    if (offset < fileSize) {
+      System.out.println(
+          "Warning! Dropping " + (fileSize - offset) + " unreadable bytes at the end of " + path);
+      channel.truncate(offset);
+      channel.force(false);
+    }
+    size = offset;
+  }
+
+  /** Applies the record at {@code offset}, with this payload, to the index. */
+  private void replayRecord(ByteBuffer payload, long offset) throws IOException {
+    int length = payload.remaining();
+    byte type = payload.get();
+    if (type == ADD) {
+      Comment comment = decodeAdd(payload);
+      CommentPosition position = CommentPosition.of(comment);
+      offsets.put(position, offset);
+      positions.put(comment.getId(), position);
+      liveBytes += RECORD_HEADER_BYTES + length;
+      lastId = Math.max(lastId, comment.getId());
+    } else if (type == DELETE) {
+      long id = payload.getLong();
+      CommentPosition position = positions.remove(id);
+      if (position != null) {
+        liveBytes -= recordLength(offsets.remove(position));
+        removeThread(id);
+      }
+    } else if (type == REPLY) {
+      long commentId = payload.getLong();
+      payload.getLong();
+      Comment reply = decodeAdd(payload);
+      if (positions.containsKey(commentId)) {
+        threads.computeIfAbsent(commentId, id -> new LinkedHashMap<>())
+            .put(reply.getId(), offset);
+        liveBytes += RECORD_HEADER_BYTES + length;
+      }
+      lastId = Math.max(lastId, reply.getId());
+    } else if (type == ID_MARK) {
+      liveBytes += RECORD_HEADER_BYTES + length;
+      lastId = Math.max(lastId, payload.getLong());
+    } else {
+      // The CRC matched, so this is a record type this code doesn't know, not a torn write.
+      throw new IOException(path + " has a record of unknown type " + type + " at " + offset);
+    }
+  }
+
+  /**
+   * Returns the payload of the record at {@code offset}, or null if there is no complete record
+   * with a matching CRC there.
+   */
+  private ByteBuffer readRecord(long offset, long fileSize) throws IOException {
+    if (offset + RECORD_HEADER_BYTES > fileSize) {
+      return null;
+    }
+    ByteBuffer recordHeader = ByteBuffer.allocate(RECORD_HEADER_BYTES);
+    readFully(channel, recordHeader, offset);
+    int length = recordHeader.getInt(0);
+    if (length <= 0 || length > MAX_PAYLOAD_BYTES
+        || offset + RECORD_HEADER_BYTES + length > fileSize) {
+      return null;
+    }
+
+    ByteBuffer payload = ByteBuffer.allocate(length);
+    readFully(channel, payload, offset + RECORD_HEADER_BYTES);
+    payload.flip();
+    return crc(payload) == recordHeader.getInt(4) ? payload : null;
+  }
+
+  private Comment readComment(long offset) throws IOException {
+    ByteBuffer payload = readPayload(offset);
+    payload.get();
+    return decodeAdd(payload);
+  }
+
+  private Reply readReply(long offset) throws IOException {
+    ByteBuffer payload = readPayload(offset);
+    payload.get();
+    payload.getLong();
+    long parentId = payload.getLong();
+    return new Reply(decodeAdd(payload), parentId);
+  }
+
+  private ByteBuffer readPayload(long offset) throws IOException {
+    int length = recordLength(offset) - RECORD_HEADER_BYTES;
+    ByteBuffer payload = ByteBuffer.allocate(length);
+    readFully(channel, payload, offset + RECORD_HEADER_BYTES);
+    payload.flip();
+    return payload;
+  }
+
+  /**
+   * Copies the record at {@code offset} to {@code out} at {@code position} and returns its length.
+   */
+  private int copyRecord(long offset, FileChannel out, long position) throws IOException {
+    int length = recordLength(offset);
+    ByteBuffer record = ByteBuffer.allocate(length);
+    readFully(channel, record, offset);
+    record.flip();
+    writeFully(out, record, position);
+    return length;
+  }
+
+  /** Returns the length, including its header, of the record at {@code offset}. */
+  private int recordLength(long offset) {
+    ByteBuffer length = ByteBuffer.allocate(4);
+    try {
+      readFully(channel, length, offset);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return RECORD_HEADER_BYTES + length.getInt(0);
+  }
+
+  /**
+   * Appends the records as one batch, after a BATCH record, and forces them to disk. They end at
+   * the new {@code size}.
+   */
+  private void append(ByteBuffer records) throws IOException {
+    int length = records.remaining();
+    ByteBuffer marker = ByteBuffer.allocate(5).put(BATCH).putInt(length);
+    marker.flip();
+    ByteBuffer batch = ByteBuffer.allocate(BATCH_RECORD_BYTES + length);
+    putRecord(batch, marker);
+    batch.put(records);
+    batch.flip();
+    writeFully(channel, batch, size);
+    channel.force(false);
+    size += BATCH_RECORD_BYTES + length;
+  }
+
+  /** Encodes an ADD record, or a REPLY record if {@code commentId} isn't 0. */
+  private static ByteBuffer commentRecord(Comment comment, long commentId, long parentId) {
+    byte[] name = comment.getName().getBytes(StandardCharsets.UTF_8);
+    byte[] message = comment.getMessage().getBytes(StandardCharsets.UTF_8);
+    int replyBytes = commentId == 0 ? 0 : 16;
+    ByteBuffer payload =
+        ByteBuffer.allocate(1 + replyBytes + 8 + 8 + 4 + name.length + 4 + message.length);
+    if (commentId == 0) {
+      payload.put(ADD);
+    } else {
+      payload.put(REPLY).putLong(commentId).putLong(parentId);
+    }
+    payload.putLong(comment.getId()).putLong(comment.getTimestamp())
+        .putInt(name.length).put(name).putInt(message.length).put(message);
+    payload.flip();
+
+    ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_BYTES + payload.remaining());
+    putRecord(record, payload);
+    record.flip();
+    return record;
+  }
+
+  private static void putRecord(ByteBuffer out, ByteBuffer payload) {
+    out.putInt(payload.remaining()).putInt(crc(payload)).put(payload);
+  }
+
+  private static Comment decodeAdd(ByteBuffer payload) {
+    long id = payload.getLong();
+    long timestamp = payload.getLong();
+    byte[] name = new byte[payload.getInt()];
+    payload.get(name);
+    byte[] message = new byte[payload.getInt()];
+    payload.get(message);
+    return new Comment(id, new String(name, StandardCharsets.UTF_8),
+        new String(message, StandardCharsets.UTF_8), timestamp);
+  }
+
+  private static int crc(ByteBuffer payload) {
+    CRC32 crc = new CRC32();
+    crc.update(payload.duplicate());
+    return (int) crc.getValue();
+  }
+
+  private static int readFully(FileChannel channel, ByteBuffer buffer, long position)
+      throws IOException {
+    int total = 0;
+    while (buffer.hasRemaining()) {
+      int read = channel.read(buffer, position + total);
+      if (read < 0) {
+        break;
+      }
+      total += read;
+    }
+    return total;
+  }
+
+  private static void writeFully(FileChannel channel, ByteBuffer buffer, long position)
+      throws IOException {
+    long written = 0;
+    while (buffer.hasRemaining()) {
+      written += channel.write(buffer, position + written);
+    }
+  }
+
+  /**
+   * Forces the directory entry of {@code file} to disk, so that creating or renaming it survives a
+   * crash. Some platforms, like Windows, can't open a directory; there this does nothing.
+   */
+  private static void forceDirectory(Path file) {
+    Path directory = file.toAbsolutePath().getParent();
+    try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+      channel.force(true);
+    } catch (IOException e) {
+      // Not supported on this platform.
+    }
+  }
+}
@@ -0,0 +1,36 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import java.util.List;
+
+/**
+ * Thrown by {@link CommentRepository#addAll} when it stored only the first comments of a batch
+ * before failing. Retrying the whole batch would store those twice, so retry only the rest.
+ */
+public final class PartialAddException extends RuntimeException {
+
+  private final transient List<Comment> stored;
+
+  public PartialAddException(List<Comment> stored, Throwable cause) {
+    super("Stored " + stored.size() + " comments before failing", cause);
+    this.stored = stored;
+  }
+
+  /** Returns the comments that were stored, with their ids, in the order they were given. */
+  public List<Comment> getStored() {
+    return stored;
+  }
+}
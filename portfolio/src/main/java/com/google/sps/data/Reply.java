@@ -0,0 +1,39 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+/** A reply in a comment thread, and what it replies to. */
+public final class Reply {
+
+  private final Comment comment;
+  private final long parentId;
+
+  /**
+   * @param comment - the reply itself; its id is only unique within the thread
+   * @param parentId - id of the reply this one answers, or 0 if it answers the comment
+   */
+  public Reply(Comment comment, long parentId) {
+    this.comment = comment;
+    this.parentId = parentId;
+  }
+
+  public Comment getComment() {
+    return comment;
+  }
+
+  public long getParentId() {
+    return parentId;
+  }
+}
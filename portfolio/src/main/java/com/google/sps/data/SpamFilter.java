@@ -0,0 +1,274 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Rejects floods of near-identical messages, like a bot posting thousands of slightly varied
+ * copies of the same spam. Everything is in memory, so a check never touches Datastore.
+ *
+ * <p>Each message is cut into overlapping {@code SHINGLE_LENGTH}-character shingles and summarized
+ * by a MinHash signature of {@code HASHES} values. The share of equal values in two signatures
+ * estimates how similar the messages' shingle sets are. To avoid comparing against every recent
+ * message, signatures are split into {@code BANDS} bands, and only messages that share an entire
+ * band with the new one (locality-sensitive hashing) are compared. With 16 bands of 4 values,
+ * messages that are 80% similar share a band with probability above 99.9%.
+ *
+ * <p>A message is rejected when at least {@code MAX_SIMILAR} messages submitted in the last
+ * {@code WINDOW_MS} are {@code SIMILARITY} similar to it. Rejected messages are remembered too, so
+ * a flood stays blocked for as long as it continues. The last {@code CAPACITY} messages are kept.
+ *
+ * <p>Messages with fewer than {@code MIN_SHINGLES} shingles are always accepted and not
+ * remembered. Short replies like "Thanks!" or "+1" are legitimately repeated by many people, and a
+ * few shingles say too little to tell a flood from a conversation.
+ *
+ * <p>Each instance has its own filter, so a flood spread over many instances needs more messages
+ * to be caught. The hash functions are picked at random for each filter, so a spammer can't work
+ * out offline which variants of a message would land in different bands.
+ */
+public final class SpamFilter {
+
+  /** What to do with a submission. */
+  public enum Verdict {
+    ACCEPT,
+    REJECT
+  }
+
+  private static final int SHINGLE_LENGTH = 5;
+  // About 24 characters of normalized text.
+  private static final int MIN_SHINGLES = 20;
+  private static final int BANDS = 16;
+  private static final int ROWS = 4;
+  private static final int HASHES = BANDS * ROWS;
+
+  private static final double SIMILARITY = 0.8;
+  private static final int MAX_SIMILAR = 3;
+  private static final long WINDOW_MS = 10 * 60 * 1000;
+  private static final int CAPACITY = 2000;
+
+  private static final SecureRandom SEEDS = new SecureRandom();
+  private static final SpamFilter INSTANCE = new SpamFilter();
+
+  // The i-th MinHash function is h(x) = multipliers[i] * x + addends[i], with 64-bit overflow.
+  private final long[] multipliers = new long[HASHES];
+  private final long[] addends = new long[HASHES];
+
+  // Recent signatures in a ring, oldest at (next - size). Guarded by this.
+  private final long[][] signatures = new long[CAPACITY][];
+  private final long[] times = new long[CAPACITY];
+  private int next;
+  private int size;
+
+  // For each band, the ring slots whose signature has a given band key. Guarded by this.
+  private final List<Map<Long, List<Integer>>> bands = new ArrayList<>(BANDS);
+
+  private long checked;
+  private long rejected;
+
+  // Package-private for tests, which need a filter of their own.
+  SpamFilter() {
+    for (int i = 0; i < HASHES; i++) {
+      multipliers[i] = SEEDS.nextLong() | 1;
+      addends[i] = SEEDS.nextLong();
+    }
+    for (int band = 0; band < BANDS; band++) {
+      bands.add(new HashMap<>());
+    }
+  }
+
+  /** Returns the filter shared by all servlets in this instance. */
+  public static SpamFilter getInstance() {
+    return INSTANCE;
+  }
+
+  /** Decides whether {@code message}, submitted at {@code now}, may be stored, and remembers it. */
+  public Verdict check(String message, long now) {
+    String text = normalize(message);
+    if (text.length() - SHINGLE_LENGTH + 1 < MIN_SHINGLES) {
+      synchronized (this) {
+        checked++;
+      }
+      return Verdict.ACCEPT;
+    }
+    long[] signature = signature(text);
+    long[] bandKeys = bandKeys(signature);
+
+    synchronized (this) {
+      checked++;
+      evict(now - WINDOW_MS);
+
+      Set<Integer> candidates = new HashSet<>();
+      int similar = 0;
+      for (int band = 0; band < BANDS && similar < MAX_SIMILAR; band++) {
+        List<Integer> bucket = bands.get(band).get(bandKeys[band]);
+        if (bucket == null) {
+          continue;
+        }
+        for (int slot : bucket) {
+          if (candidates.add(slot) && similarity(signature, signatures[slot]) >= SIMILARITY) {
+            similar++;
+            if (similar == MAX_SIMILAR) {
+              break;
+            }
+          }
+        }
+      }
+
+      remember(signature, bandKeys, now);
+      if (similar >= MAX_SIMILAR) {
+        rejected++;
+        return Verdict.REJECT;
+      }
+      return Verdict.ACCEPT;
+    }
+  }
+
+  /** Returns check and reject counts plus the number of remembered messages, for monitoring. */
+  public synchronized Map<String, Long> getStats() {
+    Map<String, Long> stats = new LinkedHashMap<>();
+    stats.put("checked", checked);
+    stats.put("rejected", rejected);
+    stats.put("remembered", (long) size);
+    return stats;
+  }
+
+  /**
+   * Lowercases the message and turns each run of characters other than letters and digits into a
+   * space.
+   */
+  static String normalize(String message) {
+    StringBuilder normalized = new StringBuilder(message.length());
+    boolean space = true;
+    for (int i = 0; i < message.length(); i++) {
+      char c = message.charAt(i);
+      if (Character.isLetterOrDigit(c)) {
+        normalized.append(Character.toLowerCase(c));
+        space = false;
+      } else if (!space) {
+        normalized.append(' ');
+        space = true;
+      }
+    }
+    return normalized.toString().trim();
+  }
+
+  /** Returns the MinHash signature of the message's shingles. */
+  private long[] signature(String text) {
+    long[] signature = new long[HASHES];
+    Arrays.fill(signature, Long.MAX_VALUE);
+
+    int shingles = text.length() - SHINGLE_LENGTH + 1;
+    for (int start = 0; start < shingles; start++) {
+      long shingle = 0;
+      for (int i = start; i < start + SHINGLE_LENGTH; i++) {
+        shingle = shingle * 31 + text.charAt(i);
+      }
+      shingle = mix(shingle);
+
+      for (int i = 0; i < HASHES; i++) {
+        long hash = multipliers[i] * shingle + addends[i];
+        if (hash < signature[i]) {
+          signature[i] = hash;
+        }
+      }
+    }
+    return signature;
+  }
+
+  private static long[] bandKeys(long[] signature) {
+    long[] keys = new long[BANDS];
+    for (int band = 0; band < BANDS; band++) {
+      long key = band;
+      for (int row = 0; row < ROWS; row++) {
+        key = key * 0x9e3779b97f4a7c15L + signature[band * ROWS + row];
+      }
+      keys[band] = mix(key);
+    }
+    return keys;
+  }
+
+  /** Estimates the Jaccard similarity of two messages from their signatures. */
+  private static double similarity(long[] a, long[] b) {
+    int equal = 0;
+    for (int i = 0; i < HASHES; i++) {
+      if (a[i] == b[i]) {
+        equal++;
+      }
+    }
+    return (double) equal / HASHES;
+  }
+
+  /**
+   * Adds a signature to the ring and the band index, evicting the oldest one if the ring is full.
+   */
+  private void remember(long[] signature, long[] bandKeys, long now) {
+    if (size == CAPACITY) {
+      forgetOldest();
+    }
+    int slot = next;
+    signatures[slot] = signature;
+    times[slot] = now;
+    for (int band = 0; band < BANDS; band++) {
+      bands.get(band).computeIfAbsent(bandKeys[band], key -> new ArrayList<>()).add(slot);
+    }
+    next = (next + 1) % CAPACITY;
+    size++;
+  }
+
+  /** Forgets every message submitted before {@code cutoff}. */
+  private void evict(long cutoff) {
+    while (size > 0 && times[oldestSlot()] < cutoff) {
+      forgetOldest();
+    }
+  }
+
+  private void forgetOldest() {
+    int slot = oldestSlot();
+    long[] bandKeys = bandKeys(signatures[slot]);
+    for (int band = 0; band < BANDS; band++) {
+      Map<Long, List<Integer>> buckets = bands.get(band);
+      List<Integer> bucket = buckets.get(bandKeys[band]);
+      bucket.remove(Integer.valueOf(slot));
+      if (bucket.isEmpty()) {
+        buckets.remove(bandKeys[band]);
+      }
+    }
+    signatures[slot] = null;
+    size--;
+  }
+
+  private int oldestSlot() {
+    return (next - size + CAPACITY) % CAPACITY;
+  }
+
+  /** Spreads the bits of {@code x} (the MurmurHash3 finalizer). */
+  private static long mix(long x) {
+    x ^= x >>> 33;
+    x *= 0xff51afd7ed558ccdL;
+    x ^= x >>> 33;
+    x *= 0xc4ceb53ae63e94c5L;
+    x ^= x >>> 33;
+    return x;
+  }
+}
@@ -0,0 +1,51 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Translator for local runs and tests that don't have Cloud credentials. It "translates" a text by
+ * prefixing it with the language code, e.g. {@code [es] Hello}, and counts how many texts it was
+ * asked for so callers can check what reached the translator.
+ */
+public final class StubTranslator implements Translator {
+
+  private int batches;
+  private int texts;
+
+  @Override
+  public synchronized List<String> translate(List<String> texts, String languageCode) {
+    batches++;
+    this.texts += texts.size();
+
+    List<String> translatedTexts = new ArrayList<>(texts.size());
+    for (String text : texts) {
+      translatedTexts.add("[" + languageCode + "] " + text);
+    }
+    return translatedTexts;
+  }
+
+  /** Returns how many times {@link #translate} was called. */
+  public synchronized int getBatches() {
+    return batches;
+  }
+
+  /** Returns how many texts were passed to {@link #translate} in total. */
+  public synchronized int getTexts() {
+    return texts;
+  }
+}
@@ -0,0 +1,53 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+
+/** Reads comment timestamps, which are stored as epoch milliseconds. */
+public final class Timestamps {
+
+  // Comments written before timestamps became numbers stored this format, in the server's
+  // time zone (UTC on App Engine).
+  private static final DateTimeFormatter LEGACY_FORMAT =
+      DateTimeFormatter.ofPattern("yyyy/MM/dd HH:mm:ss");
+
+  private Timestamps() {}
+
+  /**
+   * Returns the timestamp property of a comment in epoch milliseconds. Accepts both the numeric
+   * format and the legacy {@code "yyyy/MM/dd HH:mm:ss"} strings that haven't been backfilled yet.
+   * @param property - the value of the comment's timestamp property
+   * @return the timestamp in milliseconds since the epoch
+   */
+  public static long toMillis(Object property) {
+    if (property instanceof Long) {
+      return (Long) property;
+    }
+    if (property instanceof String) {
+      return LocalDateTime.parse((String) property, LEGACY_FORMAT)
+          .toInstant(ZoneOffset.UTC)
+          .toEpochMilli();
+    }
+    throw new IllegalArgumentException("Unexpected timestamp: " + property);
+  }
+
+  /** Returns true if the property still uses the legacy string format. */
+  public static boolean isLegacy(Object property) {
+    return property instanceof String;
+  }
+}
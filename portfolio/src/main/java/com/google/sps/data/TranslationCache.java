@@ -0,0 +1,123 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * In-process cache of translations used by {@code TranslationServlet}.
+ *
+ * <p>Entries are keyed by the language and a SHA-256 hash of the original text, so long comments
+ * don't keep their original text in memory twice. A batch of texts is deduplicated first, repeats
+ * are served from the cache, and only the remaining texts are sent to the {@link Translator}, in
+ * as few calls as the translator allows.
+ */
+public final class TranslationCache {
+
+  // Number of translations to keep. The least recently used are evicted first.
+  private static final int MAX_ENTRIES = 4096;
+
+  // The Cloud Translation API accepts at most this many texts per request.
+  private static final int MAX_BATCH_SIZE = 128;
+
+  private final Translator translator;
+
+  private final Map<String, String> translations =
+      new LinkedHashMap<String, String>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+          return size() > MAX_ENTRIES;
+        }
+      };
+
+  public TranslationCache(Translator translator) {
+    this.translator = translator;
+  }
+
+  /**
+   * Returns the translations of {@code texts} into {@code languageCode}, in the same order.
+   */
+  public List<String> translate(List<String> texts, String languageCode) {
+    List<String> keys = new ArrayList<>(texts.size());
+    for (String text : texts) {
+      keys.add(key(text, languageCode));
+    }
+
+    // Take the cached translations now and collect each distinct text that isn't cached yet. The
+    // hits are copied out rather than looked up again later, because caching the misses may evict
+    // them.
+    List<String> results = new ArrayList<>(texts.size());
+    Set<String> missing = new LinkedHashSet<>();
+    synchronized (translations) {
+      for (int i = 0; i < texts.size(); i++) {
+        String cached = translations.get(keys.get(i));
+        if (cached == null) {
+          missing.add(texts.get(i));
+        }
+        results.add(cached);
+      }
+    }
+
+    // Translate the misses outside the lock so slow calls don't block cache hits.
+    Map<String, String> translated = new LinkedHashMap<>();
+    List<String> misses = new ArrayList<>(missing);
+    for (int start = 0; start < misses.size(); start += MAX_BATCH_SIZE) {
+      List<String> batch = misses.subList(start, Math.min(start + MAX_BATCH_SIZE, misses.size()));
+      List<String> batchTranslations = translator.translate(batch, languageCode);
+      for (int i = 0; i < batch.size(); i++) {
+        translated.put(batch.get(i), batchTranslations.get(i));
+      }
+    }
+
+    synchronized (translations) {
+      for (Map.Entry<String, String> entry : translated.entrySet()) {
+        translations.put(key(entry.getKey(), languageCode), entry.getValue());
+      }
+    }
+    for (int i = 0; i < texts.size(); i++) {
+      if (results.get(i) == null) {
+        results.set(i, translated.get(texts.get(i)));
+      }
+    }
+    return results;
+  }
+
+  /** Returns the number of cached translations. */
+  public int size() {
+    synchronized (translations) {
+      return translations.size();
+    }
+  }
+
+  private static String key(String text, String languageCode) {
+    try {
+      MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      byte[] hash = digest.digest(text.getBytes(StandardCharsets.UTF_8));
+      return languageCode + ":" + Base64.getEncoder().encodeToString(hash);
+    } catch (NoSuchAlgorithmException e) {
+      // Every Java platform is required to support SHA-256.
+      throw new IllegalStateException(e);
+    }
+  }
+}
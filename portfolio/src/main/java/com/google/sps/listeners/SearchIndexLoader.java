@@ -0,0 +1,50 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.listeners;
+
+import com.google.sps.data.Comment;
+import com.google.sps.data.CommentRepository;
+import com.google.sps.data.CommentSearchIndex;
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
+import javax.servlet.annotation.WebListener;
+
+/**
+ * Builds the comment search index when the app starts. Comments are read a page at a time, so
+ * startup never holds more than one page of comments in memory besides the index.
+ */
+@WebListener
+public class SearchIndexLoader implements ServletContextListener {
+
+  private static final int PAGE_SIZE = 500;
+
+  @Override
+  public void contextInitialized(ServletContextEvent event) {
+    CommentRepository repository = CommentRepository.getInstance();
+    CommentSearchIndex index = CommentSearchIndex.getInstance();
+
+    String next = null;
+    do {
+      CommentRepository.Page page = repository.list(PAGE_SIZE, next, 0);
+      for (Comment comment : page.getComments()) {
+        index.add(comment.getId(), comment.getName(), comment.getMessage(), comment.getTimestamp());
+      }
+      next = page.getNext();
+    } while (next != null);
+  }
+
+  @Override
+  public void contextDestroyed(ServletContextEvent event) {}
+}
@@ -0,0 +1,45 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import com.google.appengine.api.users.UserService;
+import com.google.appengine.api.users.UserServiceFactory;
+import java.io.IOException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/** Checks that maintenance requests come from App Engine cron or from an admin of the app. */
+final class AdminRequests {
+
+  private AdminRequests() {}
+
+  /**
+   * Returns true if {@code request} was sent by App Engine cron or by a signed-in admin. Otherwise
+   * sends a 403 and returns false. App Engine strips the cron header from outside requests, so it
+   * can't be forged.
+   */
+  static boolean check(HttpServletRequest request, HttpServletResponse response)
+      throws IOException {
+    if ("true".equals(request.getHeader("X-Appengine-Cron"))) {
+      return true;
+    }
+    UserService userService = UserServiceFactory.getUserService();
+    if (userService.isUserLoggedIn() && userService.isUserAdmin()) {
+      return true;
+    }
+    response.sendError(HttpServletResponse.SC_FORBIDDEN, "Only cron jobs and admins can do this");
+    return false;
+  }
+}
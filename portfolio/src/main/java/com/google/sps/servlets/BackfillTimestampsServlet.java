@@ -0,0 +1,204 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import com.google.appengine.api.datastore.DatastoreService;
+import com.google.appengine.api.datastore.DatastoreServiceFactory;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.EntityNotFoundException;
+import com.google.appengine.api.datastore.FetchOptions;
+import com.google.appengine.api.datastore.Key;
+import com.google.appengine.api.datastore.KeyFactory;
+import com.google.appengine.api.datastore.Query;
+import com.google.appengine.api.datastore.Query.FilterOperator;
+import com.google.appengine.api.datastore.Query.FilterPredicate;
+import com.google.appengine.api.datastore.Query.SortDirection;
+import com.google.appengine.api.datastore.Transaction;
+import com.google.appengine.api.datastore.TransactionOptions;
+import com.google.gson.Gson;
+import com.google.sps.data.Comment;
+import com.google.sps.data.CommentChanges;
+import com.google.sps.data.Timestamps;
+import java.io.IOException;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Servlet that converts the legacy {@code "yyyy/MM/dd HH:mm:ss"} string timestamps of old comments
+ * into epoch milliseconds.
+ *
+ * <p>Comments are converted in key order, one chunk at a time, and the last converted key is saved
+ * after every chunk. Each POST handles at most {@code chunks} chunks, so the job can be run
+ * repeatedly until the response says it is done, and picks up where it stopped if a request fails.
+ * Converting a comment twice is harmless, so the job is safe to re-run. POST with
+ * {@code restart=true} to start again from the first comment.
+ *
+ * <p>The comments of a chunk that still need converting are read again and written in
+ * cross-group transactions of {@code TRANSACTION_SIZE}, so a comment deleted after the chunk was
+ * queried stays deleted and each chunk takes only a few round trips. A timestamp that can't be
+ * parsed is logged and left alone, so one bad comment can't stop the job. Only admins can run the
+ * job; it is a one-off, so no cron entry runs it.
+ */
+@WebServlet("/backfill-timestamps")
+public class BackfillTimestampsServlet extends HttpServlet {
+
+  private static final int CHUNK_SIZE = 100;
+  private static final int DEFAULT_CHUNKS_PER_REQUEST = 10;
+  // Cross-group transactions can touch at most 25 entity groups.
+  private static final int TRANSACTION_SIZE = 25;
+  private static final int MAX_TRANSACTION_ATTEMPTS = 3;
+
+  private static final Key CHECKPOINT_KEY = KeyFactory.createKey("Migration", "comment-timestamps");
+
+  private final Gson gson = new Gson();
+
+  @Override
+  public void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    if (!AdminRequests.check(request, response)) {
+      return;
+    }
+
+    int maxChunks = DEFAULT_CHUNKS_PER_REQUEST;
+    String userChunks = request.getParameter("chunks");
+    if (userChunks != null && !userChunks.isEmpty()) {
+      try {
+        maxChunks = Math.max(1, Integer.parseInt(userChunks));
+      } catch (NumberFormatException e) {
+        response.sendError(HttpServletResponse.SC_BAD_REQUEST, "chunks must be an integer");
+        return;
+      }
+    }
+
+    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+    Entity checkpoint = loadCheckpoint(datastore);
+    if (Boolean.parseBoolean(request.getParameter("restart"))) {
+      checkpoint = new Entity(CHECKPOINT_KEY);
+    }
+
+    Key lastKey = (Key) checkpoint.getProperty("lastKey");
+    boolean done = false;
+    int scanned = 0;
+    List<Comment> converted = new ArrayList<>();
+    for (int chunk = 0; chunk < maxChunks && !done; chunk++) {
+      Query query =
+          new Query("Comment").addSort(Entity.KEY_RESERVED_PROPERTY, SortDirection.ASCENDING);
+      if (lastKey != null) {
+        query.setFilter(new FilterPredicate(
+            Entity.KEY_RESERVED_PROPERTY, FilterOperator.GREATER_THAN, lastKey));
+      }
+      List<Entity> comments =
+          datastore.prepare(query).asList(FetchOptions.Builder.withLimit(CHUNK_SIZE));
+
+      // Only write back the comments that still need converting.
+      List<Key> legacy = new ArrayList<>();
+      for (Entity comment : comments) {
+        if (Timestamps.isLegacy(comment.getProperty("timestamp"))) {
+          legacy.add(comment.getKey());
+        }
+      }
+      for (int start = 0; start < legacy.size(); start += TRANSACTION_SIZE) {
+        converted.addAll(convert(datastore,
+            legacy.subList(start, Math.min(start + TRANSACTION_SIZE, legacy.size()))));
+      }
+
+      scanned += comments.size();
+      done = comments.size() < CHUNK_SIZE;
+      if (!comments.isEmpty()) {
+        lastKey = comments.get(comments.size() - 1).getKey();
+      }
+
+      // Save progress after every chunk so a failed request loses at most one chunk of work.
+      checkpoint.setUnindexedProperty("lastKey", lastKey);
+      checkpoint.setUnindexedProperty("done", done);
+      datastore.put(checkpoint);
+    }
+
+    // Converted comments sort differently, so cached pages, the feed and the index are out of date.
+    if (!converted.isEmpty()) {
+      CommentChanges.changed(converted);
+    }
+
+    Map<String, Object> progress = new LinkedHashMap<>();
+    progress.put("scanned", scanned);
+    progress.put("converted", converted.size());
+    progress.put("done", done);
+    response.setContentType("application/json;");
+    response.getWriter().println(gson.toJson(progress));
+  }
+
+  /**
+   * Converts the timestamps of the comments with these keys in one cross-group transaction.
+   * Returns the converted comments, leaving out those deleted or converted since they were queried
+   * and those whose timestamp can't be parsed.
+   */
+  private static List<Comment> convert(DatastoreService datastore, List<Key> keys) {
+    for (int attempt = 1; ; attempt++) {
+      Transaction transaction =
+          datastore.beginTransaction(TransactionOptions.Builder.withXG(true));
+      try {
+        List<Entity> changed = new ArrayList<>(keys.size());
+        List<Comment> converted = new ArrayList<>(keys.size());
+        for (Entity comment : datastore.get(transaction, keys).values()) {
+          Object timestamp = comment.getProperty("timestamp");
+          if (!Timestamps.isLegacy(timestamp)) {
+            continue;
+          }
+          long millis;
+          try {
+            millis = Timestamps.toMillis(timestamp);
+          } catch (DateTimeParseException e) {
+            System.out.println("Warning! Skipping comment " + comment.getKey().getId()
+                + " with unreadable timestamp " + timestamp);
+            continue;
+          }
+          comment.setProperty("timestamp", millis);
+          changed.add(comment);
+          converted.add(new Comment(comment.getKey().getId(),
+              (String) comment.getProperty("name"), (String) comment.getProperty("message"),
+              millis));
+        }
+        if (!changed.isEmpty()) {
+          datastore.put(transaction, changed);
+        }
+        transaction.commit();
+        return converted;
+      } catch (ConcurrentModificationException e) {
+        if (attempt == MAX_TRANSACTION_ATTEMPTS) {
+          throw e;
+        }
+      } finally {
+        if (transaction.isActive()) {
+          transaction.rollback();
+        }
+      }
+    }
+  }
+
+  private static Entity loadCheckpoint(DatastoreService datastore) {
+    try {
+      return datastore.get(CHECKPOINT_KEY);
+    } catch (EntityNotFoundException e) {
+      return new Entity(CHECKPOINT_KEY);
+    }
+  }
+}
@@ -0,0 +1,90 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import com.google.gson.Gson;
+import com.google.sps.data.CommentChanges;
+import com.google.sps.data.CommentRepository;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Servlet responsible for deleting many comments in one request. Pick the comments with exactly one
+ * of these parameters:
+ *   id - repeated, one per comment to delete
+ *   olderThan - delete comments made before this time, in milliseconds since the epoch
+ *   all=true - delete every comment
+ * Only cron jobs and admins can use olderThan and all. Responds with the number and ids of the
+ * comments that were actually deleted, so the page can update without reloading the list.
+ */
+@WebServlet("/delete-comments")
+public class BulkDeleteServlet extends HttpServlet {
+
+  private final Gson gson = new Gson();
+
+  @Override
+  public void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    String[] ids = request.getParameterValues("id");
+    String olderThan = request.getParameter("olderThan");
+    boolean all = Boolean.parseBoolean(request.getParameter("all"));
+
+    CommentRepository repository = CommentRepository.getInstance();
+    List<Long> deleted;
+    try {
+      if (ids != null && olderThan == null && !all) {
+        List<Long> requested = new ArrayList<>(ids.length);
+        for (String id : ids) {
+          requested.add(Long.parseLong(id));
+        }
+        deleted = repository.delete(requested);
+      } else if (ids == null && olderThan != null && !all) {
+        long time = Long.parseLong(olderThan);
+        if (!AdminRequests.check(request, response)) {
+          return;
+        }
+        deleted = repository.deleteOlderThan(time);
+      } else if (ids == null && olderThan == null && all) {
+        if (!AdminRequests.check(request, response)) {
+          return;
+        }
+        deleted = repository.deleteAll();
+      } else {
+        response.sendError(
+            HttpServletResponse.SC_BAD_REQUEST, "Use exactly one of id, olderThan or all.");
+        return;
+      }
+    } catch (NumberFormatException e) {
+      response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Ids and times must be numbers.");
+      return;
+    }
+
+    if (!deleted.isEmpty()) {
+      CommentChanges.removed(deleted);
+    }
+
+    Map<String, Object> summary = new LinkedHashMap<>();
+    summary.put("deleted", deleted.size());
+    summary.put("ids", deleted);
+    response.setContentType("application/json;");
+    response.getWriter().println(gson.toJson(summary));
+  }
+}
@@ -0,0 +1,221 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import com.google.sps.data.CommentEvents;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Streams comment changes to the page as server-sent events (see {@link CommentEvents}), so the
+ * page doesn't have to reload the list to see new or deleted comments.
+ *
+ * <p>Streams use async processing with non-blocking writes: an open stream holds no container
+ * thread, and nothing runs for it until there is an event to send. Each stream buffers at most
+ * {@code BUFFER_SIZE} events. A client that can't keep up is disconnected and reconnects with
+ * {@code Last-Event-ID}; if it missed too much it is told to reload the list.
+ *
+ * <p>App Engine standard buffers the whole response and ends every request after 60 seconds, so
+ * a stream can't stay open there. With the {@code comments.eventsLongPoll} system property (on in
+ * appengine-web.xml), a stream ends as soon as it has sent an event, or after
+ * {@code LONG_POLL_TIMEOUT_MS} without one, and EventSource reconnects with {@code Last-Event-ID}.
+ * That turns the stream into long polling, and nothing is missed between requests. The app is
+ * threadsafe, so a waiting long poll doesn't keep an instance from serving other requests.
+ *
+ * <p>Events only reach streams on the instance where the comment was written or deleted, since
+ * {@link CommentEvents} is kept in memory. With several instances running, a viewer connected to
+ * another one sees the change when the list is next loaded.
+ */
+@WebServlet(urlPatterns = "/comment-events", asyncSupported = true)
+public class CommentEventsServlet extends HttpServlet {
+
+  // Events buffered per stream. Larger than the history, so a reconnect's backlog always fits.
+  private static final int BUFFER_SIZE = 2 * CommentEvents.HISTORY_SIZE;
+
+  private static final boolean LONG_POLL = Boolean.getBoolean("comments.eventsLongPoll");
+
+  // Streams are closed after this long; EventSource reconnects on its own.
+  private static final long TIMEOUT_MS = 5 * 60 * 1000;
+  // Under App Engine's 60 second request deadline.
+  private static final long LONG_POLL_TIMEOUT_MS = 50 * 1000;
+
+  // How long the browser waits before reconnecting, in milliseconds. Long polls reconnect after
+  // every event, so they wait less.
+  private static final int RETRY_MS = 2000;
+  private static final int LONG_POLL_RETRY_MS = 250;
+
+  @Override
+  public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    long lastEventId = 0;
+    String userLastEventId = request.getHeader("Last-Event-ID");
+    if (userLastEventId != null) {
+      try {
+        lastEventId = Long.parseLong(userLastEventId);
+      } catch (NumberFormatException e) {
+        // Ids from another deployment; start over.
+        lastEventId = Long.MAX_VALUE;
+      }
+    }
+
+    response.setContentType("text/event-stream");
+    response.setCharacterEncoding("UTF-8");
+    response.setHeader("Cache-Control", "no-cache");
+
+    AsyncContext context = request.startAsync();
+    context.setTimeout(LONG_POLL ? LONG_POLL_TIMEOUT_MS : TIMEOUT_MS);
+    Stream stream = new Stream(context, response.getOutputStream());
+    context.addListener(stream);
+
+    stream.buffer("retry: " + (LONG_POLL ? LONG_POLL_RETRY_MS : RETRY_MS) + "\n\n");
+    CommentEvents.getInstance().subscribe(stream, lastEventId);
+    // Switches the output to non-blocking mode; the container then calls onWritePossible.
+    stream.out.setWriteListener(stream);
+  }
+
+  /** One open event stream. */
+  private static final class Stream
+      implements CommentEvents.Listener, WriteListener, AsyncListener {
+    private final AsyncContext context;
+    private final ServletOutputStream out;
+    private final BlockingQueue<byte[]> buffer = new ArrayBlockingQueue<>(BUFFER_SIZE);
+
+    // Whether an event, not just the retry line, was buffered; a long poll ends after sending it.
+    private volatile boolean hasEvent;
+
+    // Guarded by this.
+    private boolean writable;
+    private boolean needsFlush;
+    private boolean closed;
+
+    Stream(AsyncContext context, ServletOutputStream out) {
+      this.context = context;
+      this.out = out;
+    }
+
+    /** Buffers {@code text} for sending and returns false if the buffer is full. */
+    boolean buffer(String text) {
+      return buffer.offer(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public boolean offer(String event) {
+      if (!buffer(event)) {
+        return false;
+      }
+      hasEvent = true;
+      return true;
+    }
+
+    @Override
+    public void flush() {
+      drain();
+    }
+
+    @Override
+    public void dropped() {
+      close();
+    }
+
+    @Override
+    public void onWritePossible() {
+      synchronized (this) {
+        writable = true;
+      }
+      drain();
+    }
+
+    @Override
+    public void onError(Throwable t) {
+      close();
+    }
+
+    @Override
+    public void onComplete(AsyncEvent event) {
+      CommentEvents.getInstance().unsubscribe(this);
+    }
+
+    @Override
+    public void onTimeout(AsyncEvent event) {
+      close();
+    }
+
+    @Override
+    public void onError(AsyncEvent event) {
+      close();
+    }
+
+    @Override
+    public void onStartAsync(AsyncEvent event) {}
+
+    private void drain() {
+      // Never called from offer(), which runs while CommentEvents iterates over its listeners:
+      // close() unsubscribes this stream.
+      if (!write()) {
+        close();
+      }
+    }
+
+    /**
+     * Writes buffered events for as long as the connection accepts them without blocking.
+     * Returns false if the stream should be closed: the connection failed, or this is a long poll
+     * and it has sent an event.
+     */
+    private synchronized boolean write() {
+      if (!writable || closed) {
+        return true;
+      }
+      try {
+        while (out.isReady()) {
+          byte[] event = buffer.poll();
+          if (event != null) {
+            out.write(event);
+            needsFlush = true;
+          } else if (needsFlush) {
+            needsFlush = false;
+            out.flush();
+          } else {
+            return !(LONG_POLL && hasEvent);
+          }
+        }
+        // isReady() returned false, so the container calls onWritePossible once it can write.
+        return true;
+      } catch (IOException e) {
+        return false;
+      }
+    }
+
+    private void close() {
+      synchronized (this) {
+        if (closed) {
+          return;
+        }
+        closed = true;
+      }
+      CommentEvents.getInstance().unsubscribe(this);
+      context.complete();
+    }
+  }
+}
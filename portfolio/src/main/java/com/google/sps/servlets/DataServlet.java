@@ -15,69 +15,137 @@
 package com.google.sps.servlets;
 
 import java.io.IOException;
+import java.util.Collections;
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import java.util.ArrayList;
-import java.util.List;
-import java.lang.Integer;
 import com.google.gson.Gson;
-import com.google.appengine.api.datastore.DatastoreService;
-import com.google.appengine.api.datastore.DatastoreServiceFactory;
-import com.google.appengine.api.datastore.Entity;
-import com.google.appengine.api.datastore.PreparedQuery;
-import com.google.appengine.api.datastore.Query;
-import com.google.appengine.api.datastore.Query.SortDirection;
-import com.google.appengine.api.datastore.FetchOptions;
 import com.google.sps.data.Comment;
-import java.time.format.DateTimeFormatter;  
-import java.time.LocalDateTime;
+import com.google.sps.data.CommentCache;
+import com.google.sps.data.CommentChanges;
+import com.google.sps.data.CommentFeed;
+import com.google.sps.data.CommentRepository;
+import com.google.sps.data.CommentWriteBehind;
+import com.google.sps.data.SpamFilter;
 
 /** Servlet to handle comments data */
 @WebServlet("/data")
 public class DataServlet extends HttpServlet {
 
+  // Number of comments per page when the client doesn't ask for a specific size.
+  private static final int DEFAULT_PAGE_SIZE = 10;
+
+  // Upper bound on the page size, so one request can't read the whole Comment kind.
+  private static final int MAX_PAGE_SIZE = 100;
+
+  // HttpServletResponse has no constant for 429 Too Many Requests.
+  static final int SC_TOO_MANY_REQUESTS = 429;
 
-  private List<String> comments = new ArrayList<String>();
   private final Gson gson = new Gson();
 
   @Override
   public void doGet(final HttpServletRequest request, final HttpServletResponse response) throws IOException {
 
-    Query query = new Query("Comment").addSort("timestamp", SortDirection.DESCENDING);
-    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
-    PreparedQuery results = datastore.prepare(query);
-
-    // Limit on the number of comments to get from datastore.
-    String userLimit = request.getParameter("limit");
+    int pageSize = getPageSize(request);
 
-    // Initialise limit with max (all comments in datastore)
-    FetchOptions fetchOptionsWithLimit = FetchOptions.Builder.withLimit(results.countEntities(FetchOptions.Builder.withDefaults()));
+    // Continue where the previous page ended, if the client sent us its token.
+    String next = request.getParameter("next");
+    if (next != null && next.isEmpty()) {
+      next = null;
+    }
 
-    if(userLimit != null && userLimit.isEmpty() == false) {       
+    // Only return comments made at or after this time, in milliseconds since the epoch.
+    long since = 0;
+    String userSince = request.getParameter("since");
+    if (userSince != null && !userSince.isEmpty()) {
       try {
-        fetchOptionsWithLimit = FetchOptions.Builder.withLimit(Integer.parseInt(userLimit));
-      } 
-      catch(Exception e) {
-        System.out.println(e + "Warning! The number of comments to display MUST be an integer. You have inputted " + userLimit);
-      }    
+        since = Long.parseLong(userSince);
+      } catch (NumberFormatException e) {
+        response.sendError(
+            HttpServletResponse.SC_BAD_REQUEST, "since must be a number of milliseconds");
+        return;
+      }
     }
-    
-    List<Comment> comments = new ArrayList<>();
-    for (Entity entity : results.asIterable(fetchOptionsWithLimit)) {
-      long id = entity.getKey().getId();
-      String name = (String) entity.getProperty("name");
-      String message = (String) entity.getProperty("message");
-      String timestamp = String.valueOf(entity.getProperty("timestamp"));
-      
-      Comment comment = new Comment(id, name, message, timestamp);
-      comments.add(comment);
+
+    // The first pages of the default list are built when comments change, so most reads are a
+    // memory hit.
+    if (pageSize == CommentFeed.PAGE_SIZE && since == 0) {
+      CommentFeed.Page feedPage = CommentFeed.getInstance().get(next);
+      if (feedPage != null) {
+        sendFeedPage(request, response, feedPage);
+        return;
+      }
+    }
+
+    // Pages are served from the cache until a comment is added or deleted.
+    final String startToken = next;
+    final long startTime = since;
+    String pageKey = pageSize + ":" + since + ":" + (next == null ? "" : next);
+    String json;
+    try {
+      json = CommentCache.getInstance()
+          .get(pageKey, () -> loadPage(pageSize, startToken, startTime));
+    } catch (IllegalArgumentException e) {
+      response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Invalid page token: " + next);
+      return;
     }
 
     // Send JSON as response.
     response.setContentType("application/json;");
-    response.getWriter().println(gson.toJson(comments));
+    response.getWriter().println(json);
+  }
+
+  /** Sends a precomputed page, gzipped if the client accepts it. */
+  private void sendFeedPage(
+      HttpServletRequest request, HttpServletResponse response, CommentFeed.Page page)
+      throws IOException {
+    response.setContentType("application/json;");
+    // The body depends on Accept-Encoding, so shared caches must not mix the two versions up.
+    response.setHeader("Vary", "Accept-Encoding");
+    String acceptEncoding = request.getHeader("Accept-Encoding");
+    if (acceptEncoding != null && acceptEncoding.contains("gzip")) {
+      response.setHeader("Content-Encoding", "gzip");
+      response.setContentLength(page.getGzipped().length);
+      response.getOutputStream().write(page.getGzipped());
+    } else {
+      response.getWriter().println(page.getJson());
+    }
+  }
+
+  /**
+   * Reads one page of comments from the repository and returns it as JSON.
+   */
+  private String loadPage(int pageSize, String next, long since) {
+    // Only read one page of comments at a time, so the cost of a request doesn't grow with the
+    // number of comments stored.
+    CommentRepository repository = CommentRepository.getInstance();
+    CommentRepository.Page page = repository.list(pageSize, next, since);
+
+    // The count is kept up to date on every write, so this doesn't read the comments.
+    return CommentFeed.toJson(gson, page, repository.count());
+  }
+
+  /**
+   * Returns the number of comments per page requested by the client. Falls back to the older
+   * {@code limit} parameter, and then to {@code DEFAULT_PAGE_SIZE}.
+   */
+  private int getPageSize(HttpServletRequest request) {
+    String userPageSize = request.getParameter("pageSize");
+    if (userPageSize == null || userPageSize.isEmpty()) {
+      userPageSize = request.getParameter("limit");
+    }
+    if (userPageSize == null || userPageSize.isEmpty()) {
+      return DEFAULT_PAGE_SIZE;
+    }
+
+    try {
+      int pageSize = Integer.parseInt(userPageSize);
+      return Math.max(1, Math.min(pageSize, MAX_PAGE_SIZE));
+    } catch (NumberFormatException e) {
+      System.out.println(e + "Warning! The number of comments to display MUST be an integer. You have inputted " + userPageSize);
+      return DEFAULT_PAGE_SIZE;
+    }
   }
 
   @Override
@@ -86,19 +154,26 @@ public class DataServlet extends HttpServlet {
     // Get the input from the form.
     String name = request.getParameter("full-name");
     String message = request.getParameter("message");
-    LocalDateTime now = LocalDateTime.now();  
-    DateTimeFormatter timestamp = DateTimeFormatter.ofPattern("yyyy/MM/dd HH:mm:ss");  
-   
+    long timestamp = System.currentTimeMillis();
 
     // Only add comments where a name and a message is given.
     if(!name.isEmpty() && !message.isEmpty()) {
-      Entity commentEntity = new Entity("Comment");
-      commentEntity.setProperty("name", name);
-      commentEntity.setProperty("message", message);
-      commentEntity.setProperty("timestamp", timestamp.format(now).toString());
-
-      DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
-      datastore.put(commentEntity);
+      // Turn away floods of near-identical comments before they reach storage.
+      if (SpamFilter.getInstance().check(message, timestamp) == SpamFilter.Verdict.REJECT) {
+        response.sendError(SC_TOO_MANY_REQUESTS, "Too many similar comments, try again later");
+        return;
+      }
+
+      // The id is assigned when the comment is stored.
+      Comment comment = new Comment(0, name, message, timestamp);
+
+      if (CommentWriteBehind.ENABLED) {
+        // Batched with other comments; see CommentWriteBehind for what this means for durability.
+        CommentWriteBehind.getInstance().submit(comment);
+      } else {
+        CommentRepository repository = CommentRepository.getInstance();
+        CommentChanges.added(repository.addAll(Collections.singletonList(comment)));
+      }
 
     }  
     response.sendRedirect("/index.html");  
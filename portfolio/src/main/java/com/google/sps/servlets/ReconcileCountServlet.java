@@ -0,0 +1,76 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import com.google.gson.Gson;
+import com.google.sps.data.CommentCache;
+import com.google.sps.data.CommentRepository;
+import com.google.sps.data.DatastoreCommentRepository;
+import java.io.IOException;
+import java.util.ConcurrentModificationException;
+import java.util.Map;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Servlet that recounts the comments in Datastore and repairs the sharded comment count if it
+ * drifted. Meant to be run occasionally; cron.xml runs it nightly. Responds with the count before,
+ * the number of comments found and the adjustment made, or 409 if comments were added or deleted
+ * during the recount, in which case it should be run again. Only admins and cron jobs can run it.
+ */
+@WebServlet("/reconcile-comment-count")
+public class ReconcileCountServlet extends HttpServlet {
+
+  private final Gson gson = new Gson();
+
+  /** App Engine cron jobs send GET requests. */
+  @Override
+  public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    doPost(request, response);
+  }
+
+  @Override
+  public void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    if (!AdminRequests.check(request, response)) {
+      return;
+    }
+
+    CommentRepository repository = CommentRepository.getInstance();
+    if (!(repository instanceof DatastoreCommentRepository)) {
+      // The other repositories count their comments exactly.
+      response.sendError(
+          HttpServletResponse.SC_NOT_FOUND, "Only Datastore comment counts need reconciling");
+      return;
+    }
+
+    Map<String, Long> result;
+    try {
+      result = ((DatastoreCommentRepository) repository).reconcileCount();
+    } catch (ConcurrentModificationException e) {
+      response.sendError(HttpServletResponse.SC_CONFLICT, e.getMessage());
+      return;
+    }
+
+    // Pages include the total, so cached ones are out of date.
+    if (result.get("adjustment") != 0) {
+      CommentCache.getInstance().invalidate();
+    }
+
+    response.setContentType("application/json;");
+    response.getWriter().println(gson.toJson(result));
+  }
+}
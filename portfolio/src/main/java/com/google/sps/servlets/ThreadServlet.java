@@ -0,0 +1,134 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import com.google.gson.Gson;
+import com.google.sps.data.Comment;
+import com.google.sps.data.CommentRepository;
+import com.google.sps.data.CommentThread;
+import com.google.sps.data.Reply;
+import com.google.sps.data.SpamFilter;
+import com.google.sps.data.ThreadFullException;
+import java.io.IOException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Servlet for comment threads.
+ *
+ * <p>GET returns a comment with its replies as a tree, read with a single query:
+ *   id - the comment
+ *   maxDepth - optional, levels of replies to include
+ *   maxReplies - optional, replies to include under each comment or reply
+ * Replies that are left out are counted in {@code moreReplies}.
+ *
+ * <p>POST adds a reply, from the {@code full-name} and {@code message} form fields:
+ *   id - the comment
+ *   parent - optional, the reply being answered
+ * A thread takes at most {@link CommentRepository#MAX_THREAD_REPLIES} replies.
+ */
+@WebServlet("/thread")
+public class ThreadServlet extends HttpServlet {
+
+  // Deepest tree returned, so a long chain of replies can't make a huge nested response.
+  private static final int MAX_DEPTH = 100;
+
+  private final Gson gson = new Gson();
+
+  @Override
+  public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    long id;
+    int maxDepth;
+    int maxReplies;
+    try {
+      id = Long.parseLong(request.getParameter("id"));
+      maxDepth = getLimit(request, "maxDepth", MAX_DEPTH);
+      maxReplies = getLimit(request, "maxReplies", CommentRepository.MAX_THREAD_REPLIES);
+    } catch (NumberFormatException e) {
+      response.sendError(
+          HttpServletResponse.SC_BAD_REQUEST, "id, maxDepth and maxReplies must be numbers");
+      return;
+    }
+
+    CommentThread thread = CommentRepository.getInstance().getThread(id, maxDepth, maxReplies);
+    if (thread == null) {
+      response.sendError(HttpServletResponse.SC_NOT_FOUND, "No comment " + id);
+      return;
+    }
+
+    response.setContentType("application/json;");
+    response.getWriter().println(gson.toJson(thread));
+  }
+
+  @Override
+  public void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    String name = request.getParameter("full-name");
+    String message = request.getParameter("message");
+    if (name == null || name.isEmpty() || message == null || message.isEmpty()) {
+      response.sendError(HttpServletResponse.SC_BAD_REQUEST, "A reply needs a name and a message");
+      return;
+    }
+
+    long id;
+    long parentId = 0;
+    try {
+      id = Long.parseLong(request.getParameter("id"));
+      String parent = request.getParameter("parent");
+      if (parent != null && !parent.isEmpty()) {
+        parentId = Long.parseLong(parent);
+      }
+    } catch (NumberFormatException e) {
+      response.sendError(HttpServletResponse.SC_BAD_REQUEST, "id and parent must be numbers");
+      return;
+    }
+
+    long timestamp = System.currentTimeMillis();
+    if (SpamFilter.getInstance().check(message, timestamp) == SpamFilter.Verdict.REJECT) {
+      response.sendError(
+          DataServlet.SC_TOO_MANY_REQUESTS, "Too many similar replies, try again later");
+      return;
+    }
+
+    Reply reply;
+    try {
+      reply = CommentRepository.getInstance().addReply(
+          id, parentId, new Comment(0, name, message, timestamp));
+    } catch (ThreadFullException e) {
+      response.sendError(HttpServletResponse.SC_CONFLICT, e.getMessage());
+      return;
+    }
+    if (reply == null) {
+      response.sendError(HttpServletResponse.SC_NOT_FOUND, "Nothing to reply to");
+      return;
+    }
+
+    response.setContentType("application/json;");
+    response.getWriter().println(gson.toJson(reply.getComment()));
+  }
+
+  /**
+   * Returns a limit of at least 0 from the request, capped at {@code max}, or {@code max} if
+   * absent.
+   */
+  private static int getLimit(HttpServletRequest request, String parameter, int max) {
+    String value = request.getParameter(parameter);
+    if (value == null || value.isEmpty()) {
+      return max;
+    }
+    return Math.max(0, Math.min(Integer.parseInt(value), max));
+  }
+}
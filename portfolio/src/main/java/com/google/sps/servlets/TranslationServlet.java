@@ -0,0 +1,88 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.sps.data.CloudTranslator;
+import com.google.sps.data.StubTranslator;
+import com.google.sps.data.TranslationCache;
+import com.google.sps.data.Translator;
+import java.io.IOException;
+import java.util.List;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Servlet that translates a batch of texts to one language. The request body is JSON like
+ * {@code {"languageCode": "es", "texts": ["Hello", "Hello", "Bye"]}} and the response is a JSON
+ * array with one translation per text, in the same order.
+ */
+@WebServlet("/translate")
+public class TranslationServlet extends HttpServlet {
+
+  // Largest number of texts accepted in one request.
+  private static final int MAX_TEXTS = 1000;
+
+  private final Gson gson = new Gson();
+  private TranslationCache cache;
+
+  /** Body of a translation request. */
+  private static final class TranslationRequest {
+    String languageCode;
+    List<String> texts;
+  }
+
+  @Override
+  public void init() {
+    // Set translate.stub in appengine-web.xml to run without Cloud Translation credentials.
+    Translator translator =
+        Boolean.getBoolean("translate.stub") ? new StubTranslator() : new CloudTranslator();
+    cache = new TranslationCache(translator);
+  }
+
+  @Override
+  public void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    request.setCharacterEncoding("UTF-8");
+    TranslationRequest translationRequest;
+    try {
+      translationRequest = gson.fromJson(request.getReader(), TranslationRequest.class);
+    } catch (JsonParseException e) {
+      response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Body must be a JSON object");
+      return;
+    }
+
+    if (translationRequest == null || translationRequest.languageCode == null
+        || translationRequest.languageCode.isEmpty() || translationRequest.texts == null
+        || translationRequest.texts.contains(null)) {
+      response.sendError(HttpServletResponse.SC_BAD_REQUEST, "languageCode and texts are required");
+      return;
+    }
+    if (translationRequest.texts.size() > MAX_TEXTS) {
+      response.sendError(HttpServletResponse.SC_BAD_REQUEST,
+          "At most " + MAX_TEXTS + " texts can be translated at once");
+      return;
+    }
+
+    List<String> translations =
+        cache.translate(translationRequest.texts, translationRequest.languageCode);
+
+    response.setContentType("application/json; charset=UTF-8");
+    response.setCharacterEncoding("UTF-8");
+    response.getWriter().println(gson.toJson(translations));
+  }
+}
@@ -55,23 +55,134 @@ function addRandomTVQuote() {
   tvQuoteContainer.innerText = tvQuote;
 }
 
+// Token for the page after the last one loaded, or undefined if there are no more comments.
+let nextPageToken;
+
+// Whether the list shows search results rather than the newest comments.
+let showingSearchResults = false;
+
+// Number of comments on the server, as of the last page or change we heard about.
+let commentTotal = 0;
+
 /**
- * Load comments from server and add them to page.
+ * Load the first page of comments from server and add them to page.
  */
 async function loadComments() {
+  const commentListElement = document.getElementById('comment-container');
+  commentListElement.innerHTML = "";
+  nextPageToken = undefined;
+  showingSearchResults = false;
+  await loadMoreComments();
+}
 
-  // Add users limit to query string
+/**
+ * Listen for comments added or deleted by other visitors, so the list stays
+ * current without reloading it.
+ */
+function listenForCommentChanges() {
+  const events = new EventSource('/comment-events');
+
+  events.addEventListener('added', (event) => {
+    if (showingSearchResults) {
+      return;
+    }
+    const comment = JSON.parse(event.data);
+    if (document.querySelector('.comment[data-id="' + comment.id + '"]')) {
+      return;
+    }
+    const commentListElement = document.getElementById('comment-container');
+    commentListElement.insertBefore(createCommentElement(comment), commentListElement.firstChild);
+    commentTotal++;
+    showCommentCount();
+  });
+
+  events.addEventListener('removed', (event) => {
+    const ids = JSON.parse(event.data).ids;
+    ids.forEach(id => {
+      const commentElement = document.querySelector('.comment[data-id="' + id + '"]');
+      if (commentElement) {
+        commentElement.remove();
+      }
+    });
+    commentTotal = Math.max(0, commentTotal - ids.length);
+    showCommentCount();
+  });
+
+  // The server couldn't send everything we missed while disconnected.
+  events.addEventListener('reset', () => {
+    if (!showingSearchResults) {
+      loadComments();
+    }
+  });
+}
+
+/**
+ * Load the next page of comments from server and append them to page.
+ */
+async function loadMoreComments() {
+
+  // Add users page size (and where the last page ended) to query string
   const userLimit = document.getElementById("limit").value;
-  dataURL = "/data?limit=" + userLimit;
-  
-  const response = await fetch(dataURL);
+  const params = new URLSearchParams();
+  params.append('pageSize', userLimit);
+  if (nextPageToken) {
+    params.append('next', nextPageToken);
+  }
+
+  const response = await fetch("/data?" + params.toString());
+  const page = await response.json();
+  nextPageToken = page.next;
+
+  const commentListElement = document.getElementById('comment-container');
+  page.comments.forEach((comment) => {
+    commentListElement.appendChild(createCommentElement(comment));
+  })
+
+  commentTotal = page.total;
+  showCommentCount();
+  document.getElementById('load-more').hidden = !nextPageToken;
+}
+
+/**
+ * Show how many comments are on the page out of the total, and how many pages
+ * of the chosen size that is.
+ */
+function showCommentCount() {
+  const countElement = document.getElementById('comment-count');
+  if (showingSearchResults) {
+    countElement.innerText = "";
+    return;
+  }
+  const shown = document.querySelectorAll('.comment').length;
+  const pageSize = parseInt(document.getElementById("limit").value) || 10;
+  const pages = Math.max(1, Math.ceil(commentTotal / pageSize));
+  countElement.innerText =
+      "Showing " + shown + " of " + commentTotal + " comments (" + pages + " pages)";
+}
+
+/**
+ * Search comments on the server and show the best matches instead of the feed.
+ */
+async function searchComments() {
+  const query = document.getElementById('search-query').value;
+  if (!query.trim()) {
+    loadComments();
+    return;
+  }
+
+  const params = new URLSearchParams();
+  params.append('q', query);
+  const response = await fetch('/search?' + params.toString());
   const comments = await response.json();
 
   const commentListElement = document.getElementById('comment-container');
   commentListElement.innerHTML = "";
+  showingSearchResults = true;
+  showCommentCount();
   comments.forEach((comment) => {
     commentListElement.appendChild(createCommentElement(comment));
-  })
+  });
+  document.getElementById('load-more').hidden = true;
 }
 
 /** 
@@ -82,6 +193,7 @@ function createCommentElement(comment) {
   const commentElement = document.createElement('li');
   commentElement.setAttribute("class", "comment");
   commentElement.className = 'comment';
+  commentElement.dataset.id = comment.id;
 
   const nameElement = document.createElement('span');
   nameElement.setAttribute("class", "comment-name");
@@ -93,7 +205,19 @@ function createCommentElement(comment) {
 
   const timeElement = document.createElement('span');
   timeElement.setAttribute("class", "comment-time");
-  timeElement.innerText = "Time:" + comment.timestamp;
+  timeElement.innerText = "Time:" + new Date(comment.timestamp).toLocaleString();
+
+  const threadButtonElement = document.createElement('button');
+  threadButtonElement.innerText = 'Replies';
+  threadButtonElement.addEventListener('click', () => {
+    showThread(comment.id, commentElement);
+  });
+
+  const replyButtonElement = document.createElement('button');
+  replyButtonElement.innerText = 'Reply';
+  replyButtonElement.addEventListener('click', () => {
+    replyTo(comment.id, 0, commentElement);
+  });
 
   const deleteButtonElement = document.createElement('button');
   deleteButtonElement.setAttribute("class", "comment-delete");
@@ -108,10 +232,82 @@ function createCommentElement(comment) {
   commentElement.appendChild(nameElement);
   commentElement.appendChild(messageElement);
   commentElement.appendChild(timeElement);
+  commentElement.appendChild(threadButtonElement);
+  commentElement.appendChild(replyButtonElement);
   commentElement.appendChild(deleteButtonElement);
   return commentElement;
 }
 
+/**
+ * Show the replies to a comment under it. Only the first few levels and the
+ * first replies at each level are loaded, so big threads stay quick.
+ */
+async function showThread(commentId, commentElement) {
+  const params = new URLSearchParams();
+  params.append('id', commentId);
+  params.append('maxDepth', 3);
+  params.append('maxReplies', 10);
+  const response = await fetch('/thread?' + params.toString());
+  const thread = await response.json();
+
+  const oldThreadElement = commentElement.querySelector('.comment-thread');
+  if (oldThreadElement) {
+    oldThreadElement.remove();
+  }
+  commentElement.appendChild(createRepliesElement(commentId, thread, commentElement));
+}
+
+/** Creates a nested list of the replies under a comment or reply. */
+function createRepliesElement(commentId, node, commentElement) {
+  const listElement = document.createElement('ul');
+  listElement.className = 'comment-thread';
+
+  node.replies.forEach((reply) => {
+    const replyElement = document.createElement('li');
+    replyElement.innerText = reply.name + ": " + reply.message + "    "
+        + new Date(reply.timestamp).toLocaleString() + "    ";
+
+    const replyButtonElement = document.createElement('button');
+    replyButtonElement.innerText = 'Reply';
+    replyButtonElement.addEventListener('click', () => {
+      replyTo(commentId, reply.id, commentElement);
+    });
+    replyElement.appendChild(replyButtonElement);
+
+    if (reply.replies.length > 0 || reply.moreReplies > 0) {
+      replyElement.appendChild(createRepliesElement(commentId, reply, commentElement));
+    }
+    listElement.appendChild(replyElement);
+  });
+
+  if (node.moreReplies > 0) {
+    const moreElement = document.createElement('li');
+    moreElement.innerText = node.moreReplies + " more replies";
+    listElement.appendChild(moreElement);
+  }
+  return listElement;
+}
+
+/** Asks for a reply and sends it, then shows the updated thread. */
+async function replyTo(commentId, parentId, commentElement) {
+  const message = prompt('Your reply');
+  if (!message) {
+    return;
+  }
+  const name = prompt('Your name');
+  if (!name) {
+    return;
+  }
+
+  const params = new URLSearchParams();
+  params.append('id', commentId);
+  params.append('parent', parentId);
+  params.append('full-name', name);
+  params.append('message', message);
+  await fetch('/thread', {method: 'POST', body: params});
+  await showThread(commentId, commentElement);
+}
+
 /** Tells the server to delete the comment. */
 function deleteComment(comment) {
   const params = new URLSearchParams();
@@ -122,19 +318,41 @@ function deleteComment(comment) {
 /** Tells the server to delete ALL comments */
 async function deleteAllComments(){
 
-  // Get all the comments on the server.
-  const response = await fetch("/data");
-  const comments = await response.json();
-
-  // Delete each comment from the server.
-  comments.forEach(comment => {
-    deleteComment(comment);
-  });
+  // Delete every comment on the server in one request.
+  const params = new URLSearchParams();
+  params.append('all', 'true');
+  if (!await deleteComments(params)) {
+    return;
+  }
 
   // Update so no more comments i.e. empty.
   const commentListElement = document.getElementById('comment-container');
   commentListElement.innerHTML = "";
+  document.getElementById('load-more').hidden = true;
+
+}
 
+/**
+ * Tells the server to delete many comments at once, e.g. by repeated 'id'
+ * params or an 'olderThan' time. Removes the deleted comments from the page
+ * using the summary the server sends back, instead of reloading the list.
+ * Returns null if the server refused, e.g. because only admins can delete
+ * every comment.
+ */
+async function deleteComments(params) {
+  const response = await fetch('/delete-comments', {method: 'POST', body: params});
+  if (!response.ok) {
+    return null;
+  }
+  const summary = await response.json();
+
+  summary.ids.forEach(id => {
+    const commentElement = document.querySelector('.comment[data-id="' + id + '"]');
+    if (commentElement) {
+      commentElement.remove();
+    }
+  });
+  return summary;
 }
 
 /** 
@@ -145,42 +363,27 @@ async function requestTranslation() {
   // Get language to translate to
   const languageCode = document.getElementById('language').value;
 
-  // Select the comment (name,message,time) and translate
-
-  const commentNames = document.querySelectorAll(".comment-name");
-    commentNames.forEach(name => {
-      translate(name, languageCode)
-    });  
-
-  const commentMessages = document.querySelectorAll(".comment-message");
-    commentMessages.forEach(message => {
-      translate(message, languageCode)
-    });  
+  // Select the comment (name,message,time) and translate them all in one request
+  const elements = Array.from(document.querySelectorAll(
+      ".comment-name, .comment-message, .comment-time"));
+  if (elements.length === 0) {
+    return;
+  }
 
-  const commentTime = document.querySelectorAll(".comment-time");
-    commentTime.forEach(time => {
-      translate(time, languageCode)
-    });
-}
-
-/** 
- * Tells the server to translate comments to specified language
- */
-function translate(textElement,languageCode) {
+  // Send each distinct text once.
+  const texts = [...new Set(elements.map(element => element.textContent))];
 
-  const translatedComment = textElement;
-
-  const params = new URLSearchParams();
-  params.append('comment', textElement.textContent);
-  params.append('languageCode', languageCode);
-
-  // Translate and update text to different language.
-  fetch('/translate', {
+  const response = await fetch('/translate', {
     method: 'POST',
-    body: params
-  }).then(response => response.text())
-  .then((translatedMessage) => {
-    translatedComment.innerText = translatedMessage;
+    headers: {'Content-Type': 'application/json'},
+    body: JSON.stringify({languageCode: languageCode, texts: texts})
+  });
+  const translations = await response.json();
+
+  const translationByText = new Map();
+  texts.forEach((text, i) => translationByText.set(text, translations[i]));
+  elements.forEach(element => {
+    element.innerText = translationByText.get(element.textContent);
   });
 }
 
@@ -0,0 +1,140 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class CommentEventsTest {
+  private final CommentEvents events = CommentEvents.getInstance();
+  private final List<CommentEvents.Listener> subscribed = new ArrayList<>();
+
+  @After
+  public void tearDown() {
+    for (CommentEvents.Listener listener : subscribed) {
+      events.unsubscribe(listener);
+    }
+  }
+
+  @Test
+  public void listenerMayUnsubscribeWhileFlushing() {
+    // Like a stream whose connection failed: sending closes it, which unsubscribes it.
+    RecordingListener failing = new RecordingListener(10) {
+      @Override
+      public void flush() {
+        if (hasBuffered()) {
+          events.unsubscribe(this);
+        }
+        super.flush();
+      }
+    };
+    RecordingListener other = new RecordingListener(10);
+    subscribe(failing);
+    subscribe(other);
+    int before = events.getSubscriberCount();
+
+    events.removed(Arrays.asList(1L));
+
+    Assert.assertEquals(before - 1, events.getSubscriberCount());
+    Assert.assertEquals(1, other.flushed.size());
+  }
+
+  @Test
+  public void dropsListenerThatFallsBehind() {
+    // Never sends, like a stream whose client stopped reading.
+    RecordingListener slow = new RecordingListener(1) {
+      @Override
+      public void flush() {}
+    };
+    subscribe(slow);
+
+    events.removed(Arrays.asList(1L));
+    Assert.assertFalse(slow.dropped);
+    events.removed(Arrays.asList(2L));
+
+    Assert.assertTrue(slow.dropped);
+  }
+
+  @Test
+  public void reconnectGetsMissedEvents() {
+    RecordingListener first = new RecordingListener(10);
+    subscribe(first);
+    events.removed(Arrays.asList(1L));
+    long lastSeen = eventId(first.flushed.get(0));
+    events.removed(Arrays.asList(2L));
+    events.removed(Arrays.asList(3L));
+
+    RecordingListener reconnected = new RecordingListener(10);
+    subscribe(reconnected, lastSeen);
+
+    Assert.assertEquals(first.flushed.subList(1, 3), reconnected.flushed);
+  }
+
+  private void subscribe(CommentEvents.Listener listener) {
+    subscribe(listener, 0);
+  }
+
+  private void subscribe(CommentEvents.Listener listener, long lastEventId) {
+    subscribed.add(listener);
+    events.subscribe(listener, lastEventId);
+  }
+
+  private static long eventId(String event) {
+    int start = event.indexOf("id: ") + 4;
+    return Long.parseLong(event.substring(start, event.indexOf('\n', start)));
+  }
+
+  private static class RecordingListener implements CommentEvents.Listener {
+    private final int capacity;
+    private final List<String> buffered = new ArrayList<>();
+    final List<String> flushed = new ArrayList<>();
+    boolean dropped;
+
+    RecordingListener(int capacity) {
+      this.capacity = capacity;
+    }
+
+    boolean hasBuffered() {
+      return !buffered.isEmpty();
+    }
+
+    @Override
+    public boolean offer(String event) {
+      if (buffered.size() == capacity) {
+        return false;
+      }
+      buffered.add(event);
+      return true;
+    }
+
+    @Override
+    public void flush() {
+      flushed.addAll(buffered);
+      buffered.clear();
+    }
+
+    @Override
+    public void dropped() {
+      dropped = true;
+    }
+  }
+}
@@ -0,0 +1,129 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import com.google.appengine.tools.development.testing.LocalDatastoreServiceTestConfig;
+import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Measures read and write throughput of the in-memory, log and Datastore
+ * {@link CommentRepository}s. Datastore runs against the local Datastore of the App Engine SDK,
+ * which has no network round trips, so its numbers show the cost of the code and the API rather
+ * than of a deployed Datastore; expect the real one to be much slower. This is not run as part of
+ * the tests; run it after {@code mvn test-compile} with:
+ *
+ * <pre>
+ *   java -cp target/classes:target/test-classes com.google.sps.data.CommentRepositoryBenchmark \
+ *       [comments]
+ * </pre>
+ */
+public final class CommentRepositoryBenchmark {
+
+  private static final int BATCH_SIZE = 100;
+  private static final int PAGE_SIZE = 10;
+  private static final int PAGE_READS = 2000;
+
+  private CommentRepositoryBenchmark() {}
+
+  /**
+   * Adds {@code comments} comments one at a time and again in batches, reads pages, and deletes
+   * everything it added. The repository should start out empty.
+   * @return operations per second for each part of the run
+   */
+  public static Map<String, Double> run(CommentRepository repository, int comments) {
+    Map<String, Double> results = new LinkedHashMap<>();
+
+    long start = System.nanoTime();
+    for (int i = 0; i < comments; i++) {
+      repository.addAll(Collections.singletonList(newComment(i)));
+    }
+    results.put("singleWritesPerSecond", perSecond(comments, start));
+
+    start = System.nanoTime();
+    for (int i = 0; i < comments; i += BATCH_SIZE) {
+      List<Comment> batch = new ArrayList<>(BATCH_SIZE);
+      for (int j = i; j < Math.min(i + BATCH_SIZE, comments); j++) {
+        batch.add(newComment(j));
+      }
+      repository.addAll(batch);
+    }
+    results.put("batchedWritesPerSecond", perSecond(comments, start));
+
+    start = System.nanoTime();
+    for (int i = 0; i < PAGE_READS; i++) {
+      repository.list(PAGE_SIZE, null, 0);
+    }
+    results.put("firstPageReadsPerSecond", perSecond(PAGE_READS, start));
+
+    // Page through everything, as the search index does at startup.
+    start = System.nanoTime();
+    int read = 0;
+    String next = null;
+    do {
+      CommentRepository.Page page = repository.list(PAGE_SIZE, next, 0);
+      read += page.getComments().size();
+      next = page.getNext();
+    } while (next != null);
+    results.put("pagedCommentReadsPerSecond", perSecond(read, start));
+
+    start = System.nanoTime();
+    int deleted = repository.deleteAll().size();
+    results.put("deletesPerSecond", perSecond(deleted, start));
+    return results;
+  }
+
+  public static void main(String[] args) throws IOException {
+    int comments = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+
+    // The first rounds warm up the JIT.
+    for (int round = 0; round < 3; round++) {
+      System.out.println("memory:    " + run(new InMemoryCommentRepository(), comments));
+
+      Path log = Files.createTempFile("comments", ".log");
+      try (LogCommentRepository repository = new LogCommentRepository(log)) {
+        System.out.println("log:       " + run(repository, comments));
+      } finally {
+        Files.deleteIfExists(log);
+      }
+
+      LocalServiceTestHelper datastore =
+          new LocalServiceTestHelper(new LocalDatastoreServiceTestConfig());
+      datastore.setUp();
+      try {
+        System.out.println(
+            "datastore: " + run(new DatastoreCommentRepository("BenchmarkComment"), comments));
+      } finally {
+        datastore.tearDown();
+      }
+    }
+  }
+
+  private static Comment newComment(int i) {
+    return new Comment(0, "Benchmark " + (i % 50),
+        "Comment number " + i + " from the storage benchmark.", System.currentTimeMillis());
+  }
+
+  private static double perSecond(int operations, long startNanos) {
+    return Math.round(operations * 1e9 / (System.nanoTime() - startNanos) * 10) / 10.0;
+  }
+}
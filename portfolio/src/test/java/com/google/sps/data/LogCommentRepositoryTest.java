@@ -0,0 +1,177 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class LogCommentRepositoryTest {
+  // Every record starts with an 8 byte length and CRC. The file header is 8 bytes, and each batch
+  // starts with a BATCH record of 5 payload bytes.
+  private static final int RECORD_HEADER_BYTES = 8;
+  private static final int BATCH_RECORD_BYTES = RECORD_HEADER_BYTES + 5;
+  private static final int FIRST_RECORD = 8 + BATCH_RECORD_BYTES;
+
+  @Rule
+  public final TemporaryFolder folder = new TemporaryFolder();
+
+  private Path path;
+
+  @Before
+  public void setUp() {
+    path = folder.getRoot().toPath().resolve("comments.log");
+  }
+
+  @Test
+  public void replaysAfterReopen() throws IOException {
+    try (LogCommentRepository repository = new LogCommentRepository(path)) {
+      repository.addAll(Arrays.asList(comment("first"), comment("second")));
+      repository.addReply(1, 0, comment("reply"));
+      repository.delete(Collections.singletonList(2L));
+    }
+
+    try (LogCommentRepository repository = new LogCommentRepository(path)) {
+      List<Comment> comments = repository.list(10, null, 0).getComments();
+      Assert.assertEquals(1, comments.size());
+      Assert.assertEquals("first", comments.get(0).getMessage());
+      Assert.assertNotNull(repository.getThread(1, 10, 10));
+      Assert.assertNull(repository.getThread(2, 10, 10));
+    }
+  }
+
+  @Test
+  public void idsAreNotReusedAfterCompaction() throws IOException {
+    try (LogCommentRepository repository = new LogCommentRepository(path)) {
+      repository.addAll(Arrays.asList(comment("a"), comment("b"), comment("c")));
+      repository.delete(Arrays.asList(2L, 3L));
+      repository.compact();
+    }
+
+    try (LogCommentRepository repository = new LogCommentRepository(path)) {
+      List<Comment> added = repository.addAll(Collections.singletonList(comment("d")));
+      Assert.assertEquals(4, added.get(0).getId());
+    }
+  }
+
+  @Test
+  public void deleteReturnsOnlyCommentsThatExisted() throws IOException {
+    try (LogCommentRepository repository = new LogCommentRepository(path)) {
+      repository.addAll(Arrays.asList(comment("a"), comment("b")));
+
+      List<Long> deleted = repository.delete(Arrays.asList(2L, 2L, 7L));
+
+      Assert.assertEquals(Collections.singletonList(2L), deleted);
+      Assert.assertEquals(1, repository.count());
+    }
+  }
+
+  @Test
+  public void refusesRepliesToFullThread() throws IOException {
+    try (LogCommentRepository repository = new LogCommentRepository(path)) {
+      repository.addAll(Collections.singletonList(comment("a")));
+      for (int i = 0; i < CommentRepository.MAX_THREAD_REPLIES; i++) {
+        repository.addReply(1, 0, comment("reply"));
+      }
+
+      try {
+        repository.addReply(1, 0, comment("one too many"));
+        Assert.fail("Added a reply to a full thread");
+      } catch (ThreadFullException expected) {
+        // A reply to another comment still gets in.
+      }
+      long other = repository.addAll(Collections.singletonList(comment("b"))).get(0).getId();
+      Assert.assertNotNull(repository.addReply(other, 0, comment("reply")));
+    }
+  }
+
+  @Test
+  public void dropsTornTail() throws IOException {
+    long size;
+    try (LogCommentRepository repository = new LogCommentRepository(path)) {
+      repository.addAll(Arrays.asList(comment("a"), comment("b")));
+      size = repository.getSize();
+    }
+
+    // A record whose header promises more bytes than the crash let through.
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.APPEND)) {
+      ByteBuffer torn = ByteBuffer.allocate(RECORD_HEADER_BYTES + 10).putInt(100).putInt(0);
+      torn.flip();
+      channel.write(torn);
+    }
+
+    try (LogCommentRepository repository = new LogCommentRepository(path)) {
+      Assert.assertEquals(2, repository.count());
+      Assert.assertEquals(size, repository.getSize());
+    }
+  }
+
+  @Test
+  public void dropsLastBatchWrittenOutOfOrder() throws IOException {
+    long size;
+    try (LogCommentRepository repository = new LogCommentRepository(path)) {
+      repository.addAll(Collections.singletonList(comment("a")));
+      size = repository.getSize();
+      repository.addAll(Arrays.asList(comment("b"), comment("c")));
+    }
+
+    // The crash left the second record of the last batch on disk, but not the first.
+    byte[] bytes = Files.readAllBytes(path);
+    bytes[(int) size + BATCH_RECORD_BYTES + RECORD_HEADER_BYTES + 2] ^= 1;
+    Files.write(path, bytes);
+
+    try (LogCommentRepository repository = new LogCommentRepository(path)) {
+      Assert.assertEquals(1, repository.count());
+      Assert.assertEquals(size, repository.getSize());
+    }
+  }
+
+  @Test
+  public void refusesToOpenLogWithCorruptRecordBeforeGoodOnes() throws IOException {
+    try (LogCommentRepository repository = new LogCommentRepository(path)) {
+      repository.addAll(Collections.singletonList(comment("a")));
+      repository.addAll(Collections.singletonList(comment("b")));
+    }
+    byte[] bytes = Files.readAllBytes(path);
+    bytes[FIRST_RECORD + RECORD_HEADER_BYTES + 2] ^= 1;
+    Files.write(path, bytes);
+
+    try {
+      new LogCommentRepository(path).close();
+      Assert.fail("Opened a log with a corrupt record");
+    } catch (IOException expected) {
+      // The comment after the corrupt record is still on disk.
+      Assert.assertEquals(bytes.length, Files.size(path));
+    }
+  }
+
+  private static Comment comment(String message) {
+    return new Comment(0, "Tester", message, 1000);
+  }
+}
@@ -0,0 +1,79 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class SpamFilterTest {
+  private static final long NOW = 1_000_000_000L;
+  private static final long MINUTE = 60 * 1000;
+
+  // Matches SpamFilter.MAX_SIMILAR.
+  private static final int MAX_SIMILAR = 3;
+
+  private static final String SPAM =
+      "Cheap watches at amazing prices, visit our online store today for the best deals";
+
+  private final SpamFilter filter = new SpamFilter();
+
+  @Test
+  public void rejectsFloodOfNearDuplicates() {
+    for (int i = 0; i < MAX_SIMILAR; i++) {
+      Assert.assertEquals(SpamFilter.Verdict.ACCEPT, filter.check(SPAM + " " + i, NOW + i));
+    }
+
+    Assert.assertEquals(SpamFilter.Verdict.REJECT, filter.check(SPAM + "!!", NOW + MAX_SIMILAR));
+    // Case and punctuation don't make a copy look new.
+    Assert.assertEquals(SpamFilter.Verdict.REJECT,
+        filter.check(SPAM.toUpperCase() + "...", NOW + MAX_SIMILAR + 1));
+  }
+
+  @Test
+  public void acceptsDifferentMessages() {
+    String[] messages = {
+        "I really enjoyed the photos from your trip to the mountains last summer.",
+        "Which camera did you use for the garden pictures? They look great.",
+        "The procrastination post was painfully relatable, thanks for writing it.",
+        "Looking forward to the next blog post about your internship projects.",
+    };
+    for (int round = 0; round < 2; round++) {
+      for (String message : messages) {
+        Assert.assertEquals(SpamFilter.Verdict.ACCEPT, filter.check(message, NOW));
+      }
+    }
+  }
+
+  @Test
+  public void acceptsShortRepliesEvenWhenRepeated() {
+    for (int i = 0; i < 10; i++) {
+      Assert.assertEquals(SpamFilter.Verdict.ACCEPT, filter.check("Thanks!", NOW + i));
+      Assert.assertEquals(SpamFilter.Verdict.ACCEPT, filter.check("+1", NOW + i));
+    }
+    Assert.assertEquals(0L, (long) filter.getStats().get("remembered"));
+  }
+
+  @Test
+  public void forgetsMessagesAfterTheWindow() {
+    for (int i = 0; i <= MAX_SIMILAR; i++) {
+      filter.check(SPAM, NOW);
+    }
+
+    Assert.assertEquals(SpamFilter.Verdict.ACCEPT, filter.check(SPAM, NOW + 11 * MINUTE));
+  }
+}
@@ -0,0 +1,94 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class TranslationCacheTest {
+  // Matches TranslationCache.MAX_ENTRIES.
+  private static final int MAX_ENTRIES = 4096;
+
+  private StubTranslator translator;
+  private TranslationCache cache;
+
+  @Before
+  public void setUp() {
+    translator = new StubTranslator();
+    cache = new TranslationCache(translator);
+  }
+
+  @Test
+  public void translatesInOrder() {
+    Assert.assertEquals(Arrays.asList("[es] Hello", "[es] Bye"),
+        cache.translate(Arrays.asList("Hello", "Bye"), "es"));
+  }
+
+  @Test
+  public void sendsEachDistinctMissOnce() {
+    cache.translate(Arrays.asList("Hello"), "es");
+
+    List<String> results = cache.translate(Arrays.asList("Hello", "Bye", "Bye", "Hello"), "es");
+
+    Assert.assertEquals(Arrays.asList("[es] Hello", "[es] Bye", "[es] Bye", "[es] Hello"), results);
+    Assert.assertEquals(2, translator.getTexts());
+    Assert.assertEquals(2, translator.getBatches());
+  }
+
+  @Test
+  public void cachesPerLanguage() {
+    cache.translate(Arrays.asList("Hello"), "es");
+
+    Assert.assertEquals(Arrays.asList("[fr] Hello"), cache.translate(Arrays.asList("Hello"), "fr"));
+    Assert.assertEquals(2, translator.getTexts());
+  }
+
+  @Test
+  public void splitsLargeBatches() {
+    List<String> texts = new ArrayList<>();
+    for (int i = 0; i < 300; i++) {
+      texts.add("t" + i);
+    }
+
+    cache.translate(texts, "es");
+
+    // At most 128 texts per call.
+    Assert.assertEquals(3, translator.getBatches());
+    Assert.assertEquals(300, translator.getTexts());
+  }
+
+  @Test
+  public void hitsSurviveEvictionByMisses() {
+    List<String> texts = new ArrayList<>();
+    for (int i = 0; i < MAX_ENTRIES; i++) {
+      texts.add("t" + i);
+    }
+    cache.translate(texts, "es");
+    Assert.assertEquals(MAX_ENTRIES, cache.size());
+
+    // "t0" is the least recently used entry, so caching "new" evicts it.
+    List<String> results = cache.translate(Arrays.asList("t0", "new"), "es");
+
+    Assert.assertEquals(Arrays.asList("[es] t0", "[es] new"), results);
+    Assert.assertEquals(MAX_ENTRIES, cache.size());
+  }
+}
@@ -0,0 +1,95 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed number of counters for consecutive periods (minutes, hours, ...), reused in a ring: the
+ * counter for period p lives in slot p % size, and is reset when a later period reaches the slot.
+ *
+ * <p>Each slot is one long holding the period in its top {@code 64 - COUNT_BITS} bits and the count
+ * in the rest, so moving a slot to a new period and counting in it is a single compare-and-set.
+ * Adding never locks or allocates.
+ */
+final class CounterRing {
+
+  /** Receives a period and its count. */
+  interface Visitor {
+    void visit(long period, long count);
+  }
+
+  private static final int COUNT_BITS = 36;
+  private static final long COUNT_MASK = (1L << COUNT_BITS) - 1;
+
+  private final AtomicLongArray slots;
+
+  CounterRing(int size) {
+    slots = new AtomicLongArray(size);
+  }
+
+  /**
+   * Adds {@code delta} to the count of {@code period}. Ignored if the slot already moved past it.
+   */
+  void add(long period, long delta) {
+    int slot = (int) (period % slots.length());
+    while (true) {
+      long current = slots.get(slot);
+      long slotPeriod = current >>> COUNT_BITS;
+      long next;
+      if (slotPeriod == period) {
+        next = current + delta;
+      } else if (slotPeriod < period) {
+        next = (period << COUNT_BITS) | delta;
+      } else {
+        return;
+      }
+      if (slots.compareAndSet(slot, current, next)) {
+        return;
+      }
+    }
+  }
+
+  /** Returns the count of {@code period}, or 0 if its slot holds another period. */
+  long get(long period) {
+    long current = slots.get((int) (period % slots.length()));
+    return (current >>> COUNT_BITS) == period ? current & COUNT_MASK : 0;
+  }
+
+  /**
+   * Calls {@code visitor} with every period from {@code from} up to but not including {@code to}
+   * that still has a nonzero count. Each slot is read once, so a range longer than the ring costs
+   * no more than the ring itself, and periods whose slot hasn't been reused since are still found.
+   */
+  void forEach(long from, long to, Visitor visitor) {
+    if (to - from <= slots.length()) {
+      for (long period = from; period < to; period++) {
+        long count = get(period);
+        if (count > 0) {
+          visitor.visit(period, count);
+        }
+      }
+      return;
+    }
+    for (int slot = 0; slot < slots.length(); slot++) {
+      long current = slots.get(slot);
+      long period = current >>> COUNT_BITS;
+      long count = current & COUNT_MASK;
+      if (period >= from && period < to && count > 0) {
+        visitor.visit(period, count);
+      }
+    }
+  }
+}
@@ -0,0 +1,110 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import java.util.Arrays;
+
+/**
+ * Estimates how many distinct items were added, in {@code REGISTERS} bytes no matter how many
+ * items there are. Each item's 64-bit hash picks a register by its top {@code PRECISION} bits,
+ * and the register keeps the longest run of leading zeros seen in the remaining bits.
+ *
+ * <p>The relative standard error is {@code 1.04 / sqrt(REGISTERS)}, about 1.6%. Two sketches are
+ * merged by keeping the larger of each pair of registers, which gives the sketch of the union, so
+ * sketches from different instances or days can be combined.
+ */
+public final class HyperLogLog {
+
+  private static final int PRECISION = 12;
+  public static final int REGISTERS = 1 << PRECISION;
+
+  private final byte[] registers;
+
+  public HyperLogLog() {
+    registers = new byte[REGISTERS];
+  }
+
+  private HyperLogLog(byte[] registers) {
+    this.registers = registers;
+  }
+
+  /** Reads a sketch written by {@link #toBytes}. */
+  public static HyperLogLog fromBytes(byte[] bytes) {
+    if (bytes.length != REGISTERS) {
+      throw new IllegalArgumentException("Expected " + REGISTERS + " bytes, got " + bytes.length);
+    }
+    return new HyperLogLog(bytes.clone());
+  }
+
+  /** Returns the relative standard error of {@link #estimate}. */
+  public static double getStandardError() {
+    return 1.04 / Math.sqrt(REGISTERS);
+  }
+
+  /**
+   * Adds an item by its hash. The hash must spread items evenly over all 64 bits.
+   * @return whether the sketch changed; it doesn't for most items once a few are in
+   */
+  public synchronized boolean add(long hash) {
+    int index = (int) (hash >>> (64 - PRECISION));
+    // Leading zeros of the bits below the index, plus one. The bit set just below those bits caps
+    // the rank at 65 - PRECISION, so 1L << rank in estimate() can't overflow.
+    long rest = (hash << PRECISION) | (1L << (PRECISION - 1));
+    byte rank = (byte) (Long.numberOfLeadingZeros(rest) + 1);
+    if (rank > registers[index]) {
+      registers[index] = rank;
+      return true;
+    }
+    return false;
+  }
+
+  /** Adds {@code other}'s items to this sketch. */
+  public synchronized void merge(HyperLogLog other) {
+    byte[] otherRegisters = other.toBytes();
+    for (int i = 0; i < REGISTERS; i++) {
+      if (otherRegisters[i] > registers[i]) {
+        registers[i] = otherRegisters[i];
+      }
+    }
+  }
+
+  /** Returns the estimated number of distinct items added. */
+  public synchronized long estimate() {
+    double sum = 0;
+    int zeros = 0;
+    for (byte register : registers) {
+      sum += 1.0 / (1L << register);
+      if (register == 0) {
+        zeros++;
+      }
+    }
+
+    // With few items, counting the empty registers is more accurate. Deciding by this count
+    // rather than by the raw estimate avoids the raw estimate's upward bias near the switch.
+    if (zeros > 0) {
+      double linearCount = REGISTERS * Math.log((double) REGISTERS / zeros);
+      if (linearCount <= 3 * REGISTERS) {
+        return Math.round(linearCount);
+      }
+    }
+    double alpha = 0.7213 / (1 + 1.079 / REGISTERS);
+    return Math.round(alpha * REGISTERS * REGISTERS / sum);
+  }
+
+  /** Returns a copy of the registers, for storing the sketch. */
+  public synchronized byte[] toBytes() {
+    return Arrays.copyOf(registers, REGISTERS);
+  }
+}
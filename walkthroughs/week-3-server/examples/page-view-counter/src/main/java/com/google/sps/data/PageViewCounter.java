@@ -0,0 +1,176 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import com.google.appengine.api.datastore.DatastoreFailureException;
+import com.google.appengine.api.datastore.DatastoreService;
+import com.google.appengine.api.datastore.DatastoreServiceFactory;
+import com.google.appengine.api.datastore.DatastoreTimeoutException;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.EntityNotFoundException;
+import com.google.appengine.api.datastore.Key;
+import com.google.appengine.api.datastore.KeyFactory;
+import com.google.appengine.api.datastore.Transaction;
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Page view count shared by all instances of the app.
+ *
+ * <p>Each view is counted in a {@link LongAdder}, which spreads concurrent increments over
+ * separate cells instead of making every request update the same field. Once per
+ * {@code FLUSH_INTERVAL_MS}, one request adds the views counted since the last flush to Datastore.
+ * The Datastore count is split over {@code SHARDS} entities, and each flush picks one at random,
+ * because a single entity can only be updated about once a second.
+ *
+ * <p>The total is the sum of the shards, read again at every flush, plus the views this instance
+ * hasn't flushed yet. Views counted by other instances show up once those instances flush.
+ *
+ * <p>The count can run slightly high. When a commit fails with anything but a collision, such as
+ * a timeout, Datastore may have applied it anyway; the views stay unflushed and are added again
+ * by the next flush. Views are only forgotten once a commit has succeeded.
+ */
+public final class PageViewCounter {
+
+  private static final String KIND = "PageViewShard";
+  private static final int SHARDS = 20;
+  private static final long FLUSH_INTERVAL_MS = 1000;
+  private static final int FLUSH_ATTEMPTS = 3;
+
+  private static final Logger logger = Logger.getLogger(PageViewCounter.class.getName());
+
+  private static final PageViewCounter INSTANCE = new PageViewCounter();
+
+  private final LongAdder unflushed = new LongAdder();
+  private final AtomicLong nextFlush = new AtomicLong();
+  private volatile long stored;
+  // Whether stored has been read from Datastore since the instance started.
+  private volatile boolean loaded;
+
+  // Package-private for tests, which need a counter of their own.
+  PageViewCounter() {}
+
+  /** Returns the counter shared by all servlets in this instance. */
+  public static PageViewCounter getInstance() {
+    return INSTANCE;
+  }
+
+  /** Counts one view. Never touches Datastore. */
+  public void increment() {
+    unflushed.increment();
+  }
+
+  /**
+   * Returns the number of views counted by all instances, as of this instance's last flush. The
+   * first call on a new instance reads the stored total, so it never shows only this instance's
+   * views.
+   */
+  public long getTotal() {
+    if (!loaded) {
+      load();
+    }
+    return stored + unflushed.sum();
+  }
+
+  /**
+   * Flushes if the last flush was at least {@code FLUSH_INTERVAL_MS} ago and no other request is
+   * flushing. Returns right away otherwise, so only one request per interval pays for the write.
+   */
+  public void flushIfDue(long now) {
+    long due = nextFlush.get();
+    if (now >= due && nextFlush.compareAndSet(due, now + FLUSH_INTERVAL_MS)) {
+      flush();
+    }
+  }
+
+  /**
+   * Adds the unflushed views to a random shard and reads the total back. If Datastore keeps
+   * failing, the views stay unflushed and are retried with the next flush.
+   */
+  public synchronized void flush() {
+    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+    long delta = unflushed.sum();
+    if (delta != 0 && addToShard(datastore, delta)) {
+      // Views counted during the write stay in unflushed for the next flush.
+      unflushed.add(-delta);
+    }
+    stored = readShards(datastore);
+    loaded = true;
+  }
+
+  private synchronized void load() {
+    if (!loaded) {
+      stored = readShards(DatastoreServiceFactory.getDatastoreService());
+      loaded = true;
+    }
+  }
+
+  private static boolean addToShard(DatastoreService datastore, long delta) {
+    for (int attempt = 0; attempt < FLUSH_ATTEMPTS; attempt++) {
+      Key key = shardKey(ThreadLocalRandom.current().nextInt(SHARDS));
+      Transaction transaction = datastore.beginTransaction();
+      try {
+        long count;
+        try {
+          count = (long) datastore.get(transaction, key).getProperty("count");
+        } catch (EntityNotFoundException e) {
+          count = 0;
+        }
+
+        Entity shard = new Entity(key);
+        shard.setUnindexedProperty("count", count + delta);
+        datastore.put(transaction, shard);
+        transaction.commit();
+        return true;
+      } catch (ConcurrentModificationException e) {
+        // Another instance flushed to the same shard; try another one.
+      } catch (DatastoreTimeoutException | DatastoreFailureException e) {
+        // The commit may have been applied, so retrying right away would risk counting the views
+        // twice in one go. Leave them to the next flush, which may count them again.
+        logger.log(Level.WARNING, "Could not flush " + delta + " page views", e);
+        return false;
+      } finally {
+        if (transaction.isActive()) {
+          transaction.rollback();
+        }
+      }
+    }
+    logger.warning("Could not flush " + delta + " page views; retrying later");
+    return false;
+  }
+
+  private static long readShards(DatastoreService datastore) {
+    List<Key> keys = new ArrayList<>(SHARDS);
+    for (int i = 0; i < SHARDS; i++) {
+      keys.add(shardKey(i));
+    }
+
+    long total = 0;
+    for (Entity shard : datastore.get(keys).values()) {
+      total += (long) shard.getProperty("count");
+    }
+    return total;
+  }
+
+  private static Key shardKey(int shard) {
+    return KeyFactory.createKey(KIND, "shard-" + shard);
+  }
+}
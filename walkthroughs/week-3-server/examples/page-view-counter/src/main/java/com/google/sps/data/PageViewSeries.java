@@ -0,0 +1,152 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Views per path per minute for the last {@code Resolution.MINUTE.length} minutes, rolled up into
+ * views per hour and per day for the last 30 days.
+ *
+ * <p>All counters are allocated up front, for at most {@code MAX_PATHS} paths, so memory doesn't
+ * grow with traffic. Views of paths beyond that, or with very long paths, are counted under
+ * {@code OTHER_PATH}. Recording a view is one compare-and-set on a {@link CounterRing}.
+ *
+ * <p>Once per minute, one recording request rolls the finished minutes up into the hour and day
+ * rings. The minute that just ended is left for the next rollup, in case a request that started in
+ * it is still counting. So the hour and day counts lag the minute counts by up to two minutes.
+ *
+ * <p>Counts are kept per instance and lost when it restarts.
+ */
+public final class PageViewSeries {
+
+  /** How long each point of a series covers, and how many points are kept. */
+  public enum Resolution {
+    MINUTE(TimeUnit.MINUTES.toMillis(1), 120),
+    HOUR(TimeUnit.HOURS.toMillis(1), 30 * 24),
+    DAY(TimeUnit.DAYS.toMillis(1), 30);
+
+    private final long millis;
+    private final int length;
+
+    Resolution(long millis, int length) {
+      this.millis = millis;
+      this.length = length;
+    }
+
+    public long getMillis() {
+      return millis;
+    }
+
+    public int getLength() {
+      return length;
+    }
+  }
+
+  public static final String OTHER_PATH = "(other)";
+
+  private static final int MAX_PATHS = 100;
+  private static final int MAX_PATH_LENGTH = 200;
+
+  private static final PageViewSeries INSTANCE = new PageViewSeries(System.currentTimeMillis());
+
+  // rings[path][resolution], with path 0 being OTHER_PATH.
+  private final CounterRing[][] rings = new CounterRing[MAX_PATHS][Resolution.values().length];
+  private final ConcurrentHashMap<String, Integer> paths = new ConcurrentHashMap<>();
+
+  // Minutes before this one have been rolled up.
+  private final AtomicLong rolledUpTo;
+
+  // Package-private for tests, which need a series of their own.
+  PageViewSeries(long now) {
+    for (CounterRing[] pathRings : rings) {
+      for (Resolution resolution : Resolution.values()) {
+        pathRings[resolution.ordinal()] = new CounterRing(resolution.length);
+      }
+    }
+    paths.put(OTHER_PATH, 0);
+    rolledUpTo = new AtomicLong(now / Resolution.MINUTE.millis);
+  }
+
+  /** Returns the series shared by all servlets in this instance. */
+  public static PageViewSeries getInstance() {
+    return INSTANCE;
+  }
+
+  /** Counts one view of {@code path} at {@code now}. */
+  public void record(String path, long now) {
+    rollUpIfDue(now);
+    rings[indexOf(path)][Resolution.MINUTE.ordinal()].add(now / Resolution.MINUTE.millis, 1);
+  }
+
+  /**
+   * Returns the views of {@code path} in the {@code points} periods up to and including the one
+   * containing {@code now}, oldest first. Returns null if the path has never been viewed.
+   */
+  public long[] get(String path, Resolution resolution, int points, long now) {
+    Integer index = paths.get(path);
+    if (index == null) {
+      return null;
+    }
+
+    CounterRing ring = rings[index][resolution.ordinal()];
+    long last = now / resolution.millis;
+    long[] counts = new long[Math.max(0, Math.min(points, resolution.length))];
+    for (int i = 0; i < counts.length; i++) {
+      counts[i] = ring.get(last - counts.length + 1 + i);
+    }
+    return counts;
+  }
+
+  private int indexOf(String path) {
+    Integer index = paths.get(path);
+    if (index != null) {
+      return index;
+    }
+    if (path.length() > MAX_PATH_LENGTH) {
+      return 0;
+    }
+    synchronized (paths) {
+      if (paths.size() >= MAX_PATHS) {
+        return 0;
+      }
+      return paths.computeIfAbsent(path, key -> paths.size());
+    }
+  }
+
+  /** Rolls finished minutes up into hours and days, if no other request is already doing it. */
+  private void rollUpIfDue(long now) {
+    long from = rolledUpTo.get();
+    long to = now / Resolution.MINUTE.millis - 1;
+    if (to <= from || !rolledUpTo.compareAndSet(from, to)) {
+      return;
+    }
+
+    // After an idle gap longer than the minute ring, the minutes with views before the gap are
+    // still in their slots, since only recording a view reuses a slot.
+    long minutesPerHour = Resolution.HOUR.millis / Resolution.MINUTE.millis;
+    long minutesPerDay = Resolution.DAY.millis / Resolution.MINUTE.millis;
+    int pathCount = Math.min(paths.size(), MAX_PATHS);
+    for (int index = 0; index < pathCount; index++) {
+      CounterRing[] pathRings = rings[index];
+      pathRings[Resolution.MINUTE.ordinal()].forEach(from, to, (minute, views) -> {
+        pathRings[Resolution.HOUR.ordinal()].add(minute / minutesPerHour, views);
+        pathRings[Resolution.DAY.ordinal()].add(minute / minutesPerDay, views);
+      });
+    }
+  }
+}
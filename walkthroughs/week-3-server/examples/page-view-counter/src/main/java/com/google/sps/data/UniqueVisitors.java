@@ -0,0 +1,263 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import com.google.appengine.api.datastore.Blob;
+import com.google.appengine.api.datastore.DatastoreFailureException;
+import com.google.appengine.api.datastore.DatastoreService;
+import com.google.appengine.api.datastore.DatastoreServiceFactory;
+import com.google.appengine.api.datastore.DatastoreTimeoutException;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.EntityNotFoundException;
+import com.google.appengine.api.datastore.Key;
+import com.google.appengine.api.datastore.KeyFactory;
+import com.google.appengine.api.datastore.Transaction;
+import com.google.appengine.api.datastore.TransactionOptions;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Estimated distinct visitors per path and per day (UTC), shared by all instances of the app.
+ *
+ * <p>Each instance adds visitors to a {@link HyperLogLog} per path and day. Once per
+ * {@code FLUSH_INTERVAL_MS}, one request merges them into a {@code KIND} entity per path and day,
+ * which stores the sketch as a blob of {@link HyperLogLog#REGISTERS} bytes. Only sketches whose
+ * registers changed since their last flush are merged, so a flush costs nothing once most
+ * visitors are returning ones. Merging is idempotent, so a failed merge is simply retried by the
+ * next flush, and a batch that keeps failing doesn't hold up the others.
+ *
+ * <p>At most {@code MAX_PATHS} paths a day are sketched per instance; visitors of the rest, and
+ * of paths longer than {@code MAX_PATH_LENGTH} characters, are counted under
+ * {@link PageViewSeries#OTHER_PATH}. The cap keeps entity key names well under Datastore's limit
+ * of 1500 bytes.
+ */
+public final class UniqueVisitors {
+
+  private static final String KIND = "UniqueVisitorSketch";
+  private static final int MAX_PATHS = 100;
+  private static final int MAX_PATH_LENGTH = 200;
+  private static final long FLUSH_INTERVAL_MS = TimeUnit.SECONDS.toMillis(10);
+  private static final int FLUSH_ATTEMPTS = 3;
+  // Cross-group transactions can touch at most 25 entity groups.
+  private static final int TRANSACTION_SIZE = 25;
+
+  private static final Logger logger = Logger.getLogger(UniqueVisitors.class.getName());
+
+  private static final UniqueVisitors INSTANCE = new UniqueVisitors();
+
+  /** A sketch of this instance, and whether it changed since it was last merged into Datastore. */
+  private static final class LocalSketch {
+    final HyperLogLog sketch = new HyperLogLog();
+    final AtomicBoolean dirty = new AtomicBoolean();
+  }
+
+  /** A changed sketch waiting to be merged into Datastore. */
+  private static final class Pending {
+    final LocalDate day;
+    final String path;
+    final LocalSketch local;
+
+    Pending(LocalDate day, String path, LocalSketch local) {
+      this.day = day;
+      this.path = path;
+      this.local = local;
+    }
+  }
+
+  // Sketches of this instance, by day and path. Past days are dropped once they are flushed.
+  private final Map<LocalDate, Map<String, LocalSketch>> sketches = new ConcurrentHashMap<>();
+  private final AtomicLong nextFlush = new AtomicLong();
+
+  private UniqueVisitors() {}
+
+  /** Returns the sketches shared by all servlets in this instance. */
+  public static UniqueVisitors getInstance() {
+    return INSTANCE;
+  }
+
+  /** Returns the UTC day containing {@code now}. */
+  public static LocalDate dayOf(long now) {
+    return LocalDate.ofEpochDay(now / TimeUnit.DAYS.toMillis(1));
+  }
+
+  /** Counts {@code visitorId} as a visitor of {@code path} at {@code now}. */
+  public void record(String path, String visitorId, long now) {
+    Map<String, LocalSketch> paths =
+        sketches.computeIfAbsent(dayOf(now), day -> new ConcurrentHashMap<>());
+    LocalSketch local = paths.get(path);
+    if (local == null) {
+      String key = paths.size() < MAX_PATHS && path.length() <= MAX_PATH_LENGTH
+          ? path : PageViewSeries.OTHER_PATH;
+      local = paths.computeIfAbsent(key, unused -> new LocalSketch());
+    }
+    // Set after the change, so a flush that clears the flag first is sure to see the change.
+    if (local.sketch.add(hash(visitorId))) {
+      local.dirty.set(true);
+    }
+  }
+
+  /**
+   * Returns the sketch of the visitors of {@code path} on {@code day}, from all instances. This
+   * instance's visitors are included even if they haven't been flushed yet. Paths longer than
+   * {@code MAX_PATH_LENGTH} get the sketch of {@link PageViewSeries#OTHER_PATH}, where their
+   * visitors are counted.
+   */
+  public HyperLogLog get(String path, LocalDate day) {
+    if (path.length() > MAX_PATH_LENGTH) {
+      path = PageViewSeries.OTHER_PATH;
+    }
+    HyperLogLog sketch = new HyperLogLog();
+    try {
+      Entity entity = DatastoreServiceFactory.getDatastoreService().get(key(path, day));
+      sketch.merge(HyperLogLog.fromBytes(((Blob) entity.getProperty("registers")).getBytes()));
+    } catch (EntityNotFoundException e) {
+      // Nobody has flushed this path and day yet.
+    }
+
+    Map<String, LocalSketch> paths = sketches.get(day);
+    LocalSketch local = paths == null ? null : paths.get(path);
+    if (local != null) {
+      sketch.merge(local.sketch);
+    }
+    return sketch;
+  }
+
+  /**
+   * Flushes if the last flush was at least {@code FLUSH_INTERVAL_MS} ago and no other request is
+   * flushing.
+   */
+  public void flushIfDue(long now) {
+    long due = nextFlush.get();
+    if (now >= due && nextFlush.compareAndSet(due, now + FLUSH_INTERVAL_MS)) {
+      flush(now);
+    }
+  }
+
+  /**
+   * Merges this instance's changed sketches into Datastore, and forgets days that are over. The
+   * sketches are merged {@code TRANSACTION_SIZE} at a time, each batch with one read and one
+   * commit, so the request that flushes waits for a few round trips rather than one per path.
+   */
+  public synchronized void flush(long now) {
+    List<Pending> pending = new ArrayList<>();
+    for (Map.Entry<LocalDate, Map<String, LocalSketch>> day : sketches.entrySet()) {
+      for (Map.Entry<String, LocalSketch> path : day.getValue().entrySet()) {
+        if (path.getValue().dirty.getAndSet(false)) {
+          pending.add(new Pending(day.getKey(), path.getKey(), path.getValue()));
+        }
+      }
+    }
+
+    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+    Set<LocalDate> unflushed = new HashSet<>();
+    for (int start = 0; start < pending.size(); start += TRANSACTION_SIZE) {
+      List<Pending> batch =
+          pending.subList(start, Math.min(start + TRANSACTION_SIZE, pending.size()));
+      if (!mergeIntoDatastore(datastore, batch)) {
+        for (Pending sketch : batch) {
+          sketch.local.dirty.set(true);
+          unflushed.add(sketch.day);
+        }
+      }
+    }
+
+    // A past day gets no more visitors, so once it is fully flushed it can go.
+    LocalDate today = dayOf(now);
+    for (LocalDate day : sketches.keySet()) {
+      if (day.isBefore(today) && !unflushed.contains(day)) {
+        sketches.remove(day);
+      }
+    }
+  }
+
+  /** Merges a batch of sketches into Datastore in one cross-group transaction. */
+  private static boolean mergeIntoDatastore(DatastoreService datastore, List<Pending> batch) {
+    List<Key> keys = new ArrayList<>(batch.size());
+    for (Pending sketch : batch) {
+      keys.add(key(sketch.path, sketch.day));
+    }
+
+    for (int attempt = 0; attempt < FLUSH_ATTEMPTS; attempt++) {
+      Transaction transaction =
+          datastore.beginTransaction(TransactionOptions.Builder.withXG(true));
+      try {
+        Map<Key, Entity> stored = datastore.get(transaction, keys);
+        List<Entity> entities = new ArrayList<>(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+          Pending sketch = batch.get(i);
+          HyperLogLog merged = new HyperLogLog();
+          Entity previous = stored.get(keys.get(i));
+          // No entity yet on the first flush of a path and day.
+          if (previous != null) {
+            Blob registers = (Blob) previous.getProperty("registers");
+            merged.merge(HyperLogLog.fromBytes(registers.getBytes()));
+          }
+          merged.merge(sketch.local.sketch);
+
+          Entity entity = new Entity(keys.get(i));
+          entity.setProperty("path", sketch.path);
+          entity.setProperty("day", sketch.day.toString());
+          entity.setUnindexedProperty("registers", new Blob(merged.toBytes()));
+          entities.add(entity);
+        }
+        datastore.put(transaction, entities);
+        transaction.commit();
+        return true;
+      } catch (ConcurrentModificationException e) {
+        // Another instance merged at the same time; read its registers and try again.
+      } catch (DatastoreTimeoutException | DatastoreFailureException e) {
+        // Merging twice is harmless, so even a commit that may have been applied can be retried.
+        logger.log(Level.WARNING, "Could not merge visitors of " + batch.size() + " paths", e);
+      } finally {
+        if (transaction.isActive()) {
+          transaction.rollback();
+        }
+      }
+    }
+    logger.warning("Could not flush visitors of " + batch.size() + " paths; retrying later");
+    return false;
+  }
+
+  private static Key key(String path, LocalDate day) {
+    return KeyFactory.createKey(KIND, day + " " + path);
+  }
+
+  /** 64-bit FNV-1a of the id's UTF-8 bytes, with its bits mixed so every bit is usable. */
+  private static long hash(String visitorId) {
+    long hash = 0xcbf29ce484222325L;
+    for (byte b : visitorId.getBytes(StandardCharsets.UTF_8)) {
+      hash ^= b & 0xff;
+      hash *= 0x100000001b3L;
+    }
+    hash ^= hash >>> 33;
+    hash *= 0xff51afd7ed558ccdL;
+    hash ^= hash >>> 33;
+    hash *= 0xc4ceb53ae63e94c5L;
+    hash ^= hash >>> 33;
+    return hash;
+  }
+}
@@ -0,0 +1,105 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.filters;
+
+import com.google.sps.data.PageViewSeries;
+import com.google.sps.data.UniqueVisitors;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.annotation.WebFilter;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Counts successful GET requests in {@link PageViewSeries}, and their visitors in
+ * {@link UniqueVisitors}, by path. Visitors are told apart by a random id in the
+ * {@code VISITOR_COOKIE} cookie. Files that App Engine serves as static files never reach the app,
+ * so they aren't counted.
+ *
+ * <p>Error responses aren't counted, so requests for pages that don't exist can't fill the
+ * per-path counters with junk paths. Neither are requests for the statistics themselves, so a
+ * dashboard polling them doesn't show up as traffic.
+ */
+@WebFilter("/*")
+public class PageViewFilter implements Filter {
+
+  private static final String VISITOR_COOKIE = "visitor";
+  private static final int VISITOR_COOKIE_MAX_AGE = 365 * 24 * 60 * 60;
+
+  // Paths of the servlets that report the statistics.
+  private static final Set<String> STATS_PATHS =
+      new HashSet<>(Arrays.asList("/page-view-series", "/unique-visitors"));
+
+  @Override
+  public void init(FilterConfig filterConfig) {}
+
+  @Override
+  public void doFilter(ServletRequest servletRequest, ServletResponse servletResponse,
+      FilterChain chain) throws IOException, ServletException {
+    HttpServletRequest request = (HttpServletRequest) servletRequest;
+    HttpServletResponse response = (HttpServletResponse) servletResponse;
+    String path = request.getRequestURI();
+    if (!"GET".equals(request.getMethod()) || STATS_PATHS.contains(path)) {
+      chain.doFilter(request, response);
+      return;
+    }
+
+    long now = System.currentTimeMillis();
+    // The cookie has to be set before the page is written.
+    String visitorId = getVisitorId(request, response);
+
+    chain.doFilter(request, response);
+
+    if (response.getStatus() >= HttpServletResponse.SC_BAD_REQUEST) {
+      return;
+    }
+    PageViewSeries.getInstance().record(path, now);
+    UniqueVisitors.getInstance().record(path, visitorId, now);
+    UniqueVisitors.getInstance().flushIfDue(now);
+  }
+
+  @Override
+  public void destroy() {}
+
+  /** Returns the visitor's id, giving them a new one if they don't have one yet. */
+  private static String getVisitorId(HttpServletRequest request, HttpServletResponse response) {
+    Cookie[] cookies = request.getCookies();
+    if (cookies != null) {
+      for (Cookie cookie : cookies) {
+        if (VISITOR_COOKIE.equals(cookie.getName())) {
+          return cookie.getValue();
+        }
+      }
+    }
+
+    String visitorId = UUID.randomUUID().toString();
+    Cookie cookie = new Cookie(VISITOR_COOKIE, visitorId);
+    cookie.setMaxAge(VISITOR_COOKIE_MAX_AGE);
+    cookie.setPath("/");
+    cookie.setHttpOnly(true);
+    response.addCookie(cookie);
+    return visitorId;
+  }
+}
@@ -0,0 +1,81 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import com.google.gson.Gson;
+import com.google.sps.data.PageViewSeries;
+import com.google.sps.data.PageViewSeries.Resolution;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Servlet that returns the views of one path over time, e.g.
+ * {@code /page-view-series?path=/page-views&resolution=hour&points=24}. The counts are a plain
+ * array, oldest first; point i covers {@code start + i * step} milliseconds since the epoch.
+ */
+@WebServlet("/page-view-series")
+public class PageViewSeriesServlet extends HttpServlet {
+
+  private final Gson gson = new Gson();
+
+  @Override
+  public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    String path = request.getParameter("path");
+    if (path == null || path.isEmpty()) {
+      response.sendError(HttpServletResponse.SC_BAD_REQUEST, "path is required");
+      return;
+    }
+
+    Resolution resolution;
+    int points;
+    try {
+      String userResolution = request.getParameter("resolution");
+      resolution = userResolution == null || userResolution.isEmpty()
+          ? Resolution.MINUTE
+          : Resolution.valueOf(userResolution.toUpperCase(Locale.ROOT));
+      String userPoints = request.getParameter("points");
+      points = userPoints == null || userPoints.isEmpty()
+          ? resolution.getLength()
+          : Integer.parseInt(userPoints);
+    } catch (IllegalArgumentException e) {
+      response.sendError(HttpServletResponse.SC_BAD_REQUEST,
+          "resolution must be minute, hour or day, and points a number");
+      return;
+    }
+
+    long now = System.currentTimeMillis();
+    long[] counts = PageViewSeries.getInstance().get(path, resolution, points, now);
+    if (counts == null) {
+      response.sendError(HttpServletResponse.SC_NOT_FOUND, "No views of " + path);
+      return;
+    }
+
+    long step = resolution.getMillis();
+    Map<String, Object> series = new LinkedHashMap<>();
+    series.put("path", path);
+    series.put("start", (now / step - counts.length + 1) * step);
+    series.put("step", step);
+    series.put("counts", counts);
+
+    response.setContentType("application/json;");
+    response.getWriter().println(gson.toJson(series));
+  }
+}
@@ -14,6 +14,7 @@
 
 package com.google.sps.servlets;
 
+import com.google.sps.data.PageViewCounter;
 import java.io.IOException;
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServlet;
@@ -24,14 +25,20 @@ import javax.servlet.http.HttpServletResponse;
 @WebServlet("/page-views")
 public class PageViewServlet extends HttpServlet {
 
-  private int pageViews = 0;
+  private final PageViewCounter pageViews = PageViewCounter.getInstance();
 
   @Override
   public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
-    pageViews++;
+    pageViews.increment();
 
     response.setContentType("text/html;");
     response.getWriter().println("<h1>Page Views</h1>");
-    response.getWriter().println("<p>This page has been viewed " + pageViews + " times.</p>");
+    response.getWriter()
+        .println("<p>This page has been viewed " + pageViews.getTotal() + " times.</p>");
+
+    // App Engine standard buffers the whole response and sends it when doGet returns, so the
+    // visitor of a request that flushes waits for the Datastore write. That is one request per
+    // FLUSH_INTERVAL_MS per instance; every other request returns right away.
+    pageViews.flushIfDue(System.currentTimeMillis());
   }
 }
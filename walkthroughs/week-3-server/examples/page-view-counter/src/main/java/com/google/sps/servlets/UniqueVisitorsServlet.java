@@ -0,0 +1,88 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import com.google.gson.Gson;
+import com.google.sps.data.HyperLogLog;
+import com.google.sps.data.UniqueVisitors;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Servlet that returns the estimated number of distinct visitors of a path, e.g.
+ * {@code /unique-visitors?path=/page-views&day=2020-06-01&days=7} for the week ending June 1st
+ * (UTC). A visitor who came on several of those days is counted once. {@code low} and
+ * {@code high} bound the true count with about 95% confidence.
+ */
+@WebServlet("/unique-visitors")
+public class UniqueVisitorsServlet extends HttpServlet {
+
+  // Longest range of days one request may merge.
+  private static final int MAX_DAYS = 31;
+
+  private final Gson gson = new Gson();
+
+  @Override
+  public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    String path = request.getParameter("path");
+    if (path == null || path.isEmpty()) {
+      response.sendError(HttpServletResponse.SC_BAD_REQUEST, "path is required");
+      return;
+    }
+
+    LocalDate day;
+    int days;
+    try {
+      String userDay = request.getParameter("day");
+      day = userDay == null || userDay.isEmpty()
+          ? UniqueVisitors.dayOf(System.currentTimeMillis())
+          : LocalDate.parse(userDay);
+      String userDays = request.getParameter("days");
+      days = userDays == null || userDays.isEmpty()
+          ? 1
+          : Math.max(1, Math.min(Integer.parseInt(userDays), MAX_DAYS));
+    } catch (DateTimeParseException | NumberFormatException e) {
+      response.sendError(
+          HttpServletResponse.SC_BAD_REQUEST, "day must be yyyy-mm-dd and days a number");
+      return;
+    }
+
+    HyperLogLog visitors = new HyperLogLog();
+    for (int i = 0; i < days; i++) {
+      visitors.merge(UniqueVisitors.getInstance().get(path, day.minusDays(i)));
+    }
+
+    long estimate = visitors.estimate();
+    double error = HyperLogLog.getStandardError();
+    Map<String, Object> result = new LinkedHashMap<>();
+    result.put("path", path);
+    result.put("from", day.minusDays(days - 1).toString());
+    result.put("to", day.toString());
+    result.put("visitors", estimate);
+    result.put("standardError", error);
+    result.put("low", Math.round(estimate * (1 - 2 * error)));
+    result.put("high", Math.round(estimate * (1 + 2 * error)));
+
+    response.setContentType("application/json;");
+    response.getWriter().println(gson.toJson(result));
+  }
+}
@@ -0,0 +1,87 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class CounterRingTest {
+
+  @Test
+  public void countsPerPeriod() {
+    CounterRing ring = new CounterRing(4);
+    ring.add(1, 2);
+    ring.add(1, 3);
+    ring.add(2, 1);
+
+    Assert.assertEquals(0, ring.get(0));
+    Assert.assertEquals(5, ring.get(1));
+    Assert.assertEquals(1, ring.get(2));
+  }
+
+  @Test
+  public void resetsASlotForALaterPeriod() {
+    CounterRing ring = new CounterRing(4);
+    ring.add(1, 5);
+    ring.add(5, 1);
+
+    Assert.assertEquals(0, ring.get(1));
+    Assert.assertEquals(1, ring.get(5));
+  }
+
+  @Test
+  public void ignoresPeriodsTheSlotHasMovedPast() {
+    CounterRing ring = new CounterRing(4);
+    ring.add(5, 1);
+    ring.add(1, 5);
+
+    Assert.assertEquals(0, ring.get(1));
+    Assert.assertEquals(1, ring.get(5));
+  }
+
+  @Test
+  public void visitsCountedPeriodsInAShortRange() {
+    CounterRing ring = new CounterRing(4);
+    ring.add(3, 1);
+    ring.add(4, 2);
+    ring.add(6, 3);
+
+    Assert.assertEquals(Arrays.asList(Arrays.asList(4L, 2L)), visit(ring, 4, 6));
+  }
+
+  @Test
+  public void visitsPeriodsLeftBeforeAGapLongerThanTheRing() {
+    CounterRing ring = new CounterRing(4);
+    ring.add(1, 1);
+    ring.add(2, 2);
+    ring.add(102, 3);
+
+    // Period 2's slot was reused by period 102, but period 1's wasn't.
+    Assert.assertEquals(Arrays.asList(Arrays.asList(1L, 1L)), visit(ring, 0, 100));
+    Assert.assertEquals(Arrays.asList(Arrays.asList(102L, 3L)), visit(ring, 100, 200));
+  }
+
+  private static List<List<Long>> visit(CounterRing ring, long from, long to) {
+    List<List<Long>> visited = new ArrayList<>();
+    ring.forEach(from, to, (period, count) -> visited.add(Arrays.asList(period, count)));
+    return visited;
+  }
+}
@@ -0,0 +1,111 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class HyperLogLogTest {
+  // Four standard errors; the inputs are fixed, so the tests always pass or always fail.
+  private static final double TOLERANCE = 4 * HyperLogLog.getStandardError();
+
+  @Test
+  public void estimatesZeroWhenEmpty() {
+    Assert.assertEquals(0, new HyperLogLog().estimate());
+  }
+
+  @Test
+  public void ignoresRepeats() {
+    HyperLogLog sketch = new HyperLogLog();
+    for (int round = 0; round < 10; round++) {
+      for (int i = 0; i < 100; i++) {
+        sketch.add(hash(i));
+      }
+    }
+
+    assertClose(100, sketch.estimate());
+  }
+
+  @Test
+  public void estimatesManyItems() {
+    // Well past 3 * REGISTERS, where the estimate no longer counts empty registers.
+    assertClose(1_000_000, sketchOf(0, 1_000_000).estimate());
+  }
+
+  @Test
+  public void capsTheRankOfHashesWithFewBitsSet() {
+    HyperLogLog sketch = new HyperLogLog();
+    // Every bit below the index is zero, which is the largest rank there is.
+    sketch.add(0);
+    sketch.add(Long.MIN_VALUE);
+
+    Assert.assertEquals(2, sketch.estimate());
+  }
+
+  @Test
+  public void addReportsWhetherTheSketchChanged() {
+    HyperLogLog sketch = new HyperLogLog();
+
+    Assert.assertTrue(sketch.add(hash(1)));
+    Assert.assertFalse(sketch.add(hash(1)));
+  }
+
+  @Test
+  public void mergeEstimatesTheUnion() {
+    HyperLogLog sketch = sketchOf(0, 60_000);
+    sketch.merge(sketchOf(40_000, 100_000));
+
+    assertClose(100_000, sketch.estimate());
+  }
+
+  @Test
+  public void survivesARoundTripThroughBytes() {
+    HyperLogLog sketch = sketchOf(0, 5000);
+
+    HyperLogLog copy = HyperLogLog.fromBytes(sketch.toBytes());
+
+    Assert.assertEquals(sketch.estimate(), copy.estimate());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void rejectsBytesOfTheWrongLength() {
+    HyperLogLog.fromBytes(new byte[HyperLogLog.REGISTERS - 1]);
+  }
+
+  private static HyperLogLog sketchOf(int from, int to) {
+    HyperLogLog sketch = new HyperLogLog();
+    for (int i = from; i < to; i++) {
+      sketch.add(hash(i));
+    }
+    return sketch;
+  }
+
+  /** Spreads the bits of {@code i} over the whole hash (the MurmurHash3 finalizer). */
+  private static long hash(long i) {
+    i ^= i >>> 33;
+    i *= 0xff51afd7ed558ccdL;
+    i ^= i >>> 33;
+    i *= 0xc4ceb53ae63e94c5L;
+    i ^= i >>> 33;
+    return i;
+  }
+
+  private static void assertClose(long expected, long estimate) {
+    Assert.assertEquals(expected, estimate, expected * TOLERANCE);
+  }
+}
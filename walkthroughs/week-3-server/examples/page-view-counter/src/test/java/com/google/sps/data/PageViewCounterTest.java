@@ -0,0 +1,99 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import com.google.appengine.tools.development.testing.LocalDatastoreServiceTestConfig;
+import com.google.appengine.tools.development.testing.LocalServiceTestHelper;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class PageViewCounterTest {
+
+  private final LocalServiceTestHelper datastore =
+      new LocalServiceTestHelper(new LocalDatastoreServiceTestConfig());
+
+  private PageViewCounter counter;
+
+  @Before
+  public void setUp() {
+    datastore.setUp();
+    counter = new PageViewCounter();
+  }
+
+  @After
+  public void tearDown() {
+    datastore.tearDown();
+  }
+
+  @Test
+  public void flushesOncePerInterval() {
+    increment(5);
+    counter.flushIfDue(0);
+    Assert.assertEquals(5, storedTotal());
+
+    // Not due yet, so the new views are only counted here.
+    increment(3);
+    counter.flushIfDue(999);
+    Assert.assertEquals(5, storedTotal());
+    Assert.assertEquals(8, counter.getTotal());
+
+    counter.flushIfDue(1000);
+    Assert.assertEquals(8, storedTotal());
+    Assert.assertEquals(8, counter.getTotal());
+  }
+
+  @Test
+  public void keepsViewsCountedDuringAFlush() throws InterruptedException {
+    int threads = 4;
+    int viewsPerThread = 20000;
+    List<Thread> workers = new ArrayList<>();
+    for (int i = 0; i < threads; i++) {
+      Thread worker = new Thread(() -> increment(viewsPerThread));
+      workers.add(worker);
+      worker.start();
+    }
+
+    // The local Datastore only serves this thread, so flush from here while the others count.
+    long now = 0;
+    for (Thread worker : workers) {
+      while (worker.isAlive()) {
+        counter.flushIfDue(now);
+        now += 1000;
+      }
+    }
+    counter.flush();
+
+    Assert.assertEquals(threads * viewsPerThread, counter.getTotal());
+    Assert.assertEquals(threads * viewsPerThread, storedTotal());
+  }
+
+  private void increment(int views) {
+    for (int i = 0; i < views; i++) {
+      counter.increment();
+    }
+  }
+
+  /** Returns the total in Datastore, as a newly started instance would see it. */
+  private static long storedTotal() {
+    return new PageViewCounter().getTotal();
+  }
+}
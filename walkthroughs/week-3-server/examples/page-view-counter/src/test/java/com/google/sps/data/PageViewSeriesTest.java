@@ -0,0 +1,98 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import com.google.sps.data.PageViewSeries.Resolution;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class PageViewSeriesTest {
+
+  private PageViewSeries series;
+
+  @Before
+  public void setUp() {
+    series = new PageViewSeries(0);
+  }
+
+  @Test
+  public void countsViewsPerMinute() {
+    series.record("/a", minute(5));
+    series.record("/a", minute(5));
+    series.record("/a", minute(7));
+
+    Assert.assertArrayEquals(new long[] {2, 0, 1},
+        series.get("/a", Resolution.MINUTE, 3, minute(7)));
+  }
+
+  @Test
+  public void rollsFinishedMinutesUpIntoHoursAndDays() {
+    series.record("/a", minute(5));
+    series.record("/a", minute(6));
+    series.record("/a", minute(70));
+    // Rolls up everything before minute 79.
+    series.record("/a", minute(80));
+
+    Assert.assertArrayEquals(new long[] {2, 1},
+        series.get("/a", Resolution.HOUR, 2, minute(80)));
+    Assert.assertArrayEquals(new long[] {3}, series.get("/a", Resolution.DAY, 1, minute(80)));
+  }
+
+  @Test
+  public void leavesTheMinuteThatJustEndedForTheNextRollup() {
+    series.record("/a", minute(5));
+    series.record("/a", minute(6));
+    Assert.assertArrayEquals(new long[] {0}, series.get("/a", Resolution.HOUR, 1, minute(6)));
+
+    series.record("/a", minute(7));
+    Assert.assertArrayEquals(new long[] {1}, series.get("/a", Resolution.HOUR, 1, minute(7)));
+  }
+
+  @Test
+  public void rollsUpViewsFromBeforeAnIdleGapLongerThanTheMinuteRing() {
+    series.record("/a", minute(100));
+    series.record("/a", minute(300));
+
+    Assert.assertArrayEquals(new long[] {1, 0, 0, 0, 0},
+        series.get("/a", Resolution.HOUR, 5, minute(300)));
+    Assert.assertArrayEquals(new long[] {1}, series.get("/a", Resolution.DAY, 1, minute(300)));
+  }
+
+  @Test
+  public void returnsNullForPathsNeverViewed() {
+    Assert.assertNull(series.get("/never", Resolution.MINUTE, 1, minute(0)));
+  }
+
+  @Test
+  public void countsVeryLongPathsUnderOther() {
+    char[] path = new char[1000];
+    Arrays.fill(path, 'a');
+    series.record("/" + new String(path), minute(1));
+
+    Assert.assertNull(series.get("/" + new String(path), Resolution.MINUTE, 1, minute(1)));
+    Assert.assertArrayEquals(new long[] {1},
+        series.get(PageViewSeries.OTHER_PATH, Resolution.MINUTE, 1, minute(1)));
+  }
+
+  private static long minute(long minute) {
+    return TimeUnit.MINUTES.toMillis(minute);
+  }
+}
@@ -14,19 +14,63 @@
 
 package com.google.sps.servlets;
 
+import com.google.gson.Gson;
+import com.google.sps.text.ApproximateWordCounts;
+import com.google.sps.text.ExternalSorter;
+import com.google.sps.text.WordCount;
+import com.google.sps.text.WordCounts;
+import com.google.sps.text.WordReader;
+import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Paths;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
-/** Servlet that processes text. */
+/**
+ * Servlet that processes text.
+ *
+ * <p>Form posts are processed in memory. A {@code text/plain} body is processed as a stream
+ * instead, for input larger than the heap: the options come from the query string, e.g.
+ * {@code POST /text?upper-case=true&sort=true}, and the response has one word per line. Sorting a
+ * stream uses an {@link ExternalSorter} with {@code SORT_MEMORY_BYTES} of heap and
+ * {@code SORT_THREADS} threads, spilling to the temporary directory.
+ *
+ * <p>A stream can also be counted instead of listed, in the same single pass:
+ * <ul>
+ *   <li>{@code op=frequency} responds with every distinct word and its count, one
+ *       {@code word<TAB>count} per line.
+ *   <li>{@code op=top&k=10} responds with JSON: the number of words, the number of distinct words,
+ *       and the {@code k} most frequent words. Add {@code approximate=true} for input with too many
+ *       distinct words to count exactly; see {@link ApproximateWordCounts}.
+ * </ul>
+ */
 @WebServlet("/text")
 public final class TextProcessorServlet extends HttpServlet {
 
+  private static final long SORT_MEMORY_BYTES =
+      Long.getLong("textProcessor.sortMemoryMb", 64) * 1024 * 1024;
+  private static final int SORT_THREADS = Integer.getInteger("textProcessor.sortThreads", 2);
+
+  private static final int DEFAULT_TOP = 10;
+  private static final int MAX_TOP = 1000;
+
+  private final Gson gson = new Gson();
+
   @Override
   public void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    String contentType = request.getContentType();
+    if (contentType != null && contentType.startsWith("text/plain")) {
+      processStream(request, response);
+      return;
+    }
+
     // Get the input from the form.
     String text = getParameter(request, "text-input", "");
     boolean upperCase = Boolean.parseBoolean(getParameter(request, "upper-case", "false"));
@@ -50,6 +94,121 @@ public final class TextProcessorServlet extends HttpServlet {
     response.getWriter().println(Arrays.toString(words));
   }
 
+  /** Processes the request body one word at a time, without ever holding all of it in memory. */
+  private void processStream(HttpServletRequest request, HttpServletResponse response)
+      throws IOException {
+    String op = getParameter(request, "op", "words");
+    boolean upperCase = Boolean.parseBoolean(getParameter(request, "upper-case", "false"));
+    boolean sort = Boolean.parseBoolean(getParameter(request, "sort", "false"));
+    boolean approximate = Boolean.parseBoolean(getParameter(request, "approximate", "false"));
+    int k;
+    try {
+      int userK = Integer.parseInt(getParameter(request, "k", "" + DEFAULT_TOP));
+      k = Math.max(0, Math.min(userK, MAX_TOP));
+    } catch (NumberFormatException e) {
+      response.sendError(HttpServletResponse.SC_BAD_REQUEST, "k must be an integer");
+      return;
+    }
+
+    if (request.getCharacterEncoding() == null) {
+      request.setCharacterEncoding("UTF-8");
+    }
+    WordReader words = new WordReader(request.getReader());
+
+    switch (op) {
+      case "words":
+        writeWords(words, upperCase, sort, response);
+        break;
+      case "frequency":
+        writeFrequencies(countExactly(words, upperCase), response);
+        break;
+      case "top":
+        writeTop(words, upperCase, k, approximate, response);
+        break;
+      default:
+        response.sendError(
+            HttpServletResponse.SC_BAD_REQUEST, "op must be words, frequency or top");
+    }
+  }
+
+  /** Writes every word, one per line, sorted if {@code sort} is set. */
+  private void writeWords(WordReader words, boolean upperCase, boolean sort,
+      HttpServletResponse response) throws IOException {
+    response.setContentType("text/plain; charset=UTF-8");
+    Writer out = new BufferedWriter(response.getWriter(), 1 << 16);
+
+    if (!sort) {
+      for (String word = words.next(); word != null; word = words.next()) {
+        out.write(upperCase ? word.toUpperCase() : word);
+        out.write('\n');
+      }
+      out.flush();
+      return;
+    }
+
+    try (ExternalSorter sorter = new ExternalSorter(
+        SORT_MEMORY_BYTES, SORT_THREADS, Paths.get(System.getProperty("java.io.tmpdir")))) {
+      for (String word = words.next(); word != null; word = words.next()) {
+        sorter.add(upperCase ? word.toUpperCase() : word);
+      }
+      sorter.writeSorted(out);
+    }
+    out.flush();
+  }
+
+  /** Writes every distinct word and its count, one per line. */
+  private void writeFrequencies(WordCounts counts, HttpServletResponse response)
+      throws IOException {
+    response.setContentType("text/plain; charset=UTF-8");
+    Writer out = new BufferedWriter(response.getWriter(), 1 << 16);
+    counts.forEach((word, count) -> {
+      out.write(word);
+      out.write('\t');
+      out.write(Long.toString(count));
+      out.write('\n');
+    });
+    out.flush();
+  }
+
+  /** Writes the word totals and the {@code k} most frequent words as JSON. */
+  private void writeTop(WordReader words, boolean upperCase, int k, boolean approximate,
+      HttpServletResponse response) throws IOException {
+    long total;
+    long distinct;
+    List<WordCount> top;
+    if (approximate) {
+      ApproximateWordCounts counts = new ApproximateWordCounts(k);
+      for (String word = words.next(); word != null; word = words.next()) {
+        counts.add(upperCase ? word.toUpperCase() : word);
+      }
+      total = counts.getTotal();
+      distinct = counts.getDistinct();
+      top = counts.top();
+    } else {
+      WordCounts counts = countExactly(words, upperCase);
+      total = counts.getTotal();
+      distinct = counts.getDistinct();
+      top = counts.top(k);
+    }
+
+    Map<String, Object> result = new LinkedHashMap<>();
+    result.put("words", total);
+    result.put("distinct", distinct);
+    result.put("approximate", approximate);
+    result.put("top", top);
+
+    response.setContentType("application/json;");
+    response.getWriter().println(gson.toJson(result));
+  }
+
+  private static WordCounts countExactly(WordReader words, boolean upperCase) throws IOException {
+    WordCounts counts = new WordCounts();
+    for (String word = words.next(); word != null; word = words.next()) {
+      counts.add(upperCase ? word.toUpperCase() : word);
+    }
+    return counts;
+  }
+
   /**
    * @return the request parameter, or the default value if the parameter
    *         was not specified by the client
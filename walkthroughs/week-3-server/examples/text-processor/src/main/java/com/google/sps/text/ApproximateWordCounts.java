@@ -0,0 +1,154 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.text;
+
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Approximate word statistics in fixed memory, for input with too many distinct words to count
+ * exactly. Counts come from a {@link CountMinSketch} and can be slightly too high; the number of
+ * distinct words comes from a {@link DistinctCounter}. Words are hashed with a random seed per
+ * instance, so input can't be crafted to collide in the sketch and inflate a word's count.
+ *
+ * <p>The {@code k} words with the highest estimated counts so far are kept in a min-heap. When a
+ * word's estimate passes the smallest in the heap, it takes that word's place, so a word that
+ * becomes frequent late is still found.
+ */
+public final class ApproximateWordCounts {
+
+  private static final int SKETCH_DEPTH = 4;
+  private static final int SKETCH_WIDTH_BITS = 19;
+  private static final SecureRandom SEEDS = new SecureRandom();
+
+  private final long seed = SEEDS.nextLong();
+  private final CountMinSketch sketch = new CountMinSketch(SKETCH_DEPTH, SKETCH_WIDTH_BITS);
+  private final DistinctCounter distinct = new DistinctCounter();
+  private final int k;
+  private long total;
+
+  // Min-heap of the top candidates by estimated count, and where each word is in it.
+  private final Candidate[] heap;
+  private int heapSize;
+  private final Map<String, Candidate> candidates = new HashMap<>();
+
+  /** Creates counts that track the {@code k} most frequent words. */
+  public ApproximateWordCounts(int k) {
+    this.k = k;
+    this.heap = new Candidate[k];
+  }
+
+  /** Counts one occurrence of {@code word}. */
+  public void add(String word) {
+    long hash = WordHash.of(word, seed);
+    long estimate = sketch.add(hash);
+    distinct.add(hash);
+    total++;
+
+    Candidate candidate = candidates.get(word);
+    if (candidate != null) {
+      candidate.count = estimate;
+      siftDown(candidate.position);
+    } else if (heapSize < k) {
+      candidate = new Candidate(word, estimate);
+      candidates.put(word, candidate);
+      heap[heapSize] = candidate;
+      candidate.position = heapSize++;
+      siftUp(candidate.position);
+    } else if (k > 0 && estimate > heap[0].count) {
+      candidates.remove(heap[0].word);
+      candidate = new Candidate(word, estimate);
+      candidates.put(word, candidate);
+      heap[0] = candidate;
+      siftDown(0);
+    }
+  }
+
+  /** Returns the number of words counted, including repeats. */
+  public long getTotal() {
+    return total;
+  }
+
+  /** Returns the estimated number of distinct words. */
+  public long getDistinct() {
+    return distinct.estimate();
+  }
+
+  /**
+   * Returns the (up to) {@code k} most frequent words with estimated counts, most frequent first.
+   */
+  public List<WordCount> top() {
+    List<WordCount> top = new ArrayList<>(heapSize);
+    for (int i = 0; i < heapSize; i++) {
+      top.add(new WordCount(heap[i].word, heap[i].count));
+    }
+    top.sort(Comparator.comparingLong(WordCount::getCount).reversed());
+    return top;
+  }
+
+  private void siftUp(int position) {
+    Candidate candidate = heap[position];
+    while (position > 0) {
+      int parent = (position - 1) / 2;
+      if (heap[parent].count <= candidate.count) {
+        break;
+      }
+      place(heap[parent], position);
+      position = parent;
+    }
+    place(candidate, position);
+  }
+
+  private void siftDown(int position) {
+    Candidate candidate = heap[position];
+    while (true) {
+      int child = 2 * position + 1;
+      if (child >= heapSize) {
+        break;
+      }
+      if (child + 1 < heapSize && heap[child + 1].count < heap[child].count) {
+        child++;
+      }
+      if (candidate.count <= heap[child].count) {
+        break;
+      }
+      place(heap[child], position);
+      position = child;
+    }
+    place(candidate, position);
+  }
+
+  private void place(Candidate candidate, int position) {
+    heap[position] = candidate;
+    candidate.position = position;
+  }
+
+  /** A word in the heap. */
+  private static final class Candidate {
+
+    private final String word;
+    private long count;
+    private int position;
+
+    Candidate(String word, long count) {
+      this.word = word;
+      this.count = count;
+    }
+  }
+}
@@ -0,0 +1,65 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.text;
+
+/**
+ * Approximate counts of many items in fixed memory: {@code depth} rows of {@code width} counters.
+ * An item is counted in one counter per row, chosen by its hash, and its count is the smallest of
+ * those counters. Collisions can only make a count too high, by at most about
+ * {@code e / width} of the total with probability {@code 1 - e^-depth}.
+ *
+ * <p>Adding uses conservative update: only the counters equal to the current smallest one are
+ * raised, which keeps the others from growing more than they need to.
+ */
+final class CountMinSketch {
+
+  private final int depth;
+  private final int mask;
+  private final long[] counters;
+
+  /** Creates a sketch of {@code depth} rows of {@code 2^widthBits} counters. */
+  CountMinSketch(int depth, int widthBits) {
+    this.depth = depth;
+    this.mask = (1 << widthBits) - 1;
+    this.counters = new long[depth << widthBits];
+  }
+
+  /** Counts one occurrence of the item with {@code hash}, and returns its new estimated count. */
+  long add(long hash) {
+    long estimate = estimate(hash) + 1;
+    for (int row = 0; row < depth; row++) {
+      int index = index(hash, row);
+      if (counters[index] < estimate) {
+        counters[index] = estimate;
+      }
+    }
+    return estimate;
+  }
+
+  /** Returns the estimated count of the item with {@code hash}. Never lower than the true count. */
+  long estimate(long hash) {
+    long estimate = Long.MAX_VALUE;
+    for (int row = 0; row < depth; row++) {
+      estimate = Math.min(estimate, counters[index(hash, row)]);
+    }
+    return estimate;
+  }
+
+  /** Returns the counter of {@code row} for the hash, derived from its two halves. */
+  private int index(long hash, int row) {
+    int column = ((int) hash + row * ((int) (hash >>> 32) | 1)) & mask;
+    return row * (mask + 1) + column;
+  }
+}
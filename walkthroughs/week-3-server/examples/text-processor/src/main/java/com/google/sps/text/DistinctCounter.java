@@ -0,0 +1,62 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.text;
+
+/**
+ * Estimates the number of distinct items with a HyperLogLog sketch of {@code REGISTERS} bytes,
+ * with a relative standard error of {@code 1.04 / sqrt(REGISTERS)}, about 0.8%.
+ */
+final class DistinctCounter {
+
+  private static final int PRECISION = 14;
+  private static final int REGISTERS = 1 << PRECISION;
+
+  private final byte[] registers = new byte[REGISTERS];
+
+  /** Adds the item with {@code hash}. */
+  void add(long hash) {
+    int index = (int) (hash >>> (64 - PRECISION));
+    // The rank counts the leading zeros of the bits left after the index. Setting the last bit
+    // that can matter limits it to 65 - PRECISION even for hashes with none of those bits set, so
+    // 1L << register in estimate() stays in range.
+    long rest = (hash << PRECISION) | (1L << (PRECISION - 1));
+    byte rank = (byte) (Long.numberOfLeadingZeros(rest) + 1);
+    if (rank > registers[index]) {
+      registers[index] = rank;
+    }
+  }
+
+  /** Returns the estimated number of distinct items added. */
+  long estimate() {
+    double sum = 0;
+    int zeros = 0;
+    for (byte register : registers) {
+      sum += 1.0 / (1L << register);
+      if (register == 0) {
+        zeros++;
+      }
+    }
+
+    // With few items, counting the empty registers is more accurate.
+    if (zeros > 0) {
+      double linearCount = REGISTERS * Math.log((double) REGISTERS / zeros);
+      if (linearCount <= 3 * REGISTERS) {
+        return Math.round(linearCount);
+      }
+    }
+    double alpha = 0.7213 / (1 + 1.079 / REGISTERS);
+    return Math.round(alpha * REGISTERS * REGISTERS / sum);
+  }
+}
@@ -0,0 +1,255 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.text;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sorts more words than fit in memory. Words are collected into runs of about
+ * {@code memoryBudget / (threads + 1)} bytes. Each full run is sorted and written to a temporary
+ * file by one of {@code threads} worker threads while the next run fills up, so at most
+ * {@code threads + 1} runs are in memory at once. The sorted files are then merged, at most
+ * {@code MAX_FAN_IN} at a time.
+ *
+ * <p>If all words fit in the first run, nothing is written to disk. Words must not contain
+ * newlines, which separate them in the run files.
+ */
+public final class ExternalSorter implements AutoCloseable {
+
+  private static final int MAX_FAN_IN = 64;
+  private static final int IO_BUFFER_SIZE = 1 << 16;
+  private static final long CLOSE_TIMEOUT_SECONDS = 60;
+
+  // Rough heap cost of a String in a run: object and array headers, the reference to it, and two
+  // bytes per char.
+  private static final int WORD_OVERHEAD = 56;
+
+  private final long runBytes;
+  private final Path tempDirectory;
+  private final ExecutorService workers;
+  private final Semaphore freeWorkers;
+
+  private final List<Future<Path>> runs = new ArrayList<>();
+  private final List<Path> files = new ArrayList<>();
+  private List<String> current = new ArrayList<>();
+  private long currentBytes;
+
+  /**
+   * @param memoryBudget bytes of heap the words may take up
+   * @param threads number of runs sorted at the same time
+   * @param tempDirectory where the sorted runs are written
+   */
+  public ExternalSorter(long memoryBudget, int threads, Path tempDirectory) {
+    this.runBytes = Math.max(1, memoryBudget / (threads + 1));
+    this.tempDirectory = tempDirectory;
+    this.workers = Executors.newFixedThreadPool(threads);
+    this.freeWorkers = new Semaphore(threads);
+  }
+
+  /** Adds a word. May wait for a worker if every worker is busy sorting a run. */
+  public void add(String word) throws IOException {
+    current.add(word);
+    currentBytes += WORD_OVERHEAD + 2L * word.length();
+    if (currentBytes >= runBytes) {
+      spill();
+    }
+  }
+
+  /** Writes all words added, sorted, one per line. Returns the number of words written. */
+  public long writeSorted(Writer out) throws IOException {
+    if (runs.isEmpty()) {
+      String[] words = current.toArray(new String[0]);
+      current = new ArrayList<>();
+      Arrays.sort(words);
+      for (String word : words) {
+        out.write(word);
+        out.write('\n');
+      }
+      return words.length;
+    }
+
+    if (!current.isEmpty()) {
+      spill();
+    }
+    List<Path> sorted = new ArrayList<>();
+    for (Future<Path> run : runs) {
+      try {
+        sorted.add(run.get());
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted while sorting");
+      } catch (ExecutionException e) {
+        throw new IOException("Could not sort a run", e.getCause());
+      }
+    }
+
+    // Merge in passes until one merge can read every remaining file at once.
+    while (sorted.size() > MAX_FAN_IN) {
+      List<Path> merged = new ArrayList<>();
+      for (int start = 0; start < sorted.size(); start += MAX_FAN_IN) {
+        List<Path> group = sorted.subList(start, Math.min(start + MAX_FAN_IN, sorted.size()));
+        Path file = createFile();
+        try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+          merge(group, writer);
+        }
+        for (Path input : group) {
+          Files.delete(input);
+        }
+        merged.add(file);
+      }
+      sorted = merged;
+    }
+    return merge(sorted, out);
+  }
+
+  /**
+   * Stops the workers and deletes the temporary files. Waits for a run that is being written to
+   * finish first, so its file isn't created after the files are deleted.
+   */
+  @Override
+  public void close() throws IOException {
+    workers.shutdownNow();
+    try {
+      if (!workers.awaitTermination(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+        throw new IOException("Workers did not stop; temporary files are left in " + tempDirectory);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting for the workers to stop");
+    }
+    synchronized (files) {
+      for (Path file : files) {
+        Files.deleteIfExists(file);
+      }
+      files.clear();
+    }
+  }
+
+  /** Hands the current run to a worker to sort and write. */
+  private void spill() throws IOException {
+    String[] words = current.toArray(new String[0]);
+    current = new ArrayList<>();
+    currentBytes = 0;
+
+    try {
+      freeWorkers.acquire();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting for a worker");
+    }
+    runs.add(workers.submit(() -> {
+      try {
+        Arrays.sort(words);
+        Path file = createFile();
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+          for (String word : words) {
+            writer.write(word);
+            writer.write('\n');
+          }
+        }
+        return file;
+      } finally {
+        freeWorkers.release();
+      }
+    }));
+  }
+
+  /** Merges sorted files into {@code out}, and returns the number of words written. */
+  private static long merge(List<Path> inputs, Writer out) throws IOException {
+    PriorityQueue<Cursor> heads = new PriorityQueue<>(inputs.size());
+    try {
+      for (Path input : inputs) {
+        Cursor cursor = new Cursor(input);
+        if (cursor.advance()) {
+          heads.add(cursor);
+        } else {
+          cursor.close();
+        }
+      }
+
+      long count = 0;
+      while (!heads.isEmpty()) {
+        Cursor smallest = heads.poll();
+        out.write(smallest.word);
+        out.write('\n');
+        count++;
+        if (smallest.advance()) {
+          heads.add(smallest);
+        } else {
+          smallest.close();
+        }
+      }
+      return count;
+    } finally {
+      for (Cursor cursor : heads) {
+        cursor.close();
+      }
+    }
+  }
+
+  private Path createFile() throws IOException {
+    Path file = Files.createTempFile(tempDirectory, "sort-run-", ".txt");
+    synchronized (files) {
+      files.add(file);
+    }
+    return file;
+  }
+
+  /** The next unmerged word of a sorted file. */
+  private static final class Cursor implements Comparable<Cursor> {
+
+    private final BufferedReader reader;
+    private String word;
+
+    Cursor(Path file) throws IOException {
+      reader = new BufferedReader(
+          new InputStreamReader(Files.newInputStream(file), StandardCharsets.UTF_8),
+          IO_BUFFER_SIZE);
+    }
+
+    /** Moves to the next word. Returns false at the end of the file. */
+    boolean advance() throws IOException {
+      word = reader.readLine();
+      return word != null;
+    }
+
+    void close() throws IOException {
+      reader.close();
+    }
+
+    @Override
+    public int compareTo(Cursor other) {
+      return word.compareTo(other.word);
+    }
+  }
+}
@@ -0,0 +1,135 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.text;
+
+import java.io.IOException;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Exact number of times each word occurred. Words and counts are kept in parallel arrays with
+ * open addressing, so counting a word allocates nothing: no map entries, and no boxed counts.
+ *
+ * <p>Slots are picked by {@link WordHash} with a random seed per instance rather than by
+ * {@link String#hashCode}. Input of words with equal {@code hashCode}s, which are easy to make,
+ * would otherwise all probe the same run of slots and make counting quadratic.
+ */
+public final class WordCounts {
+
+  /** Receives each word and its count. */
+  public interface Visitor {
+    void visit(String word, long count) throws IOException;
+  }
+
+  private static final SecureRandom SEEDS = new SecureRandom();
+
+  private final long seed = SEEDS.nextLong();
+  private String[] words = new String[1 << 10];
+  private int[] hashes = new int[1 << 10];
+  private long[] counts = new long[1 << 10];
+  private int size;
+  private long total;
+
+  /** Counts one occurrence of {@code word}. */
+  public void add(String word) {
+    long wordHash = WordHash.of(word, seed);
+    int hash = (int) (wordHash ^ (wordHash >>> 32));
+    int mask = words.length - 1;
+    for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+      String existing = words[slot];
+      if (existing == null) {
+        words[slot] = word;
+        hashes[slot] = hash;
+        counts[slot] = 1;
+        size++;
+        if (size * 4 >= words.length * 3) {
+          grow();
+        }
+        break;
+      }
+      if (hashes[slot] == hash && existing.equals(word)) {
+        counts[slot]++;
+        break;
+      }
+    }
+    total++;
+  }
+
+  /** Returns the number of words counted, including repeats. */
+  public long getTotal() {
+    return total;
+  }
+
+  /** Returns the number of distinct words. */
+  public int getDistinct() {
+    return size;
+  }
+
+  /** Calls {@code visitor} with every distinct word and its count, in no particular order. */
+  public void forEach(Visitor visitor) throws IOException {
+    for (int slot = 0; slot < words.length; slot++) {
+      if (words[slot] != null) {
+        visitor.visit(words[slot], counts[slot]);
+      }
+    }
+  }
+
+  /** Returns the {@code k} most frequent words, most frequent first. */
+  public List<WordCount> top(int k) {
+    PriorityQueue<WordCount> top =
+        new PriorityQueue<>(Comparator.comparingLong(WordCount::getCount));
+    for (int slot = 0; slot < words.length && k > 0; slot++) {
+      if (words[slot] == null) {
+        continue;
+      }
+      if (top.size() < k) {
+        top.add(new WordCount(words[slot], counts[slot]));
+      } else if (counts[slot] > top.peek().getCount()) {
+        top.poll();
+        top.add(new WordCount(words[slot], counts[slot]));
+      }
+    }
+
+    List<WordCount> sorted = new ArrayList<>(top);
+    sorted.sort(Comparator.comparingLong(WordCount::getCount).reversed());
+    return sorted;
+  }
+
+  private void grow() {
+    String[] oldWords = words;
+    int[] oldHashes = hashes;
+    long[] oldCounts = counts;
+    words = new String[oldWords.length * 2];
+    hashes = new int[oldWords.length * 2];
+    counts = new long[oldWords.length * 2];
+
+    int mask = words.length - 1;
+    for (int old = 0; old < oldWords.length; old++) {
+      if (oldWords[old] == null) {
+        continue;
+      }
+      int slot = oldHashes[old] & mask;
+      while (words[slot] != null) {
+        slot = (slot + 1) & mask;
+      }
+      words[slot] = oldWords[old];
+      hashes[slot] = oldHashes[old];
+      counts[slot] = oldCounts[old];
+    }
+  }
+}
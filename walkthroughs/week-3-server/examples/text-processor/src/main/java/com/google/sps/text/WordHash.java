@@ -0,0 +1,45 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.text;
+
+/** 64-bit hash of a word, for the sketches and {@link WordCounts}. */
+final class WordHash {
+
+  private WordHash() {}
+
+  /** FNV-1a over the word's chars, with its bits mixed so every bit is usable. */
+  static long of(String word) {
+    return of(word, 0);
+  }
+
+  /**
+   * Like {@link #of(String)}, but starting from a state that depends on {@code seed}. Without
+   * the seed, it's hard to find words whose hashes collide, as one can for
+   * {@link String#hashCode} ("Aa" and "BB").
+   */
+  static long of(String word, long seed) {
+    long hash = 0xcbf29ce484222325L ^ seed;
+    for (int i = 0; i < word.length(); i++) {
+      hash ^= word.charAt(i);
+      hash *= 0x100000001b3L;
+    }
+    hash ^= hash >>> 33;
+    hash *= 0xff51afd7ed558ccdL;
+    hash ^= hash >>> 33;
+    hash *= 0xc4ceb53ae63e94c5L;
+    hash ^= hash >>> 33;
+    return hash;
+  }
+}
@@ -0,0 +1,74 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.text;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Reads comma- or line-separated words from a stream one at a time, so the whole text never has
+ * to be in memory. Whitespace around each word is dropped, and so are empty words.
+ */
+public final class WordReader {
+
+  // Longest word accepted, so input without separators can't fill the heap.
+  public static final int MAX_WORD_LENGTH = 1 << 20;
+
+  private final Reader in;
+  private final char[] buffer = new char[1 << 16];
+  private final StringBuilder word = new StringBuilder();
+  private int position;
+  private int limit;
+  private boolean eof;
+
+  public WordReader(Reader in) {
+    this.in = in;
+  }
+
+  /** Returns the next word, or null at the end of the stream. */
+  public String next() throws IOException {
+    while (!eof) {
+      if (position == limit) {
+        int read = in.read(buffer);
+        if (read < 0) {
+          eof = true;
+          break;
+        }
+        position = 0;
+        limit = read;
+        continue;
+      }
+
+      char c = buffer[position++];
+      if (c == ',' || c == '\n' || c == '\r') {
+        String next = takeWord();
+        if (next != null) {
+          return next;
+        }
+      } else if (word.length() < MAX_WORD_LENGTH) {
+        word.append(c);
+      } else {
+        throw new IOException("Words can be at most " + MAX_WORD_LENGTH + " characters long");
+      }
+    }
+    return takeWord();
+  }
+
+  private String takeWord() {
+    String next = word.toString().trim();
+    word.setLength(0);
+    return next.isEmpty() ? null : next;
+  }
+}
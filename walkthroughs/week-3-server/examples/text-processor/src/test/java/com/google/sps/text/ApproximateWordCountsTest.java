@@ -0,0 +1,85 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.text;
+
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class ApproximateWordCountsTest {
+
+  @Test
+  public void countsTotalAndDistinctWords() {
+    ApproximateWordCounts counts = new ApproximateWordCounts(3);
+    for (String word : Arrays.asList("a", "b", "a", "c", "a", "b")) {
+      counts.add(word);
+    }
+
+    Assert.assertEquals(6, counts.getTotal());
+    Assert.assertEquals(3, counts.getDistinct());
+  }
+
+  @Test
+  public void findsTheMostFrequentWords() {
+    ApproximateWordCounts counts = new ApproximateWordCounts(2);
+    for (int i = 0; i < 10_000; i++) {
+      counts.add("rare" + i);
+      if (i % 10 == 0) {
+        counts.add("frequent");
+      }
+      if (i % 20 == 0) {
+        counts.add("common");
+      }
+    }
+
+    List<WordCount> top = counts.top();
+
+    Assert.assertEquals(2, top.size());
+    Assert.assertEquals("frequent", top.get(0).getWord());
+    Assert.assertEquals(1000, top.get(0).getCount());
+    Assert.assertEquals("common", top.get(1).getWord());
+    Assert.assertEquals(500, top.get(1).getCount());
+  }
+
+  @Test
+  public void findsAWordThatBecomesFrequentLate() {
+    ApproximateWordCounts counts = new ApproximateWordCounts(1);
+    for (int i = 0; i < 100; i++) {
+      counts.add("early");
+    }
+    for (int i = 0; i < 200; i++) {
+      counts.add("late");
+    }
+
+    List<WordCount> top = counts.top();
+
+    Assert.assertEquals(1, top.size());
+    Assert.assertEquals("late", top.get(0).getWord());
+    Assert.assertEquals(200, top.get(0).getCount());
+  }
+
+  @Test
+  public void tracksNothingForZeroWords() {
+    ApproximateWordCounts counts = new ApproximateWordCounts(0);
+    counts.add("word");
+
+    Assert.assertTrue(counts.top().isEmpty());
+    Assert.assertEquals(1, counts.getTotal());
+  }
+}
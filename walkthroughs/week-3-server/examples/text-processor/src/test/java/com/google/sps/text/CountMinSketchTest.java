@@ -0,0 +1,77 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.text;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class CountMinSketchTest {
+
+  @Test
+  public void countsFewItemsExactly() {
+    CountMinSketch sketch = new CountMinSketch(4, 10);
+    for (int i = 0; i < 5; i++) {
+      sketch.add(WordHash.of("often"));
+    }
+    sketch.add(WordHash.of("once"));
+
+    Assert.assertEquals(5, sketch.estimate(WordHash.of("often")));
+    Assert.assertEquals(1, sketch.estimate(WordHash.of("once")));
+    Assert.assertEquals(0, sketch.estimate(WordHash.of("never")));
+  }
+
+  @Test
+  public void addReturnsTheNewEstimate() {
+    CountMinSketch sketch = new CountMinSketch(4, 10);
+
+    Assert.assertEquals(1, sketch.add(WordHash.of("word")));
+    Assert.assertEquals(2, sketch.add(WordHash.of("word")));
+  }
+
+  @Test
+  public void neverUnderestimates() {
+    // Far more items than counters, so there are plenty of collisions.
+    CountMinSketch sketch = new CountMinSketch(2, 6);
+    for (int i = 0; i < 1000; i++) {
+      for (int j = 0; j <= i % 7; j++) {
+        sketch.add(WordHash.of("word" + i));
+      }
+    }
+
+    for (int i = 0; i < 1000; i++) {
+      long estimate = sketch.estimate(WordHash.of("word" + i));
+      Assert.assertTrue("word" + i + ": " + estimate, estimate >= i % 7 + 1);
+    }
+  }
+
+  @Test
+  public void staysCloseForFrequentItems() {
+    // 10000 items in 4 rows of 4096 counters: each count is off by at most e / 4096 of the total,
+    // about 0.07%, with probability 1 - e^-4.
+    CountMinSketch sketch = new CountMinSketch(4, 12);
+    for (int i = 0; i < 10_000; i++) {
+      sketch.add(WordHash.of("rare" + i));
+    }
+    for (int i = 0; i < 1000; i++) {
+      sketch.add(WordHash.of("frequent"));
+    }
+
+    long estimate = sketch.estimate(WordHash.of("frequent"));
+    Assert.assertTrue("estimate: " + estimate, estimate >= 1000 && estimate <= 1000 + 20);
+  }
+}
@@ -0,0 +1,82 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.text;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class DistinctCounterTest {
+  // Four standard errors, so the tests fail by chance about once in 16000 runs. The inputs are
+  // fixed, so in practice they always pass or always fail.
+  private static final double TOLERANCE = 4 * 1.04 / Math.sqrt(1 << 14);
+
+  @Test
+  public void estimatesZeroWhenEmpty() {
+    Assert.assertEquals(0, new DistinctCounter().estimate());
+  }
+
+  @Test
+  public void ignoresRepeats() {
+    DistinctCounter counter = new DistinctCounter();
+    for (int round = 0; round < 10; round++) {
+      for (int i = 0; i < 100; i++) {
+        counter.add(WordHash.of("word" + i));
+      }
+    }
+
+    assertClose(100, counter.estimate());
+  }
+
+  @Test
+  public void estimatesFewItems() {
+    assertClose(1000, countDistinct(1000));
+  }
+
+  @Test
+  public void estimatesManyItems() {
+    // Well past 3 * REGISTERS, where the estimate no longer counts empty registers.
+    assertClose(1_000_000, countDistinct(1_000_000));
+  }
+
+  @Test
+  public void hashesWithNoBitsAfterTheIndexDoNotLowerTheEstimate() {
+    // PRECISION is 14, so the top 14 bits pick the register.
+    DistinctCounter counter = new DistinctCounter();
+    for (long register = 0; register < 1 << 14; register++) {
+      counter.add(register << 50 | 1);
+    }
+    long estimate = counter.estimate();
+
+    for (long register = 0; register < 1 << 14; register++) {
+      counter.add(register << 50);
+    }
+    Assert.assertTrue(counter.estimate() >= estimate);
+  }
+
+  private static long countDistinct(int items) {
+    DistinctCounter counter = new DistinctCounter();
+    for (int i = 0; i < items; i++) {
+      counter.add(WordHash.of("word" + i));
+    }
+    return counter.estimate();
+  }
+
+  private static void assertClose(long expected, long estimate) {
+    Assert.assertEquals(expected, estimate, expected * TOLERANCE);
+  }
+}
@@ -0,0 +1,149 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.text;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * Measures how fast {@link ExternalSorter} sorts generated input of several sizes. Input sizes are
+ * in millions of characters. The input is random words of 3 to 12 letters, comma-separated, and
+ * the sorted output is only counted and checked, so only tokenizing, sorting and the temporary
+ * files are measured. This is not run as part of the unit tests. Run it after
+ * {@code mvn test-compile} with, e.g. for 10MB to 2GB:
+ *
+ * <pre>
+ *   java -Xmx256m -cp target/classes:target/test-classes \
+ *       com.google.sps.text.ExternalSortBenchmark 10 100 1000 2000
+ * </pre>
+ */
+public final class ExternalSortBenchmark {
+
+  private static final long MEMORY_BUDGET = 64L * 1024 * 1024;
+  private static final int THREADS = 2;
+
+  private ExternalSortBenchmark() {}
+
+  public static void main(String[] args) throws IOException {
+    String[] sizes = args.length > 0 ? args : new String[] {"10", "100", "1000", "2000"};
+    Path tempDirectory = Files.createTempDirectory("sort-benchmark");
+    try {
+      for (String size : sizes) {
+        long characters = Long.parseLong(size) * 1_000_000;
+        run(characters, tempDirectory);
+      }
+    } finally {
+      Files.delete(tempDirectory);
+    }
+  }
+
+  private static void run(long characters, Path tempDirectory) throws IOException {
+    WordReader words = new WordReader(new RandomWords(characters));
+    CountingWriter out = new CountingWriter();
+
+    long start = System.nanoTime();
+    long count;
+    try (ExternalSorter sorter = new ExternalSorter(MEMORY_BUDGET, THREADS, tempDirectory)) {
+      for (String word = words.next(); word != null; word = words.next()) {
+        sorter.add(word);
+      }
+      count = sorter.writeSorted(out);
+    }
+    double seconds = (System.nanoTime() - start) / 1e9;
+
+    System.out.printf("%,d MB: %,d words sorted in %.1f s (%.1f MB/s)%n",
+        characters / 1_000_000, count, seconds, characters / 1e6 / seconds);
+  }
+
+  /** Generates {@code length} characters of random comma-separated words. */
+  private static final class RandomWords extends Reader {
+
+    private final Random random = new Random(42);
+    private long remaining;
+
+    RandomWords(long length) {
+      remaining = length;
+    }
+
+    @Override
+    public int read(char[] buffer, int offset, int length) {
+      if (remaining <= 0) {
+        return -1;
+      }
+      int end = offset + (int) Math.min(length, remaining);
+      for (int i = offset; i < end; ) {
+        int wordLength = 3 + random.nextInt(10);
+        for (int j = 0; j < wordLength && i < end; j++) {
+          buffer[i++] = (char) ('a' + random.nextInt(26));
+        }
+        if (i < end) {
+          buffer[i++] = ',';
+        }
+      }
+      remaining -= end - offset;
+      return end - offset;
+    }
+
+    @Override
+    public void close() {}
+  }
+
+  /** Drops everything written to it, but checks that it arrives in order. */
+  private static final class CountingWriter extends Writer {
+
+    private final StringBuilder line = new StringBuilder();
+    private String previous = "";
+
+    @Override
+    public void write(char[] buffer, int offset, int length) {
+      for (int i = offset; i < offset + length; i++) {
+        write(buffer[i]);
+      }
+    }
+
+    @Override
+    public void write(int c) {
+      if (c != '\n') {
+        line.append((char) c);
+        return;
+      }
+      String word = line.toString();
+      if (word.compareTo(previous) < 0) {
+        throw new IllegalStateException(word + " came after " + previous);
+      }
+      previous = word;
+      line.setLength(0);
+    }
+
+    @Override
+    public void write(String text) {
+      if (text.length() == 1) {
+        write(text.charAt(0));
+      } else {
+        write(text.toCharArray(), 0, text.length());
+      }
+    }
+
+    @Override
+    public void flush() {}
+
+    @Override
+    public void close() {}
+  }
+}
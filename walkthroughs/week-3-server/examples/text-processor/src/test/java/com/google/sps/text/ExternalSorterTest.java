@@ -0,0 +1,133 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.text;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class ExternalSorterTest {
+  // Enough to hold any of the tests' inputs in one run.
+  private static final long LARGE_BUDGET = 1L << 20;
+  // With one thread, runs of two words each.
+  private static final long TINY_BUDGET = 200;
+
+  @Rule public TemporaryFolder temp = new TemporaryFolder();
+
+  private Path tempDirectory;
+
+  @Before
+  public void setUp() {
+    tempDirectory = temp.getRoot().toPath();
+  }
+
+  @Test
+  public void sortsInMemory() throws IOException {
+    List<String> words = Arrays.asList("pear", "apple", "fig", "apple");
+
+    try (ExternalSorter sorter = new ExternalSorter(LARGE_BUDGET, 2, tempDirectory)) {
+      Assert.assertEquals(Arrays.asList("apple", "apple", "fig", "pear"), sort(sorter, words));
+      Assert.assertEquals(0, temp.getRoot().list().length);
+    }
+  }
+
+  @Test
+  public void sortsThroughRunFiles() throws IOException {
+    List<String> words = randomWords(20);
+
+    try (ExternalSorter sorter = new ExternalSorter(TINY_BUDGET, 2, tempDirectory)) {
+      Assert.assertEquals(sorted(words), sort(sorter, words));
+    }
+  }
+
+  @Test
+  public void mergesMoreRunsThanOnePassCanRead() throws IOException {
+    // 500 runs, so 64 at a time takes two passes.
+    List<String> words = randomWords(1000);
+
+    try (ExternalSorter sorter = new ExternalSorter(TINY_BUDGET, 1, tempDirectory)) {
+      Assert.assertEquals(sorted(words), sort(sorter, words));
+    }
+    Assert.assertEquals(0, temp.getRoot().list().length);
+  }
+
+  @Test
+  public void sortsNothing() throws IOException {
+    try (ExternalSorter sorter = new ExternalSorter(TINY_BUDGET, 1, tempDirectory)) {
+      StringWriter out = new StringWriter();
+      Assert.assertEquals(0, sorter.writeSorted(out));
+      Assert.assertEquals("", out.toString());
+    }
+  }
+
+  @Test
+  public void closeDeletesRunFilesOfAnUnfinishedSort() throws IOException {
+    try (ExternalSorter sorter = new ExternalSorter(TINY_BUDGET, 2, tempDirectory)) {
+      for (String word : randomWords(100)) {
+        sorter.add(word);
+      }
+    }
+
+    File[] left = temp.getRoot().listFiles();
+    Assert.assertEquals(Arrays.toString(left), 0, left.length);
+  }
+
+  /** Adds the words and returns what the sorter writes, checking the count it returns. */
+  private static List<String> sort(ExternalSorter sorter, List<String> words) throws IOException {
+    for (String word : words) {
+      sorter.add(word);
+    }
+    StringWriter out = new StringWriter();
+    long count = sorter.writeSorted(out);
+
+    List<String> lines = Arrays.asList(out.toString().split("\n"));
+    Assert.assertEquals(words.size(), count);
+    Assert.assertEquals(words.size(), lines.size());
+    return lines;
+  }
+
+  private static List<String> randomWords(int count) {
+    Random random = new Random(count);
+    List<String> words = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      char[] letters = new char[1 + random.nextInt(3)];
+      for (int j = 0; j < letters.length; j++) {
+        letters[j] = (char) ('a' + random.nextInt(26));
+      }
+      words.add(new String(letters));
+    }
+    return words;
+  }
+
+  private static List<String> sorted(List<String> words) {
+    List<String> sorted = new ArrayList<>(words);
+    Collections.sort(sorted);
+    return sorted;
+  }
+}
@@ -0,0 +1,111 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.text;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class WordCountsTest {
+
+  @Test
+  public void countsEachWord() throws IOException {
+    WordCounts counts = countAll("b", "a", "b", "c", "b", "a");
+
+    Map<String, Long> expected = new HashMap<>();
+    expected.put("a", 2L);
+    expected.put("b", 3L);
+    expected.put("c", 1L);
+    Assert.assertEquals(expected, toMap(counts));
+    Assert.assertEquals(6, counts.getTotal());
+    Assert.assertEquals(3, counts.getDistinct());
+  }
+
+  @Test
+  public void keepsCountsWhenGrowing() throws IOException {
+    WordCounts counts = new WordCounts();
+    for (int round = 0; round < 3; round++) {
+      for (int i = 0; i < 10_000; i++) {
+        counts.add("word" + i);
+      }
+    }
+
+    Assert.assertEquals(30_000, counts.getTotal());
+    Assert.assertEquals(10_000, counts.getDistinct());
+    for (long count : toMap(counts).values()) {
+      Assert.assertEquals(3, count);
+    }
+  }
+
+  @Test
+  public void countsWordsWithEqualHashCodesSeparately() throws IOException {
+    // "Aa" and "BB" have the same String.hashCode, and so do all strings made of them.
+    String[] pieces = {"Aa", "BB"};
+    WordCounts counts = new WordCounts();
+    for (int bits = 0; bits < 1 << 12; bits++) {
+      StringBuilder word = new StringBuilder();
+      for (int i = 0; i < 12; i++) {
+        word.append(pieces[(bits >>> i) & 1]);
+      }
+      counts.add(word.toString());
+      counts.add(word.toString());
+    }
+
+    Assert.assertEquals(1 << 12, counts.getDistinct());
+    for (long count : toMap(counts).values()) {
+      Assert.assertEquals(2, count);
+    }
+  }
+
+  @Test
+  public void returnsTheMostFrequentWordsFirst() {
+    WordCounts counts = countAll("a", "b", "b", "c", "c", "c", "d", "d", "d", "d");
+
+    List<WordCount> top = counts.top(2);
+
+    Assert.assertEquals(2, top.size());
+    Assert.assertEquals("d", top.get(0).getWord());
+    Assert.assertEquals(4, top.get(0).getCount());
+    Assert.assertEquals("c", top.get(1).getWord());
+    Assert.assertEquals(3, top.get(1).getCount());
+  }
+
+  @Test
+  public void returnsFewerWordsThanAskedIfThereAreFewer() {
+    WordCounts counts = countAll("a", "b", "a");
+
+    Assert.assertEquals(2, counts.top(5).size());
+    Assert.assertTrue(counts.top(0).isEmpty());
+  }
+
+  private static WordCounts countAll(String... words) {
+    WordCounts counts = new WordCounts();
+    Arrays.stream(words).forEach(counts::add);
+    return counts;
+  }
+
+  private static Map<String, Long> toMap(WordCounts counts) throws IOException {
+    Map<String, Long> map = new HashMap<>();
+    counts.forEach((word, count) -> Assert.assertNull(word, map.put(word, count)));
+    return map;
+  }
+}
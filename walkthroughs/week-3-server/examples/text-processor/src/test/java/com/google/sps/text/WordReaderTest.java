@@ -0,0 +1,86 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.text;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class WordReaderTest {
+
+  @Test
+  public void splitsOnCommasAndLineBreaks() throws IOException {
+    Assert.assertEquals(Arrays.asList("one", "two", "three", "four"),
+        readAll("one,two\nthree\r\nfour"));
+  }
+
+  @Test
+  public void trimsWordsAndDropsEmptyOnes() throws IOException {
+    Assert.assertEquals(Arrays.asList("a b", "c"), readAll(" a b ,, \n\n , c ,"));
+  }
+
+  @Test
+  public void readsNothingFromBlankInput() throws IOException {
+    Assert.assertEquals(Collections.emptyList(), readAll(""));
+    Assert.assertEquals(Collections.emptyList(), readAll(" , \n"));
+  }
+
+  @Test
+  public void readsWordsAcrossBufferBoundaries() throws IOException {
+    // The reader's buffer holds 65536 chars, so some of these words straddle a refill.
+    StringBuilder text = new StringBuilder();
+    List<String> expected = new ArrayList<>();
+    for (int i = 0; i < 50_000; i++) {
+      String word = "word" + i;
+      expected.add(word);
+      text.append(word).append(',');
+    }
+
+    Assert.assertEquals(expected, readAll(text.toString()));
+  }
+
+  @Test
+  public void acceptsTheLongestWord() throws IOException {
+    char[] word = new char[WordReader.MAX_WORD_LENGTH];
+    Arrays.fill(word, 'a');
+
+    Assert.assertEquals(Arrays.asList(new String(word), "b"), readAll(new String(word) + ",b"));
+  }
+
+  @Test(expected = IOException.class)
+  public void rejectsLongerWords() throws IOException {
+    char[] word = new char[WordReader.MAX_WORD_LENGTH + 1];
+    Arrays.fill(word, 'a');
+
+    readAll(new String(word));
+  }
+
+  private static List<String> readAll(String text) throws IOException {
+    WordReader reader = new WordReader(new StringReader(text));
+    List<String> words = new ArrayList<>();
+    for (String word = reader.next(); word != null; word = reader.next()) {
+      words.add(word);
+    }
+    return words;
+  }
+}
@@ -0,0 +1,194 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.data;
+
+import com.google.appengine.api.datastore.DatastoreService;
+import com.google.appengine.api.datastore.DatastoreServiceFactory;
+import com.google.appengine.api.datastore.Entity;
+import com.google.appengine.api.datastore.EntityNotFoundException;
+import com.google.appengine.api.datastore.Key;
+import com.google.appengine.api.datastore.KeyFactory;
+import com.google.appengine.api.datastore.Query;
+import com.google.appengine.api.datastore.Transaction;
+import com.google.appengine.api.datastore.TransactionOptions;
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Adds and deletes tasks so that clients can sync only what changed.
+ *
+ * <p>Every change takes the next number from a single version counter, in the same transaction
+ * as the change itself. A new task stores its number in {@code VERSION_PROPERTY}. A deleted task
+ * leaves a {@code TOMBSTONE_KIND} entity with the same id and its number. A client that has seen
+ * everything up to version v asks for the tasks and tombstones with a larger version.
+ *
+ * <p>Tasks and tombstones are children of the counter, whose key is {@link #listKey}. The whole
+ * list is then one entity group, so changes are ordinary transactions, and ancestor queries see
+ * every change up to the version read before them. Queries without an ancestor are only
+ * eventually consistent and could miss a change that a client would then never ask for again.
+ *
+ * <p>Tasks stored before they were children of the list are legacy tasks, still at the root.
+ * They're never added to and have no version, so {@link #getLegacyTasks} lists them for a full
+ * sync. Deleting one leaves a tombstone in the list like any other delete.
+ *
+ * <p>An entity group takes roughly one write per second; plenty for a todo list. Tombstones are
+ * never removed.
+ */
+public final class TaskChanges {
+
+  public static final String TASK_KIND = "Task";
+  public static final String TOMBSTONE_KIND = "TaskTombstone";
+  public static final String VERSION_PROPERTY = "version";
+
+  private static final String LIST_KIND = "TaskVersion";
+
+  private static final int ATTEMPTS = 3;
+
+  private TaskChanges() {}
+
+  /** Returns the key of the version counter, which is the ancestor of every task and tombstone. */
+  public static Key listKey() {
+    return KeyFactory.createKey(LIST_KIND, TASK_KIND);
+  }
+
+  /** Returns the version of the latest change, or 0 if nothing has changed yet. */
+  public static long getVersion() {
+    try {
+      Entity counter = DatastoreServiceFactory.getDatastoreService().get(listKey());
+      return (long) counter.getProperty("version");
+    } catch (EntityNotFoundException e) {
+      return 0;
+    }
+  }
+
+  /** Stores a new task and returns its version. */
+  public static long add(String title, long timestamp) {
+    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+    for (int attempt = 1; ; attempt++) {
+      Transaction transaction = datastore.beginTransaction();
+      try {
+        long version = nextVersion(datastore, transaction);
+
+        Entity taskEntity = new Entity(TASK_KIND, listKey());
+        taskEntity.setProperty("title", title);
+        taskEntity.setProperty("timestamp", timestamp);
+        taskEntity.setProperty(VERSION_PROPERTY, version);
+        datastore.put(transaction, taskEntity);
+
+        transaction.commit();
+        return version;
+      } catch (ConcurrentModificationException e) {
+        if (attempt == ATTEMPTS) {
+          throw e;
+        }
+      } finally {
+        if (transaction.isActive()) {
+          transaction.rollback();
+        }
+      }
+    }
+  }
+
+  /**
+   * Deletes a task, or else the legacy task with {@code id}, and leaves a tombstone for it. Does
+   * nothing if neither exists.
+   */
+  public static void delete(long id) {
+    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+    for (int attempt = 1; ; attempt++) {
+      // A legacy task is its own entity group, so this may touch two.
+      Transaction transaction = datastore.beginTransaction(TransactionOptions.Builder.withXG(true));
+      try {
+        Key taskKey = KeyFactory.createKey(listKey(), TASK_KIND, id);
+        if (!exists(datastore, transaction, taskKey)) {
+          taskKey = KeyFactory.createKey(TASK_KIND, id);
+          if (!exists(datastore, transaction, taskKey)) {
+            return;
+          }
+        }
+
+        Entity tombstone = new Entity(tombstoneKey(id));
+        tombstone.setProperty(VERSION_PROPERTY, nextVersion(datastore, transaction));
+        datastore.put(transaction, tombstone);
+        datastore.delete(transaction, taskKey);
+
+        transaction.commit();
+        return;
+      } catch (ConcurrentModificationException e) {
+        if (attempt == ATTEMPTS) {
+          throw e;
+        }
+      } finally {
+        if (transaction.isActive()) {
+          transaction.rollback();
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns the legacy tasks that haven't been deleted. The query has no ancestor, so it can lag
+   * behind, but legacy tasks are never added, and the tombstones of deleted ones are read by key,
+   * which doesn't lag.
+   */
+  public static List<Entity> getLegacyTasks() {
+    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+    List<Entity> legacy = new ArrayList<>();
+    List<Key> tombstones = new ArrayList<>();
+    for (Entity task : datastore.prepare(new Query(TASK_KIND)).asIterable()) {
+      if (task.getKey().getParent() == null) {
+        legacy.add(task);
+        tombstones.add(tombstoneKey(task.getKey().getId()));
+      }
+    }
+    if (legacy.isEmpty()) {
+      return legacy;
+    }
+
+    Map<Key, Entity> deleted = datastore.get(tombstones);
+    legacy.removeIf(task -> deleted.containsKey(tombstoneKey(task.getKey().getId())));
+    return legacy;
+  }
+
+  private static boolean exists(DatastoreService datastore, Transaction transaction, Key key) {
+    try {
+      datastore.get(transaction, key);
+      return true;
+    } catch (EntityNotFoundException e) {
+      return false;
+    }
+  }
+
+  private static Key tombstoneKey(long id) {
+    return KeyFactory.createKey(listKey(), TOMBSTONE_KIND, id);
+  }
+
+  /** Increments the version counter as part of {@code transaction} and returns the new version. */
+  private static long nextVersion(DatastoreService datastore, Transaction transaction) {
+    long version;
+    try {
+      version = (long) datastore.get(transaction, listKey()).getProperty("version") + 1;
+    } catch (EntityNotFoundException e) {
+      version = 1;
+    }
+
+    Entity counter = new Entity(listKey());
+    counter.setUnindexedProperty("version", version);
+    datastore.put(transaction, counter);
+    return version;
+  }
+}
@@ -19,41 +19,120 @@ import com.google.appengine.api.datastore.DatastoreServiceFactory;
 import com.google.appengine.api.datastore.Entity;
 import com.google.appengine.api.datastore.PreparedQuery;
 import com.google.appengine.api.datastore.Query;
+import com.google.appengine.api.datastore.Query.FilterOperator;
+import com.google.appengine.api.datastore.Query.FilterPredicate;
 import com.google.appengine.api.datastore.Query.SortDirection;
 import com.google.gson.Gson;
+import com.google.gson.stream.JsonWriter;
 import com.google.sps.data.Task;
+import com.google.sps.data.TaskChanges;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.List;
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
-/** Servlet responsible for listing tasks. */
+/**
+ * Servlet responsible for listing tasks.
+ *
+ * <p>Without parameters, returns every task as a JSON array. With {@code since=<version>}, returns
+ * {@code {"version": v, "tasks": [...], "deleted": [ids]}}: the tasks added and the ids of the
+ * tasks deleted after {@code since}, and the version to send as {@code since} next time.
+ * {@code since=0} returns every task in the same shape, including legacy tasks stored before the
+ * list had versions. Tasks of the list are read with ancestor queries, so that nothing up to the
+ * returned version is missed.
+ */
 @WebServlet("/list-tasks")
 public class ListTasksServlet extends HttpServlet {
 
   @Override
   public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
-    Query query = new Query("Task").addSort("timestamp", SortDirection.DESCENDING);
+    String userSince = request.getParameter("since");
+    if (userSince != null && !userSince.isEmpty()) {
+      long since;
+      try {
+        since = Long.parseLong(userSince);
+      } catch (NumberFormatException e) {
+        response.sendError(HttpServletResponse.SC_BAD_REQUEST, "since must be a version number");
+        return;
+      }
+      if (since < 0) {
+        response.sendError(HttpServletResponse.SC_BAD_REQUEST, "since must not be negative");
+        return;
+      }
+      writeChanges(response, since);
+      return;
+    }
+
+    Query query = new Query(TaskChanges.TASK_KIND).addSort("timestamp", SortDirection.DESCENDING);
 
     DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
     PreparedQuery results = datastore.prepare(query);
 
-    List<Task> tasks = new ArrayList<>();
-    for (Entity entity : results.asIterable()) {
-      long id = entity.getKey().getId();
-      String title = (String) entity.getProperty("title");
-      long timestamp = (long) entity.getProperty("timestamp");
+    // Convert and send each task as soon as it comes back from Datastore, instead of building the
+    // whole list first.
+    Gson gson = new Gson();
+    JsonArrayWriter.write(response, gson, results.asIterable(), ListTasksServlet::toTask);
+  }
+
+  /** Writes the tasks added and deleted after version {@code since}. */
+  private void writeChanges(HttpServletResponse response, long since) throws IOException {
+    // Read the version before the changes. A change made in between may then be sent twice, which
+    // clients ignore, but is never skipped: the queries are ancestor queries, so they see every
+    // change up to the version.
+    long version = TaskChanges.getVersion();
 
-      Task task = new Task(id, title, timestamp);
-      tasks.add(task);
+    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+    Query tasks = new Query(TaskChanges.TASK_KIND, TaskChanges.listKey());
+    if (since == 0) {
+      tasks.addSort("timestamp", SortDirection.DESCENDING);
+    } else {
+      tasks.setFilter(newerThan(since));
     }
 
+    response.setContentType("application/json;");
     Gson gson = new Gson();
+    JsonWriter writer = gson.newJsonWriter(response.getWriter());
+    writer.beginObject();
+    writer.name("version").value(version);
 
-    response.setContentType("application/json;");
-    response.getWriter().println(gson.toJson(tasks));
+    writer.name("tasks").beginArray();
+    for (Entity entity : datastore.prepare(tasks).asIterable()) {
+      gson.toJson(toTask(entity), Task.class, writer);
+    }
+    // Legacy tasks never change, so only a client starting from scratch needs them.
+    if (since == 0) {
+      for (Entity entity : TaskChanges.getLegacyTasks()) {
+        gson.toJson(toTask(entity), Task.class, writer);
+      }
+    }
+    writer.endArray();
+
+    // A client starting from scratch has no deleted tasks to forget.
+    writer.name("deleted").beginArray();
+    if (since > 0) {
+      Query tombstones = new Query(TaskChanges.TOMBSTONE_KIND, TaskChanges.listKey())
+          .setFilter(newerThan(since))
+          .setKeysOnly();
+      for (Entity tombstone : datastore.prepare(tombstones).asIterable()) {
+        writer.value(tombstone.getKey().getId());
+      }
+    }
+    writer.endArray();
+
+    writer.endObject();
+    writer.flush();
+  }
+
+  private static FilterPredicate newerThan(long version) {
+    return new FilterPredicate(TaskChanges.VERSION_PROPERTY, FilterOperator.GREATER_THAN, version);
+  }
+
+  private static Task toTask(Entity entity) {
+    long id = entity.getKey().getId();
+    String title = (String) entity.getProperty("title");
+    long timestamp = (long) entity.getProperty("timestamp");
+
+    return new Task(id, title, timestamp);
   }
 }
@@ -12,16 +12,78 @@
 // See the License for the specific language governing permissions and
 // limitations under the License.
 
-/** Fetches tasks from the server and adds them to the DOM. */
+// Tasks the page knows about, by id, and the version of the list they reflect. Kept in local
+// storage, so reloading the page only downloads what changed since the last visit.
+let tasks = new Map();
+let tasksVersion = 0;
+
+// One sync runs at a time, so an older response can't arrive after a newer one and bring back a
+// deleted task. A sync requested meanwhile runs once the current one is done.
+let syncing = false;
+let syncPending = false;
+
+/** Shows the tasks saved by the last visit, then fetches what changed since. */
 function loadTasks() {
-  fetch('/list-tasks').then(response => response.json()).then((tasks) => {
-    const taskListElement = document.getElementById('task-list');
-    tasks.forEach((task) => {
-      taskListElement.appendChild(createTaskElement(task));
-    })
+  const saved = JSON.parse(localStorage.getItem('tasks') || 'null');
+  if (saved) {
+    tasks = new Map(saved.tasks.map((task) => [task.id, task]));
+    tasksVersion = saved.version;
+  }
+  showTasks();
+  syncTasks();
+}
+
+/** Fetches the tasks added and deleted since the last sync and updates the DOM. */
+function syncTasks() {
+  if (syncing) {
+    syncPending = true;
+    return;
+  }
+  syncing = true;
+  fetch('/list-tasks?since=' + tasksVersion).then(response => response.json()).then((changes) => {
+    if (changes.version < tasksVersion) {
+      // The server's list was reset since the last visit; start over.
+      tasksVersion = 0;
+      syncPending = true;
+      return;
+    }
+    if (tasksVersion === 0) {
+      tasks.clear();
+    }
+    changes.tasks.forEach((task) => tasks.set(task.id, task));
+    changes.deleted.forEach((id) => tasks.delete(id));
+    tasksVersion = Math.max(tasksVersion, changes.version);
+
+    localStorage.setItem(
+        'tasks', JSON.stringify({version: tasksVersion, tasks: [...tasks.values()]}));
+    showTasks();
+  }).finally(() => {
+    syncing = false;
+    if (syncPending) {
+      syncPending = false;
+      syncTasks();
+    }
   });
 }
 
+/** Replaces the task list in the DOM with the known tasks, newest first. */
+function showTasks() {
+  const taskListElement = document.getElementById('task-list');
+  taskListElement.innerHTML = '';
+  [...tasks.values()]
+      .sort((a, b) => b.timestamp - a.timestamp)
+      .forEach((task) => taskListElement.appendChild(createTaskElement(task)));
+}
+
+/** Sends the new task form to the server, then syncs. */
+function addTask(form) {
+  fetch('/new-task', {method: 'POST', body: new URLSearchParams(new FormData(form))})
+      .then(() => {
+        form.reset();
+        syncTasks();
+      });
+}
+
 /** Creates an element that represents a task, including its delete button. */
 function createTaskElement(task) {
   const taskElement = document.createElement('li');
@@ -35,7 +97,8 @@ function createTaskElement(task) {
   deleteButtonElement.addEventListener('click', () => {
     deleteTask(task);
 
-    // Remove the task from the DOM.
+    // Remove the task from the DOM right away; the sync after the delete confirms it.
+    tasks.delete(task.id);
     taskElement.remove();
   });
 
@@ -48,5 +111,5 @@ function createTaskElement(task) {
 function deleteTask(task) {
   const params = new URLSearchParams();
   params.append('id', task.id);
-  fetch('/delete-task', {method: 'POST', body: params});
+  fetch('/delete-task', {method: 'POST', body: params}).then(syncTasks);
 }
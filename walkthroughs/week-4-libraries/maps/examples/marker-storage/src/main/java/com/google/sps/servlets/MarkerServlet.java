@@ -22,8 +22,6 @@ import com.google.appengine.api.datastore.Query;
 import com.google.sps.data.Marker;
 import com.google.gson.Gson;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.Collection;
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
@@ -38,13 +36,13 @@ public class MarkerServlet extends HttpServlet {
   /** Responds with a JSON array containing marker data. */
   @Override
   public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
-    response.setContentType("application/json");
+    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
+    Query query = new Query("Marker");
+    PreparedQuery results = datastore.prepare(query);
 
-    Collection<Marker> markers = getMarkers();
+    // Send each marker as soon as it comes back from Datastore.
     Gson gson = new Gson();
-    String json = gson.toJson(markers);
-
-    response.getWriter().println(json);
+    JsonArrayWriter.write(response, gson, results.asIterable(), MarkerServlet::toMarker);
   }
 
   /** Accepts a POST request containing a new marker. */
@@ -58,23 +56,13 @@ public class MarkerServlet extends HttpServlet {
     storeMarker(marker);
   }
 
-  /** Fetches markers from Datastore. */
-  private Collection<Marker> getMarkers() {
-    Collection<Marker> markers = new ArrayList<>();
-
-    DatastoreService datastore = DatastoreServiceFactory.getDatastoreService();
-    Query query = new Query("Marker");
-    PreparedQuery results = datastore.prepare(query);
-
-    for (Entity entity : results.asIterable()) {
-      double lat = (double) entity.getProperty("lat");
-      double lng = (double) entity.getProperty("lng");
-      String content = (String) entity.getProperty("content");
+  /** Converts a Marker entity from Datastore. */
+  private static Marker toMarker(Entity entity) {
+    double lat = (double) entity.getProperty("lat");
+    double lng = (double) entity.getProperty("lng");
+    String content = (String) entity.getProperty("content");
 
-      Marker marker = new Marker(lat, lng, content);
-      markers.add(marker);
-    }
-    return markers;
+    return new Marker(lat, lng, content);
   }
 
   /** Stores a marker in Datastore. */
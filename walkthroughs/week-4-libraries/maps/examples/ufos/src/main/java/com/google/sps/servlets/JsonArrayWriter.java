@@ -0,0 +1,65 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.function.Function;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Writes a JSON array one element at a time, instead of building the whole list and the whole JSON
+ * string in memory first. The response starts as soon as the first element is ready, and memory
+ * use stays the same no matter how many elements there are.
+ */
+public final class JsonArrayWriter {
+
+  private JsonArrayWriter() {}
+
+  /** Writes {@code elements} to the response as a JSON array. */
+  public static <T> void write(HttpServletResponse response, Gson gson, Iterable<T> elements)
+      throws IOException {
+    write(response, gson, elements, Function.identity());
+  }
+
+  /**
+   * Converts each of {@code sources} with {@code convert} and writes the results to the response as
+   * a JSON array. Only one converted element exists at a time.
+   */
+  public static <S, T> void write(HttpServletResponse response, Gson gson, Iterable<S> sources,
+      Function<S, T> convert) throws IOException {
+    response.setContentType("application/json");
+    write(response.getWriter(), gson, sources, convert);
+  }
+
+  /** Like {@link #write(HttpServletResponse, Gson, Iterable, Function)}, to any writer. */
+  public static <S, T> void write(Writer out, Gson gson, Iterable<S> sources,
+      Function<S, T> convert) throws IOException {
+    JsonWriter writer = gson.newJsonWriter(out);
+    writer.beginArray();
+    for (S source : sources) {
+      T element = convert.apply(source);
+      if (element == null) {
+        writer.nullValue();
+      } else {
+        gson.toJson(element, element.getClass(), writer);
+      }
+    }
+    writer.endArray();
+    writer.flush();
+  }
+}
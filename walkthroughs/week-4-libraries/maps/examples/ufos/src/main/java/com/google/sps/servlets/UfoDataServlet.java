@@ -29,6 +29,7 @@ import javax.servlet.http.HttpServletResponse;
 @WebServlet("/ufo-data")
 public class UfoDataServlet extends HttpServlet {
 
+  private final Gson gson = new Gson();
   private Collection<UfoSighting> ufoSightings;
 
   @Override
@@ -50,9 +51,7 @@ public class UfoDataServlet extends HttpServlet {
 
   @Override
   public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
-    response.setContentType("application/json");
-    Gson gson = new Gson();
-    String json = gson.toJson(ufoSightings);
-    response.getWriter().println(json);
+    // Write the sightings straight to the response instead of building one big JSON string.
+    JsonArrayWriter.write(response, gson, ufoSightings);
   }
 }
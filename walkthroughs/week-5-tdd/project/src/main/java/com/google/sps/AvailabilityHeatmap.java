@@ -0,0 +1,220 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * How many people out of a group are free in each bucket of the day. The counts are stored as a
+ * run-length encoded array so that a day where nothing changes for hours costs only a few ints.
+ */
+public final class AvailabilityHeatmap {
+
+  /////////////////////////////////////////////
+  // WARNING:
+  /////////////////////////////////////////////
+  // These fields are sent to the client as
+  // JSON by HeatmapServlet. Renaming them
+  // changes the response format.
+  /////////////////////////////////////////////
+
+  // The number of minutes covered by each bucket.
+  private final int bucketMinutes;
+
+  // The number of distinct people the heatmap was computed for.
+  private final int attendeeCount;
+
+  // Pairs of (number of buckets, free count), laid out flat: [length0, free0, length1, free1, ...].
+  private final int[] runs;
+
+  private AvailabilityHeatmap(int bucketMinutes, int attendeeCount, int[] runs) {
+    this.bucketMinutes = bucketMinutes;
+    this.attendeeCount = attendeeCount;
+    this.runs = runs;
+  }
+
+  /**
+   * Builds the heatmap for {@code attendees} using a single difference-array pass over their busy
+   * intervals. A bucket counts as busy for a person if any minute of it overlaps one of their
+   * events.
+   *
+   * @param events The events to consider. Events without any of the attendees are ignored.
+   * @param attendees The people to count. Duplicates are only counted once.
+   * @param bucketMinutes The size of each bucket in minutes. Must be positive.
+   */
+  public static AvailabilityHeatmap fromEvents(
+      Collection<Event> events, Collection<String> attendees, int bucketMinutes) {
+    checkBucketMinutes(bucketMinutes);
+
+    // Collect the busy buckets of every requested person. A person can appear in many events, so
+    // their intervals need to be merged before they are added to the shared difference array.
+    // Otherwise a double-booked person would be subtracted twice.
+    Set<String> people = new HashSet<>(attendees);
+    Map<String, List<int[]>> busyByPerson = new HashMap<>();
+    for (Event event : events) {
+      int[] buckets = toBuckets(event.getWhen(), bucketMinutes);
+      if (buckets == null) {
+        continue;
+      }
+      for (String person : event.getAttendees()) {
+        if (people.contains(person)) {
+          busyByPerson.computeIfAbsent(person, key -> new ArrayList<>()).add(buckets);
+        }
+      }
+    }
+
+    return fromBusyBuckets(busyByPerson, people.size(), bucketMinutes);
+  }
+
+  /**
+   * Builds the heatmap for {@code attendees} from the busy ranges in {@code snapshot}. Only the
+   * requested people are read from the snapshot, so the cost doesn't depend on the calendar size.
+   *
+   * @param snapshot The snapshot to read busy ranges from.
+   * @param attendees The people to count. Duplicates are only counted once.
+   * @param bucketMinutes The size of each bucket in minutes. Must be positive.
+   */
+  public static AvailabilityHeatmap fromSnapshot(
+      AvailabilitySnapshot snapshot, Collection<String> attendees, int bucketMinutes) {
+    checkBucketMinutes(bucketMinutes);
+
+    Set<String> people = new HashSet<>(attendees);
+    Map<String, List<int[]>> busyByPerson = new HashMap<>();
+    for (String person : people) {
+      for (TimeRange busy : snapshot.getBusyRanges(person)) {
+        int[] buckets = toBuckets(busy, bucketMinutes);
+        if (buckets != null) {
+          busyByPerson.computeIfAbsent(person, key -> new ArrayList<>()).add(buckets);
+        }
+      }
+    }
+
+    return fromBusyBuckets(busyByPerson, people.size(), bucketMinutes);
+  }
+
+  private static void checkBucketMinutes(int bucketMinutes) {
+    if (bucketMinutes <= 0) {
+      throw new IllegalArgumentException("bucketMinutes must be positive");
+    }
+  }
+
+  /**
+   * Returns the [first, last + 1) buckets touched by {@code when}, clamped to the day, or null if
+   * it lies outside the day.
+   */
+  private static int[] toBuckets(TimeRange when, int bucketMinutes) {
+    int start = Math.max(when.start(), 0);
+    int end = Math.min(when.end(), TimeRange.WHOLE_DAY.end());
+    if (start >= end) {
+      return null;
+    }
+    return new int[] {start / bucketMinutes, ceilDiv(end, bucketMinutes)};
+  }
+
+  /**
+   * Builds the heatmap from the busy buckets of each person with a single difference-array pass.
+   */
+  private static AvailabilityHeatmap fromBusyBuckets(
+      Map<String, List<int[]>> busyByPerson, int peopleCount, int bucketMinutes) {
+    int bucketCount = ceilDiv(TimeRange.WHOLE_DAY.duration(), bucketMinutes);
+
+    // diff[i] holds how many more people are busy in bucket i than in bucket i - 1.
+    int[] diff = new int[bucketCount + 1];
+    for (List<int[]> busy : busyByPerson.values()) {
+      busy.sort((a, b) -> Integer.compare(a[0], b[0]));
+
+      int runStart = busy.get(0)[0];
+      int runEnd = busy.get(0)[1];
+      for (int[] interval : busy) {
+        if (interval[0] > runEnd) {
+          diff[runStart]++;
+          diff[runEnd]--;
+          runStart = interval[0];
+        }
+        runEnd = Math.max(runEnd, interval[1]);
+      }
+      diff[runStart]++;
+      diff[runEnd]--;
+    }
+
+    // Prefix-sum the differences and run-length encode the free counts in the same pass.
+    int[] runs = new int[2 * bucketCount];
+    int runCount = 0;
+    int busyCount = 0;
+    for (int bucket = 0; bucket < bucketCount; bucket++) {
+      busyCount += diff[bucket];
+      int free = peopleCount - busyCount;
+      if (runCount > 0 && runs[2 * runCount - 1] == free) {
+        runs[2 * runCount - 2]++;
+      } else {
+        runs[2 * runCount] = 1;
+        runs[2 * runCount + 1] = free;
+        runCount++;
+      }
+    }
+
+    return new AvailabilityHeatmap(bucketMinutes, peopleCount, Arrays.copyOf(runs, 2 * runCount));
+  }
+
+  /**
+   * Returns the number of minutes covered by each bucket.
+   */
+  public int getBucketMinutes() {
+    return bucketMinutes;
+  }
+
+  /**
+   * Returns the number of distinct people the heatmap was computed for.
+   */
+  public int getAttendeeCount() {
+    return attendeeCount;
+  }
+
+  /**
+   * Returns a copy of the run-length encoded free counts as flat (length, free count) pairs.
+   */
+  public int[] getRuns() {
+    return runs.clone();
+  }
+
+  /**
+   * Returns how many of the attendees are free during the bucket containing {@code minute}.
+   */
+  public int freeCountAt(int minute) {
+    if (!TimeRange.WHOLE_DAY.contains(minute)) {
+      throw new IllegalArgumentException("minute must be within the day");
+    }
+
+    int bucket = minute / bucketMinutes;
+    for (int i = 0; i < runs.length; i += 2) {
+      if (bucket < runs[i]) {
+        return runs[i + 1];
+      }
+      bucket -= runs[i];
+    }
+    throw new IllegalStateException("runs do not cover the whole day");
+  }
+
+  private static int ceilDiv(int numerator, int denominator) {
+    return (numerator + denominator - 1) / denominator;
+  }
+}
@@ -0,0 +1,301 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A read-only, memory-mapped index of who is busy and when. The index is written once from a list
+ * of events and can then be opened without reading the events again: opening only maps the file,
+ * and every query reads the mapped bytes in place. Several JVMs opening the same file share its
+ * pages through the operating system's page cache.
+ *
+ * <p>File layout (all integers big-endian):
+ *
+ * <pre>
+ *   header:     magic (int), version (int), attendee count (int)
+ *   directory:  one entry per attendee, sorted by UTF-8 name bytes:
+ *               name offset (int), interval offset (int), interval count (int), bitmap offset (int)
+ *   names:      name length (short), name bytes (UTF-8)
+ *   intervals:  start (int), end (int) of every merged busy range, sorted by start
+ *   bitmaps:    one bit per minute of the day, BITMAP_LONGS longs per attendee
+ * </pre>
+ */
+public final class AvailabilitySnapshot {
+  /** Identifies snapshot files. The bytes spell "AVIX". */
+  static final int MAGIC = 0x41564958;
+
+  /** Bumped whenever the layout changes. Files with another version are rejected. */
+  static final int VERSION = 1;
+
+  private static final int HEADER_BYTES = 3 * Integer.BYTES;
+  private static final int DIRECTORY_ENTRY_BYTES = 4 * Integer.BYTES;
+  private static final int BITMAP_LONGS =
+      (TimeRange.WHOLE_DAY.duration() + Long.SIZE - 1) / Long.SIZE;
+
+  private final ByteBuffer buffer;
+  private final int attendeeCount;
+
+  private AvailabilitySnapshot(ByteBuffer buffer) {
+    if (buffer.limit() < HEADER_BYTES || buffer.getInt(0) != MAGIC) {
+      throw new IllegalArgumentException("not an availability snapshot");
+    }
+    if (buffer.getInt(Integer.BYTES) != VERSION) {
+      throw new IllegalArgumentException(
+          "unsupported snapshot version " + buffer.getInt(Integer.BYTES));
+    }
+    this.buffer = buffer;
+    this.attendeeCount = buffer.getInt(2 * Integer.BYTES);
+  }
+
+  /**
+   * Writes a snapshot of {@code events} to {@code path}. The file is first written next to
+   * {@code path} and then moved into place, so readers never observe a partially written snapshot.
+   */
+  public static void write(Collection<Event> events, Path path) throws IOException {
+    // Group the busy ranges by attendee. Sorting by the UTF-8 bytes lets readers binary search the
+    // directory by comparing bytes without decoding names.
+    Map<byte[], List<TimeRange>> busyByPerson = new TreeMap<>(AvailabilitySnapshot::compareBytes);
+    for (Event event : events) {
+      for (String person : event.getAttendees()) {
+        busyByPerson
+            .computeIfAbsent(person.getBytes(StandardCharsets.UTF_8), key -> new ArrayList<>())
+            .add(event.getWhen());
+      }
+    }
+
+    List<byte[]> names = new ArrayList<>(busyByPerson.keySet());
+    List<List<int[]>> intervals = new ArrayList<>();
+    int namesBytes = 0;
+    int intervalsBytes = 0;
+    for (Map.Entry<byte[], List<TimeRange>> entry : busyByPerson.entrySet()) {
+      if (entry.getKey().length > Short.MAX_VALUE) {
+        throw new IllegalArgumentException("attendee name is too long");
+      }
+      List<int[]> merged = merge(entry.getValue());
+      intervals.add(merged);
+      namesBytes += Short.BYTES + entry.getKey().length;
+      intervalsBytes += merged.size() * 2 * Integer.BYTES;
+    }
+
+    int directoryStart = HEADER_BYTES;
+    int namesStart = directoryStart + names.size() * DIRECTORY_ENTRY_BYTES;
+    int intervalsStart = namesStart + namesBytes;
+    int bitmapsStart = intervalsStart + intervalsBytes;
+    int size = bitmapsStart + names.size() * BITMAP_LONGS * Long.BYTES;
+
+    ByteBuffer out = ByteBuffer.allocate(size);
+    out.putInt(MAGIC).putInt(VERSION).putInt(names.size());
+
+    int nameOffset = namesStart;
+    int intervalOffset = intervalsStart;
+    for (int i = 0; i < names.size(); i++) {
+      byte[] name = names.get(i);
+      List<int[]> merged = intervals.get(i);
+      int bitmapOffset = bitmapsStart + i * BITMAP_LONGS * Long.BYTES;
+
+      out.position(directoryStart + i * DIRECTORY_ENTRY_BYTES);
+      out.putInt(nameOffset).putInt(intervalOffset).putInt(merged.size()).putInt(bitmapOffset);
+
+      out.position(nameOffset);
+      out.putShort((short) name.length).put(name);
+      nameOffset = out.position();
+
+      out.position(intervalOffset);
+      long[] bitmap = new long[BITMAP_LONGS];
+      for (int[] interval : merged) {
+        out.putInt(interval[0]).putInt(interval[1]);
+        for (int minute = interval[0]; minute < interval[1]; minute++) {
+          bitmap[minute / Long.SIZE] |= 1L << (minute % Long.SIZE);
+        }
+      }
+      intervalOffset = out.position();
+
+      out.position(bitmapOffset);
+      for (long word : bitmap) {
+        out.putLong(word);
+      }
+    }
+    out.rewind();
+
+    Path temp = Files.createTempFile(path.toAbsolutePath().getParent(), ".snapshot", ".tmp");
+    try {
+      try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+        while (out.hasRemaining()) {
+          channel.write(out);
+        }
+        channel.force(true);
+      }
+      Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    } finally {
+      Files.deleteIfExists(temp);
+    }
+  }
+
+  /**
+   * Maps the snapshot at {@code path} into memory. This does not read the file: pages are loaded
+   * lazily by the operating system as queries touch them.
+   */
+  public static AvailabilitySnapshot open(Path path) throws IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      // The mapping stays valid after the channel is closed.
+      MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      return new AvailabilitySnapshot(mapped);
+    }
+  }
+
+  /**
+   * Returns the number of people in the snapshot.
+   */
+  public int getAttendeeCount() {
+    return attendeeCount;
+  }
+
+  /**
+   * Returns true if {@code person} is busy during {@code minute}.
+   */
+  public boolean isBusy(String person, int minute) {
+    if (!TimeRange.WHOLE_DAY.contains(minute)) {
+      return false;
+    }
+
+    int entry = find(person);
+    if (entry < 0) {
+      return false;
+    }
+
+    int bitmapOffset = buffer.getInt(entry + 3 * Integer.BYTES);
+    long word = buffer.getLong(bitmapOffset + (minute / Long.SIZE) * Long.BYTES);
+    return (word & (1L << (minute % Long.SIZE))) != 0;
+  }
+
+  /**
+   * Returns true if {@code person} has no events overlapping {@code range}.
+   */
+  public boolean isFree(String person, TimeRange range) {
+    for (TimeRange busy : getBusyRanges(person)) {
+      if (busy.overlaps(range)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns the merged busy ranges of {@code person}, sorted by start time. People who are not in
+   * the snapshot have no busy ranges.
+   */
+  public List<TimeRange> getBusyRanges(String person) {
+    int entry = find(person);
+    if (entry < 0) {
+      return Collections.emptyList();
+    }
+
+    int intervalOffset = buffer.getInt(entry + Integer.BYTES);
+    int intervalCount = buffer.getInt(entry + 2 * Integer.BYTES);
+    List<TimeRange> ranges = new ArrayList<>(intervalCount);
+    for (int i = 0; i < intervalCount; i++) {
+      int start = buffer.getInt(intervalOffset + i * 2 * Integer.BYTES);
+      int end = buffer.getInt(intervalOffset + i * 2 * Integer.BYTES + Integer.BYTES);
+      ranges.add(TimeRange.fromStartEnd(start, end, false));
+    }
+    return ranges;
+  }
+
+  /**
+   * Returns the offset of the directory entry for {@code person}, or -1 if they are not in the
+   * snapshot.
+   */
+  private int find(String person) {
+    byte[] key = person.getBytes(StandardCharsets.UTF_8);
+    int low = 0;
+    int high = attendeeCount - 1;
+    while (low <= high) {
+      int middle = (low + high) >>> 1;
+      int entry = HEADER_BYTES + middle * DIRECTORY_ENTRY_BYTES;
+      int comparison = compareName(buffer.getInt(entry), key);
+      if (comparison < 0) {
+        low = middle + 1;
+      } else if (comparison > 0) {
+        high = middle - 1;
+      } else {
+        return entry;
+      }
+    }
+    return -1;
+  }
+
+  /** Compares the name stored at {@code nameOffset} with {@code key} without copying it. */
+  private int compareName(int nameOffset, byte[] key) {
+    int length = buffer.getShort(nameOffset);
+    int common = Math.min(length, key.length);
+    for (int i = 0; i < common; i++) {
+      int comparison =
+          Integer.compare(buffer.get(nameOffset + Short.BYTES + i) & 0xff, key[i] & 0xff);
+      if (comparison != 0) {
+        return comparison;
+      }
+    }
+    return Integer.compare(length, key.length);
+  }
+
+  private static int compareBytes(byte[] a, byte[] b) {
+    int common = Math.min(a.length, b.length);
+    for (int i = 0; i < common; i++) {
+      int comparison = Integer.compare(a[i] & 0xff, b[i] & 0xff);
+      if (comparison != 0) {
+        return comparison;
+      }
+    }
+    return Integer.compare(a.length, b.length);
+  }
+
+  /** Sorts and merges ranges, clamped to the day, into [start, end) pairs. */
+  private static List<int[]> merge(List<TimeRange> ranges) {
+    List<TimeRange> sorted = new ArrayList<>(ranges);
+    sorted.sort(TimeRange.ORDER_BY_START);
+
+    List<int[]> merged = new ArrayList<>();
+    for (TimeRange range : sorted) {
+      int start = Math.max(range.start(), 0);
+      int end = Math.min(range.end(), TimeRange.WHOLE_DAY.end());
+      if (start >= end) {
+        continue;
+      }
+
+      int[] last = merged.isEmpty() ? null : merged.get(merged.size() - 1);
+      if (last != null && start <= last[1]) {
+        last[1] = Math.max(last[1], end);
+      } else {
+        merged.add(new int[] {start, end});
+      }
+    }
+    return merged;
+  }
+}
@@ -0,0 +1,38 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * One partition of the calendar. A shard owns the busy ranges of the attendees that hash to it (see
+ * {@link ShardedCalendar#shardFor}) and can merge them locally, so only the merged ranges have to
+ * travel back to the coordinator.
+ */
+public interface CalendarShard {
+  /**
+   * Records that {@code attendees} are busy during {@code when}. All of the attendees must be owned
+   * by this shard.
+   */
+  void addBusy(Collection<String> attendees, TimeRange when) throws IOException;
+
+  /**
+   * Returns the busy ranges of {@code attendees}, merged so that no two ranges overlap or touch,
+   * sorted by start time.
+   */
+  List<TimeRange> busyRanges(Collection<String> attendees) throws IOException;
+}
@@ -0,0 +1,142 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import com.google.gson.Gson;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Serves a {@link CalendarShard} to {@link RemoteCalendarShard} clients over a socket, so that a
+ * sharded calendar can be spread over several processes on one machine. Each request and response
+ * is a single line of JSON.
+ *
+ * <p>Run a shard process with {@code java com.google.sps.CalendarShardServer <port>}.
+ */
+public final class CalendarShardServer implements AutoCloseable {
+  /** A request sent by {@link RemoteCalendarShard}. */
+  static final class Message {
+    static final String ADD_BUSY = "addBusy";
+    static final String BUSY_RANGES = "busyRanges";
+
+    String op;
+    List<String> attendees;
+    int start;
+    int end;
+  }
+
+  private final CalendarShard shard;
+  private final ServerSocket serverSocket;
+  private final Gson gson = new Gson();
+
+  /**
+   * Starts serving {@code shard} on {@code port} of the loopback interface. Use port 0 to pick any
+   * free port.
+   */
+  public CalendarShardServer(CalendarShard shard, int port) throws IOException {
+    this.shard = shard;
+    this.serverSocket = new ServerSocket(port, 0, InetAddress.getLoopbackAddress());
+
+    Thread acceptor = new Thread(this::acceptConnections, "calendar-shard-" + getPort());
+    acceptor.setDaemon(true);
+    acceptor.start();
+  }
+
+  /**
+   * Returns the port the server is listening on.
+   */
+  public int getPort() {
+    return serverSocket.getLocalPort();
+  }
+
+  @Override
+  public void close() throws IOException {
+    serverSocket.close();
+  }
+
+  private void acceptConnections() {
+    while (!serverSocket.isClosed()) {
+      try {
+        Socket socket = serverSocket.accept();
+        Thread handler = new Thread(() -> handle(socket), "calendar-shard-connection");
+        handler.setDaemon(true);
+        handler.start();
+      } catch (SocketException e) {
+        // The server socket was closed.
+        return;
+      } catch (IOException e) {
+        System.err.println("Could not accept shard connection: " + e);
+      }
+    }
+  }
+
+  private void handle(Socket socket) {
+    try (Socket s = socket;
+        BufferedReader in = new BufferedReader(
+            new InputStreamReader(s.getInputStream(), StandardCharsets.UTF_8));
+        PrintWriter out = new PrintWriter(
+            new OutputStreamWriter(s.getOutputStream(), StandardCharsets.UTF_8), true)) {
+      String line;
+      while ((line = in.readLine()) != null) {
+        // A bad request gets an error reply, so the client isn't left waiting for an answer.
+        try {
+          out.println(answer(gson.fromJson(line, Message.class)));
+        } catch (RuntimeException e) {
+          out.println(gson.toJson("bad request: " + e));
+        }
+      }
+    } catch (IOException e) {
+      System.err.println("Shard connection failed: " + e);
+    }
+  }
+
+  /** Runs {@code message} against the shard and returns the JSON reply. */
+  private String answer(Message message) throws IOException {
+    if (message == null || message.attendees == null) {
+      throw new IllegalArgumentException("a request needs an op and attendees");
+    }
+    if (Message.ADD_BUSY.equals(message.op)) {
+      shard.addBusy(message.attendees, TimeRange.fromStartEnd(message.start, message.end, false));
+      return "[]";
+    } else if (Message.BUSY_RANGES.equals(message.op)) {
+      List<TimeRange> busy = shard.busyRanges(message.attendees);
+      int[][] ranges = new int[busy.size()][];
+      for (int i = 0; i < ranges.length; i++) {
+        ranges[i] = new int[] {busy.get(i).start(), busy.get(i).end()};
+      }
+      return gson.toJson(ranges);
+    } else {
+      return gson.toJson("unknown op: " + message.op);
+    }
+  }
+
+  public static void main(String[] args) throws IOException, InterruptedException {
+    int port = args.length > 0 ? Integer.parseInt(args[0]) : 0;
+    CalendarShardServer server = new CalendarShardServer(new InMemoryCalendarShard(), port);
+    System.out.println("Calendar shard listening on port " + server.getPort());
+
+    // The accept loop runs on a daemon thread, so keep the process alive.
+    Thread.currentThread().join();
+  }
+}
@@ -26,7 +26,7 @@ import java.util.Set;
 public final class Event {
   private final String title;
   private final TimeRange when;
-  private final Set<String> attendees = new HashSet<>();
+  private final Set<String> attendees;
 
   /**
    * Creates a new event.
@@ -50,7 +50,9 @@ public final class Event {
 
     this.title = title;
     this.when = when;
-    this.attendees.addAll(attendees);
+    // Copy the attendees once into a read-only set. Events are shared between snapshots of the
+    // {@code EventStore}, so they must never change after construction.
+    this.attendees = Collections.unmodifiableSet(new HashSet<>(attendees));
   }
 
   /**
@@ -71,9 +73,9 @@ public final class Event {
    * Returns a read-only set of required attendees for this event.
    */
   public Set<String> getAttendees() {
-    // Return the attendees as an unmodifiable set so that the caller can't change our
-    // internal data.
-    return Collections.unmodifiableSet(attendees);
+    // The set was made unmodifiable in the constructor, so the caller can't change our internal
+    // data.
+    return attendees;
   }
 
   @Override
@@ -0,0 +1,171 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.util.AbstractCollection;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Holds the events that queries run against. Readers never lock: they grab the current
+ * {@link Snapshot}, which is immutable, and keep using it for as long as they like. Writers build
+ * the next snapshot on the side and publish it with a single volatile write, so a query sees
+ * either all of a batch or none of it.
+ *
+ * <p>Snapshots share structure. Each committed batch becomes one immutable chunk, and a new
+ * snapshot only copies the array of chunk references, not the events themselves.
+ */
+public final class EventStore {
+  // Once a snapshot has this many chunks, the next batch flattens them into one so that iteration
+  // doesn't degrade after many small batches.
+  private static final int MAX_CHUNKS = 64;
+
+  private volatile Snapshot current;
+
+  /**
+   * Creates a store whose first snapshot contains {@code events}.
+   */
+  public EventStore(Collection<Event> events) {
+    Event[][] chunks = events.isEmpty() ? new Event[0][] : new Event[][] {toArray(events)};
+    this.current = new Snapshot(0, chunks, events.size());
+  }
+
+  /**
+   * Returns the latest published snapshot.
+   */
+  public Snapshot snapshot() {
+    return current;
+  }
+
+  /**
+   * Adds {@code batch} as a single new snapshot and returns it. Concurrent writers are serialized
+   * with each other but never block readers.
+   */
+  public synchronized Snapshot addAll(Collection<Event> batch) {
+    Snapshot previous = current;
+    if (batch.isEmpty()) {
+      return previous;
+    }
+
+    Event[][] chunks;
+    if (previous.chunks.length >= MAX_CHUNKS) {
+      chunks = new Event[][] {flatten(previous), toArray(batch)};
+    } else {
+      chunks = Arrays.copyOf(previous.chunks, previous.chunks.length + 1);
+      chunks[chunks.length - 1] = toArray(batch);
+    }
+    Snapshot next = new Snapshot(previous.version + 1, chunks, previous.size + batch.size());
+    current = next;
+    return next;
+  }
+
+  /**
+   * Replaces every event in the store with {@code events} as a single new snapshot.
+   */
+  public synchronized Snapshot replaceAll(Collection<Event> events) {
+    Event[][] chunks = events.isEmpty() ? new Event[0][] : new Event[][] {toArray(events)};
+    Snapshot next = new Snapshot(current.version + 1, chunks, events.size());
+    current = next;
+    return next;
+  }
+
+  private static Event[] flatten(Snapshot snapshot) {
+    Event[] flat = new Event[snapshot.size];
+    int position = 0;
+    for (Event[] chunk : snapshot.chunks) {
+      System.arraycopy(chunk, 0, flat, position, chunk.length);
+      position += chunk.length;
+    }
+    return flat;
+  }
+
+  private static Event[] toArray(Collection<Event> events) {
+    Event[] array = events.toArray(new Event[0]);
+    for (Event event : array) {
+      if (event == null) {
+        throw new IllegalArgumentException("events cannot contain null");
+      }
+    }
+    return array;
+  }
+
+  /** An immutable, versioned view of the events in the store. */
+  public static final class Snapshot {
+    private final long version;
+    private final Event[][] chunks;
+    private final int size;
+
+    private Snapshot(long version, Event[][] chunks, int size) {
+      this.version = version;
+      this.chunks = chunks;
+      this.size = size;
+    }
+
+    /**
+     * Returns the version of this snapshot. Every published snapshot has a higher version than the
+     * one before it.
+     */
+    public long getVersion() {
+      return version;
+    }
+
+    /**
+     * Returns a read-only view of the events in this snapshot, in the order they were added.
+     */
+    public Collection<Event> getEvents() {
+      return Collections.unmodifiableCollection(new AbstractCollection<Event>() {
+        @Override
+        public Iterator<Event> iterator() {
+          return new ChunkIterator(chunks);
+        }
+
+        @Override
+        public int size() {
+          return size;
+        }
+      });
+    }
+  }
+
+  private static final class ChunkIterator implements Iterator<Event> {
+    private final Event[][] chunks;
+    private int chunk = 0;
+    private int index = 0;
+
+    ChunkIterator(Event[][] chunks) {
+      this.chunks = chunks;
+    }
+
+    @Override
+    public boolean hasNext() {
+      while (chunk < chunks.length && index >= chunks[chunk].length) {
+        chunk++;
+        index = 0;
+      }
+      return chunk < chunks.length;
+    }
+
+    @Override
+    public Event next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      return chunks[chunk][index++];
+    }
+  }
+}
@@ -132,6 +132,12 @@ public final class Events {
           Arrays.asList(PERSON_LIAM)),
   };
 
+  /**
+   * The store that servlets query. It starts with a copy of {@code events}; later changes to the
+   * array are not seen by the store.
+   */
+  public static final EventStore store = new EventStore(Arrays.asList(events));
+
   private Events() {
     // Disallow instances.
   }
@@ -0,0 +1,437 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.time.DateTimeException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Imports the VEVENTs of an iCalendar (.ics) file into an {@link EventStore}. The file is read one
+ * line at a time and only the event currently being parsed is kept in memory, so files of any size
+ * can be imported. Parsed events are added to the store in batches.
+ *
+ * <p>The scheduler only knows about a single day, so only events overlapping {@code day} (in
+ * {@code zone}) are imported, clipped to that day. Events with a value that can't be parsed, such
+ * as an unknown TZID, are skipped and counted by {@link #getSkippedCount}. Properties of
+ * components nested inside a VEVENT, such as a VALARM, are ignored.
+ */
+public final class IcsImporter {
+  // Content lines, physical or unfolded, longer than this are rejected so that a malformed file
+  // can't exhaust memory.
+  private static final int MAX_LINE_LENGTH = 64 * 1024;
+
+  private final EventStore store;
+  private final ZoneId zone;
+  private final int batchSize;
+  private final long dayStartSecond;
+  private final long dayEndSecond;
+  private final Map<String, ZoneId> zones = new HashMap<>();
+
+  // Fields of the VEVENT currently being parsed.
+  private boolean inEvent;
+  private String summary;
+  private long startSecond;
+  private long endSecond;
+  private boolean allDay;
+  private Duration duration;
+  private List<String> attendees = new ArrayList<>();
+  // How many components, such as a VALARM, the parser is nested in within the current VEVENT.
+  private int nestedDepth;
+  // Whether a property of the current VEVENT could not be parsed.
+  private boolean malformed;
+
+  private int skipped;
+
+  /**
+   * Creates an importer that adds the events of {@code day} in {@code zone} to {@code store},
+   * {@code batchSize} events at a time.
+   */
+  public IcsImporter(EventStore store, LocalDate day, ZoneId zone, int batchSize) {
+    if (batchSize <= 0) {
+      throw new IllegalArgumentException("batchSize must be positive");
+    }
+    this.store = store;
+    this.zone = zone;
+    this.batchSize = batchSize;
+    this.dayStartSecond = day.atStartOfDay(zone).toEpochSecond();
+    this.dayEndSecond = day.plusDays(1).atStartOfDay(zone).toEpochSecond();
+  }
+
+  /**
+   * Reads every VEVENT from {@code reader} and adds the ones on the importer's day to the store.
+   * Returns the number of events that were imported.
+   */
+  public int importFrom(Reader reader) throws IOException {
+    LineReader lines = new LineReader(reader);
+    List<Event> batch = new ArrayList<>(batchSize);
+    int imported = 0;
+    inEvent = false;
+    skipped = 0;
+
+    // Long content lines are folded into several physical lines, where every continuation line
+    // starts with a space or a tab. Collect them into one logical line before handling it.
+    StringBuilder logical = new StringBuilder();
+    String line;
+    while ((line = lines.next()) != null) {
+      if (!line.isEmpty() && (line.charAt(0) == ' ' || line.charAt(0) == '\t')) {
+        if (logical.length() + line.length() > MAX_LINE_LENGTH) {
+          throw new IOException("content line is longer than " + MAX_LINE_LENGTH + " characters");
+        }
+        logical.append(line, 1, line.length());
+        continue;
+      }
+
+      if (logical.length() > 0) {
+        Event event = handleLine(logical);
+        if (event != null && addToBatch(batch, event)) {
+          imported += batch.size();
+          batch.clear();
+        }
+      }
+      logical.setLength(0);
+      logical.append(line);
+    }
+    if (logical.length() > 0) {
+      Event event = handleLine(logical);
+      if (event != null) {
+        batch.add(event);
+      }
+    }
+
+    if (!batch.isEmpty()) {
+      store.addAll(batch);
+      imported += batch.size();
+    }
+    return imported;
+  }
+
+  /**
+   * Returns the number of events that the last {@link #importFrom} call skipped because one of
+   * their values could not be parsed.
+   */
+  public int getSkippedCount() {
+    return skipped;
+  }
+
+  /** Adds {@code event} to the batch and returns true if the batch was flushed to the store. */
+  private boolean addToBatch(List<Event> batch, Event event) {
+    batch.add(event);
+    if (batch.size() < batchSize) {
+      return false;
+    }
+    store.addAll(new ArrayList<>(batch));
+    return true;
+  }
+
+  /**
+   * Handles one logical content line. Returns the finished event when the line ends a VEVENT that
+   * falls on the importer's day, and null otherwise.
+   */
+  private Event handleLine(CharSequence line) throws IOException {
+    // A content line looks like NAME;PARAM=VALUE;PARAM=VALUE:VALUE. Parameter values may be quoted
+    // and contain ':' or ';', so find the separators outside of quotes.
+    int colon = -1;
+    boolean quoted = false;
+    for (int i = 0; i < line.length(); i++) {
+      char c = line.charAt(i);
+      if (c == '"') {
+        quoted = !quoted;
+      } else if (c == ':' && !quoted) {
+        colon = i;
+        break;
+      }
+    }
+    if (colon < 0) {
+      return null;
+    }
+
+    String head = line.subSequence(0, colon).toString();
+    String value = line.subSequence(colon + 1, line.length()).toString();
+    int semicolon = head.indexOf(';');
+    String name = semicolon < 0 ? head : head.substring(0, semicolon);
+    String params = semicolon < 0 ? "" : head.substring(semicolon + 1);
+
+    if (name.equalsIgnoreCase("BEGIN") && value.equalsIgnoreCase("VEVENT")) {
+      startEvent();
+      return null;
+    }
+    if (!inEvent) {
+      return null;
+    }
+
+    // Components nested in the event, like a VALARM, have properties of their own (a VALARM has a
+    // DURATION and ATTENDEEs) that must not be taken as the event's.
+    if (name.equalsIgnoreCase("BEGIN")) {
+      nestedDepth++;
+      return null;
+    }
+    if (name.equalsIgnoreCase("END")) {
+      if (nestedDepth > 0) {
+        nestedDepth--;
+        return null;
+      }
+      inEvent = false;
+      return finishEvent();
+    }
+    if (nestedDepth > 0) {
+      return null;
+    }
+
+    try {
+      if (name.equalsIgnoreCase("SUMMARY")) {
+        summary = unescape(value);
+      } else if (name.equalsIgnoreCase("DTSTART")) {
+        allDay = value.length() == 8;
+        startSecond = parseDateTime(value, param(params, "TZID"));
+      } else if (name.equalsIgnoreCase("DTEND")) {
+        endSecond = parseDateTime(value, param(params, "TZID"));
+      } else if (name.equalsIgnoreCase("DURATION")) {
+        duration = parseDuration(value);
+      } else if (name.equalsIgnoreCase("ATTENDEE")) {
+        String commonName = param(params, "CN");
+        if (commonName != null) {
+          attendees.add(commonName);
+        } else {
+          attendees.add(value.regionMatches(true, 0, "mailto:", 0, 7) ? value.substring(7) : value);
+        }
+      }
+    } catch (DateTimeException | ArithmeticException | NumberFormatException
+        | StringIndexOutOfBoundsException e) {
+      // Skip this event, not the rest of the file.
+      malformed = true;
+    }
+    return null;
+  }
+
+  private void startEvent() {
+    inEvent = true;
+    summary = "";
+    startSecond = Long.MIN_VALUE;
+    endSecond = Long.MIN_VALUE;
+    allDay = false;
+    duration = null;
+    attendees = new ArrayList<>();
+    nestedDepth = 0;
+    malformed = false;
+  }
+
+  private Event finishEvent() {
+    if (malformed) {
+      skipped++;
+      return null;
+    }
+    if (startSecond == Long.MIN_VALUE) {
+      return null;
+    }
+
+    long end = endSecond;
+    if (end == Long.MIN_VALUE) {
+      if (duration != null) {
+        // Saturate instead of overflowing; the end is clipped to the day below anyway.
+        end = duration.getSeconds() > dayEndSecond - startSecond
+            ? dayEndSecond
+            : startSecond + duration.getSeconds();
+      } else if (allDay) {
+        // An all-day event without an end lasts one day.
+        end = startSecond + Duration.ofDays(1).getSeconds();
+      } else {
+        end = startSecond;
+      }
+    }
+
+    // Clip the event to the importer's day and skip it if nothing is left.
+    long start = Math.max(startSecond, dayStartSecond);
+    end = Math.min(end, dayEndSecond);
+    if (start >= end) {
+      return null;
+    }
+
+    int startMinute = (int) ((start - dayStartSecond) / 60);
+    int endMinute = (int) Math.min((end - dayStartSecond + 59) / 60, TimeRange.WHOLE_DAY.end());
+    if (startMinute >= endMinute) {
+      return null;
+    }
+    return new Event(summary, TimeRange.fromStartEnd(startMinute, endMinute, false), attendees);
+  }
+
+  /**
+   * Parses a DATE ({@code 20200101}) or DATE-TIME ({@code 20200101T090000}, optionally followed by
+   * {@code Z} for UTC) into epoch seconds. Times without {@code Z} are in {@code tzid}, or in the
+   * importer's zone if there is no {@code tzid}.
+   */
+  private long parseDateTime(String value, String tzid) {
+    int year = digits(value, 0, 4);
+    int month = digits(value, 4, 2);
+    int day = digits(value, 6, 2);
+    int hour = 0;
+    int minute = 0;
+    int second = 0;
+    if (value.length() > 8) {
+      if (value.charAt(8) != 'T') {
+        throw new NumberFormatException("expected 'T' in date-time");
+      }
+      hour = digits(value, 9, 2);
+      minute = digits(value, 11, 2);
+      second = digits(value, 13, 2);
+    }
+
+    LocalDateTime local = LocalDateTime.of(year, month, day, hour, minute, second);
+    if (value.endsWith("Z")) {
+      return local.toEpochSecond(ZoneOffset.UTC);
+    }
+    ZoneId sourceZone = tzid == null ? zone : zones.computeIfAbsent(tzid, ZoneId::of);
+    return local.atZone(sourceZone).toEpochSecond();
+  }
+
+  /**
+   * Parses a DURATION value such as {@code PT1H30M}, {@code P1DT12H} or {@code P2W}. Weeks can only
+   * appear on their own in iCalendar and are the one part that {@link Duration#parse} doesn't know.
+   */
+  private static Duration parseDuration(String value) {
+    int last = value.length() - 1;
+    if (last < 0 || Character.toUpperCase(value.charAt(last)) != 'W') {
+      return Duration.parse(value);
+    }
+
+    boolean negative = value.startsWith("-");
+    int start = negative || value.startsWith("+") ? 1 : 0;
+    if (start > last || Character.toUpperCase(value.charAt(start)) != 'P') {
+      throw new NumberFormatException("expected 'P' in duration " + value);
+    }
+    long count = Long.parseLong(value.substring(start + 1, last));
+    Duration weeks = Duration.ofDays(Math.multiplyExact(7, count));
+    return negative ? weeks.negated() : weeks;
+  }
+
+  private static int digits(String value, int start, int count) {
+    int result = 0;
+    for (int i = start; i < start + count; i++) {
+      char c = value.charAt(i);
+      if (c < '0' || c > '9') {
+        throw new NumberFormatException("expected a digit in " + value);
+      }
+      result = result * 10 + (c - '0');
+    }
+    return result;
+  }
+
+  /**
+   * Returns the value of parameter {@code name} from a {@code ;}-separated parameter list, without
+   * surrounding quotes, or null if it is absent.
+   */
+  private static String param(String params, String name) {
+    int start = 0;
+    while (start < params.length()) {
+      int end = start;
+      boolean quoted = false;
+      while (end < params.length() && (quoted || params.charAt(end) != ';')) {
+        if (params.charAt(end) == '"') {
+          quoted = !quoted;
+        }
+        end++;
+      }
+
+      int equals = params.indexOf('=', start);
+      if (equals > start && equals < end && equals - start == name.length()
+          && params.regionMatches(true, start, name, 0, name.length())) {
+        String value = params.substring(equals + 1, end);
+        if (value.length() >= 2 && value.startsWith("\"") && value.endsWith("\"")) {
+          value = value.substring(1, value.length() - 1);
+        }
+        return value;
+      }
+      start = end + 1;
+    }
+    return null;
+  }
+
+  /** Undoes the backslash escaping of TEXT values. */
+  private static String unescape(String value) {
+    if (value.indexOf('\\') < 0) {
+      return value;
+    }
+
+    StringBuilder result = new StringBuilder(value.length());
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c == '\\' && i + 1 < value.length()) {
+        char next = value.charAt(++i);
+        result.append(next == 'n' || next == 'N' ? '\n' : next);
+      } else {
+        result.append(c);
+      }
+    }
+    return result.toString();
+  }
+
+  /**
+   * Reads physical lines ended by CRLF, LF or CR. Unlike {@link java.io.BufferedReader#readLine},
+   * it stops buffering a line once it is longer than {@link #MAX_LINE_LENGTH}, so input without
+   * line breaks can't fill the heap.
+   */
+  private static final class LineReader {
+    private final Reader in;
+    private final char[] buffer = new char[8 * 1024];
+    private final StringBuilder line = new StringBuilder();
+    private int position;
+    private int limit;
+    // Whether the last line ended with a CR, so an LF right after it belongs to that line break.
+    private boolean afterCarriageReturn;
+
+    LineReader(Reader in) {
+      this.in = in;
+    }
+
+    /** Returns the next line without its line break, or null at the end of the stream. */
+    String next() throws IOException {
+      line.setLength(0);
+      while (true) {
+        if (position == limit) {
+          int read = in.read(buffer);
+          if (read < 0) {
+            return line.length() > 0 ? line.toString() : null;
+          }
+          position = 0;
+          limit = read;
+          continue;
+        }
+
+        char c = buffer[position++];
+        boolean skip = afterCarriageReturn && c == '\n';
+        afterCarriageReturn = c == '\r';
+        if (skip) {
+          continue;
+        }
+        if (c == '\n' || c == '\r') {
+          return line.toString();
+        }
+        if (line.length() == MAX_LINE_LENGTH) {
+          throw new IOException("content line is longer than " + MAX_LINE_LENGTH + " characters");
+        }
+        line.append(c);
+      }
+    }
+  }
+}
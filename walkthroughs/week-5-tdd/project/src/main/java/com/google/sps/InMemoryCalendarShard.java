@@ -0,0 +1,70 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/** A calendar shard that keeps its busy ranges in the memory of the current JVM. */
+public final class InMemoryCalendarShard implements CalendarShard {
+  private final Map<String, List<TimeRange>> busyByPerson = new HashMap<>();
+
+  @Override
+  public synchronized void addBusy(Collection<String> attendees, TimeRange when) {
+    for (String person : attendees) {
+      busyByPerson.computeIfAbsent(person, key -> new ArrayList<>()).add(when);
+    }
+  }
+
+  @Override
+  public List<TimeRange> busyRanges(Collection<String> attendees) {
+    List<TimeRange> busy = new ArrayList<>();
+    synchronized (this) {
+      for (String person : attendees) {
+        busy.addAll(busyByPerson.getOrDefault(person, Collections.emptyList()));
+      }
+    }
+    return merge(busy);
+  }
+
+  /**
+   * Sorts {@code ranges} and merges the ones that overlap or touch.
+   */
+  static List<TimeRange> merge(List<TimeRange> ranges) {
+    List<TimeRange> sorted = new ArrayList<>(ranges);
+    sorted.sort(TimeRange.ORDER_BY_START);
+
+    List<TimeRange> merged = new ArrayList<>();
+    for (TimeRange range : sorted) {
+      if (range.duration() <= 0) {
+        continue;
+      }
+
+      int last = merged.size() - 1;
+      if (last >= 0 && range.start() <= merged.get(last).end()) {
+        TimeRange previous = merged.get(last);
+        merged.set(last, TimeRange.fromStartEnd(
+            previous.start(), Math.max(previous.end(), range.end()), false));
+      } else {
+        merged.add(range);
+      }
+    }
+    return merged;
+  }
+}
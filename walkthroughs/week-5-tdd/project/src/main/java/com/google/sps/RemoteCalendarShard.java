@@ -0,0 +1,106 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * A calendar shard that lives in another process, reached through a {@link CalendarShardServer}.
+ * Calls are sent one at a time over a single connection.
+ */
+public final class RemoteCalendarShard implements CalendarShard, AutoCloseable {
+  // How long to wait for a reply before giving up on the shard server.
+  private static final int TIMEOUT_MILLIS = 10_000;
+
+  private final Gson gson = new Gson();
+  private final Socket socket;
+  private final BufferedReader in;
+  private final PrintWriter out;
+
+  /**
+   * Connects to the shard server listening on {@code port} of the loopback interface.
+   */
+  public RemoteCalendarShard(int port) throws IOException {
+    this.socket = new Socket(InetAddress.getLoopbackAddress(), port);
+    socket.setSoTimeout(TIMEOUT_MILLIS);
+    this.in = new BufferedReader(
+        new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+    this.out = new PrintWriter(
+        new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8), true);
+  }
+
+  @Override
+  public void addBusy(Collection<String> attendees, TimeRange when) throws IOException {
+    CalendarShardServer.Message message = new CalendarShardServer.Message();
+    message.op = CalendarShardServer.Message.ADD_BUSY;
+    message.attendees = new ArrayList<>(attendees);
+    message.start = when.start();
+    message.end = when.end();
+    call(message);
+  }
+
+  @Override
+  public List<TimeRange> busyRanges(Collection<String> attendees) throws IOException {
+    CalendarShardServer.Message message = new CalendarShardServer.Message();
+    message.op = CalendarShardServer.Message.BUSY_RANGES;
+    message.attendees = new ArrayList<>(attendees);
+
+    int[][] ranges = call(message);
+    List<TimeRange> busy = new ArrayList<>(ranges.length);
+    for (int[] range : ranges) {
+      busy.add(TimeRange.fromStartEnd(range[0], range[1], false));
+    }
+    return busy;
+  }
+
+  @Override
+  public void close() throws IOException {
+    socket.close();
+  }
+
+  private synchronized int[][] call(CalendarShardServer.Message message) throws IOException {
+    out.println(gson.toJson(message));
+    String line;
+    try {
+      line = in.readLine();
+    } catch (SocketTimeoutException e) {
+      // A late reply would be taken as the answer to the next call, so the connection is unusable.
+      socket.close();
+      throw e;
+    }
+    if (line == null) {
+      throw new IOException("shard server closed the connection");
+    }
+
+    try {
+      return gson.fromJson(line, int[][].class);
+    } catch (JsonSyntaxException e) {
+      throw new IOException("shard server returned an error: " + line, e);
+    }
+  }
+}
@@ -0,0 +1,172 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Coordinates a calendar that is partitioned by attendee across several {@link CalendarShard}s.
+ * A query is only sent to the shards that own one of its attendees. Each shard merges its busy
+ * ranges locally and the coordinator merges the per-shard results into the free slots.
+ */
+public final class ShardedCalendar implements AutoCloseable {
+  private final List<CalendarShard> shards;
+  private final ExecutorService executor;
+
+  /**
+   * Creates a coordinator over {@code shards}. The order of the shards matters: attendee {@code a}
+   * is always owned by {@code shards.get(shardFor(a, shards.size()))}.
+   */
+  public ShardedCalendar(List<CalendarShard> shards) {
+    if (shards.isEmpty()) {
+      throw new IllegalArgumentException("shards cannot be empty");
+    }
+    this.shards = new ArrayList<>(shards);
+    this.executor = Executors.newFixedThreadPool(shards.size(), runnable -> {
+      Thread thread = new Thread(runnable, "sharded-calendar");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  /**
+   * Returns the index of the shard that owns {@code attendee}.
+   */
+  public static int shardFor(String attendee, int shardCount) {
+    return Math.floorMod(attendee.hashCode(), shardCount);
+  }
+
+  /**
+   * Adds {@code event} to every shard that owns one of its attendees. Each shard only receives the
+   * attendees it owns.
+   */
+  public void add(Event event) throws IOException {
+    for (Map.Entry<Integer, List<String>> entry : groupByShard(event.getAttendees()).entrySet()) {
+      shards.get(entry.getKey()).addBusy(entry.getValue(), event.getWhen());
+    }
+  }
+
+  /**
+   * Finds the times when all required attendees of {@code request} are free for at least the
+   * requested duration.
+   */
+  public Result query(MeetingRequest request) throws IOException {
+    Map<Integer, List<String>> attendeesByShard = groupByShard(request.getAttendees());
+
+    // Scatter: ask every involved shard in parallel and time each one.
+    Map<Integer, Future<List<TimeRange>>> pending = new TreeMap<>();
+    Map<Integer, Long> latencyNanos = Collections.synchronizedMap(new TreeMap<>());
+    for (Map.Entry<Integer, List<String>> entry : attendeesByShard.entrySet()) {
+      int index = entry.getKey();
+      List<String> attendees = entry.getValue();
+      pending.put(index, executor.submit(() -> {
+        long start = System.nanoTime();
+        try {
+          return shards.get(index).busyRanges(attendees);
+        } finally {
+          latencyNanos.put(index, System.nanoTime() - start);
+        }
+      }));
+    }
+
+    // Gather: every shard already merged its own ranges, so only ranges from different shards can
+    // still overlap.
+    List<TimeRange> busy = new ArrayList<>();
+    for (Map.Entry<Integer, Future<List<TimeRange>>> entry : pending.entrySet()) {
+      try {
+        busy.addAll(entry.getValue().get());
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("interrupted while waiting for shard " + entry.getKey());
+      } catch (ExecutionException e) {
+        throw new IOException("shard " + entry.getKey() + " failed", e.getCause());
+      }
+    }
+
+    List<TimeRange> options = freeSlots(InMemoryCalendarShard.merge(busy), request.getDuration());
+    return new Result(options, new TreeMap<>(latencyNanos));
+  }
+
+  @Override
+  public void close() {
+    executor.shutdownNow();
+  }
+
+  private Map<Integer, List<String>> groupByShard(Collection<String> attendees) {
+    Map<Integer, List<String>> byShard = new HashMap<>();
+    for (String attendee : attendees) {
+      byShard.computeIfAbsent(shardFor(attendee, shards.size()), key -> new ArrayList<>())
+          .add(attendee);
+    }
+    return byShard;
+  }
+
+  /**
+   * Returns the gaps of at least {@code duration} minutes between the sorted, non-overlapping
+   * {@code busy} ranges.
+   */
+  private static List<TimeRange> freeSlots(List<TimeRange> busy, long duration) {
+    List<TimeRange> free = new ArrayList<>();
+    int cursor = TimeRange.START_OF_DAY;
+    for (TimeRange range : busy) {
+      if (range.start() - cursor >= duration) {
+        free.add(TimeRange.fromStartEnd(cursor, range.start(), false));
+      }
+      cursor = Math.max(cursor, range.end());
+    }
+    if (TimeRange.WHOLE_DAY.end() - cursor >= duration) {
+      free.add(TimeRange.fromStartEnd(cursor, TimeRange.END_OF_DAY, true));
+    }
+    return free;
+  }
+
+  /** The answer to a sharded query. */
+  public static final class Result {
+    private final List<TimeRange> options;
+    private final Map<Integer, Long> shardLatencyNanos;
+
+    private Result(List<TimeRange> options, Map<Integer, Long> shardLatencyNanos) {
+      this.options = options;
+      this.shardLatencyNanos = shardLatencyNanos;
+    }
+
+    /**
+     * Returns the possible meeting times, sorted by start time.
+     */
+    public List<TimeRange> getOptions() {
+      return Collections.unmodifiableList(options);
+    }
+
+    /**
+     * Returns how long each queried shard took to answer, keyed by shard index. Shards that were
+     * not involved in the query are absent.
+     */
+    public Map<Integer, Long> getShardLatencyNanos() {
+      return Collections.unmodifiableMap(shardLatencyNanos);
+    }
+  }
+}
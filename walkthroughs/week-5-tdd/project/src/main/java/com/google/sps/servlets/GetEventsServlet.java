@@ -27,7 +27,7 @@ public class GetEventsServlet extends HttpServlet {
   @Override
   public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
     Gson gson = new Gson();
-    String jsonResponse = gson.toJson(Events.events);
+    String jsonResponse = gson.toJson(Events.store.snapshot().getEvents());
 
     // Send the JSON back as the response
     response.setContentType("application/json");
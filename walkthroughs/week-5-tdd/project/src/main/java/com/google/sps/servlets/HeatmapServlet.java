@@ -0,0 +1,92 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps.servlets;
+
+import com.google.sps.AvailabilityHeatmap;
+import com.google.sps.AvailabilitySnapshot;
+import com.google.sps.Events;
+import com.google.gson.Gson;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import javax.servlet.ServletException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Returns how many of a list of people are free in each bucket of the day. The request body is a
+ * JSON array of names and the optional {@code bucket} parameter sets the bucket size in minutes.
+ *
+ * <p>If the {@code calendar.snapshot} system property names a file written by
+ * {@link AvailabilitySnapshot#write}, the heatmap is computed from that snapshot instead of the
+ * event store. Opening it only maps the file, so startup doesn't depend on the calendar size.
+ * The snapshot is read-only: events added to the store later are not part of it.
+ */
+@WebServlet(urlPatterns = "/heatmap", loadOnStartup = 1)
+public class HeatmapServlet extends HttpServlet {
+  private static final int DEFAULT_BUCKET_MINUTES = 15;
+
+  // The snapshot to answer from, or null to use the event store.
+  private AvailabilitySnapshot snapshot;
+
+  @Override
+  public void init() throws ServletException {
+    String path = System.getProperty("calendar.snapshot", "");
+    if (path.isEmpty()) {
+      return;
+    }
+    try {
+      snapshot = AvailabilitySnapshot.open(Paths.get(path));
+    } catch (IOException | IllegalArgumentException e) {
+      throw new ServletException("Could not open availability snapshot " + path, e);
+    }
+  }
+
+  @Override
+  public void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
+    Gson gson = new Gson();
+
+    String[] attendees = gson.fromJson(request.getReader(), String[].class);
+    if (attendees == null) {
+      attendees = new String[0];
+    }
+
+    int bucketMinutes = DEFAULT_BUCKET_MINUTES;
+    String bucketParameter = request.getParameter("bucket");
+    if (bucketParameter != null) {
+      try {
+        bucketMinutes = Integer.parseInt(bucketParameter);
+      } catch (NumberFormatException e) {
+        response.sendError(HttpServletResponse.SC_BAD_REQUEST, "bucket must be an integer");
+        return;
+      }
+    }
+    if (bucketMinutes <= 0) {
+      response.sendError(HttpServletResponse.SC_BAD_REQUEST, "bucket must be positive");
+      return;
+    }
+
+    AvailabilityHeatmap heatmap = snapshot != null
+        ? AvailabilityHeatmap.fromSnapshot(snapshot, Arrays.asList(attendees), bucketMinutes)
+        : AvailabilityHeatmap.fromEvents(
+            Events.store.snapshot().getEvents(), Arrays.asList(attendees), bucketMinutes);
+
+    // Send the JSON back as the response
+    response.setContentType("application/json");
+    response.getWriter().println(gson.toJson(heatmap));
+  }
+}
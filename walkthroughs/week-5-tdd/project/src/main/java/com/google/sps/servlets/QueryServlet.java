@@ -14,21 +14,57 @@
 
 package com.google.sps.servlets;
 
+import com.google.sps.CalendarShard;
+import com.google.sps.Event;
+import com.google.sps.EventStore;
 import com.google.sps.Events;
 import com.google.sps.FindMeetingQuery;
+import com.google.sps.InMemoryCalendarShard;
 import com.google.sps.MeetingRequest;
+import com.google.sps.ShardedCalendar;
 import com.google.sps.TimeRange;
 import com.google.gson.Gson;
 import java.io.IOException;
-import java.util.Arrays;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+/**
+ * Finds the possible times for a meeting.
+ *
+ * <p>If the {@code calendar.shardCount} system property is positive, the query is answered by a
+ * {@link ShardedCalendar} of that many in-memory shards instead of {@link FindMeetingQuery}, and
+ * the time each shard took is reported in the {@code X-Shard-Latency-Nanos} header. The sharded
+ * calendar is rebuilt from the event store whenever the store changes. It only considers the
+ * required attendees of a request; optional attendees are ignored.
+ *
+ * <p>Queries on the sharded calendar run concurrently. When the store has changed, one query
+ * rebuilds the calendar while the others keep using the current one, so during an import most
+ * queries don't wait for a rebuild and may see events up to one rebuild late.
+ */
 @WebServlet("/query")
 public class QueryServlet extends HttpServlet {
+  private final int shardCount = Integer.getInteger("calendar.shardCount", 0);
+
+  // Queries hold the read lock while they use the sharded calendar; a rebuild takes the write
+  // lock only to swap in the new calendar and close the old one.
+  private final ReadWriteLock calendarLock = new ReentrantReadWriteLock();
+  // Held by the one thread that is building a new calendar.
+  private final Lock rebuildLock = new ReentrantLock();
+  // Guarded by calendarLock.
+  private ShardedCalendar shardedCalendar;
+  // The store version the sharded calendar was built from, or -1 before the first build.
+  private volatile long shardedVersion = -1;
+
   @Override
   public void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
     Gson gson = new Gson();
@@ -37,9 +73,15 @@ public class QueryServlet extends HttpServlet {
     MeetingRequest meetingRequest = gson.fromJson(request.getReader(), MeetingRequest.class);
 
     // Find the possible meeting times.
-    FindMeetingQuery findMeetingQuery = new FindMeetingQuery();
-    Collection<TimeRange> answer =
-        findMeetingQuery.query(Arrays.asList(Events.events), meetingRequest);
+    Collection<TimeRange> answer;
+    if (shardCount > 0) {
+      ShardedCalendar.Result result = querySharded(meetingRequest);
+      answer = result.getOptions();
+      response.setHeader("X-Shard-Latency-Nanos", formatLatencies(result.getShardLatencyNanos()));
+    } else {
+      FindMeetingQuery findMeetingQuery = new FindMeetingQuery();
+      answer = findMeetingQuery.query(Events.store.snapshot().getEvents(), meetingRequest);
+    }
 
     // Convert the times to JSON
     String jsonResponse = gson.toJson(answer);
@@ -48,4 +90,92 @@ public class QueryServlet extends HttpServlet {
     response.setContentType("application/json");
     response.getWriter().println(jsonResponse);
   }
+
+  @Override
+  public void destroy() {
+    calendarLock.writeLock().lock();
+    try {
+      if (shardedCalendar != null) {
+        shardedCalendar.close();
+        shardedCalendar = null;
+      }
+    } finally {
+      calendarLock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Answers {@code meetingRequest} from the sharded calendar. If the event store has changed and
+   * no other query is rebuilding the calendar, rebuilds it first. Before the first build, every
+   * query waits for it.
+   */
+  private ShardedCalendar.Result querySharded(MeetingRequest meetingRequest) throws IOException {
+    EventStore.Snapshot snapshot = Events.store.snapshot();
+    if (shardedVersion < snapshot.getVersion()) {
+      boolean locked;
+      if (shardedVersion < 0) {
+        rebuildLock.lock();
+        locked = true;
+      } else {
+        locked = rebuildLock.tryLock();
+      }
+      if (locked) {
+        try {
+          // Another thread may have built it while this one waited.
+          if (shardedVersion < snapshot.getVersion()) {
+            rebuild(snapshot);
+          }
+        } finally {
+          rebuildLock.unlock();
+        }
+      }
+    }
+
+    calendarLock.readLock().lock();
+    try {
+      return shardedCalendar.query(meetingRequest);
+    } finally {
+      calendarLock.readLock().unlock();
+    }
+  }
+
+  /** Builds a calendar of {@code snapshot} and swaps it in for the current one. */
+  private void rebuild(EventStore.Snapshot snapshot) throws IOException {
+    List<CalendarShard> shards = new ArrayList<>(shardCount);
+    for (int i = 0; i < shardCount; i++) {
+      shards.add(new InMemoryCalendarShard());
+    }
+    ShardedCalendar calendar = new ShardedCalendar(shards);
+    try {
+      for (Event event : snapshot.getEvents()) {
+        calendar.add(event);
+      }
+    } catch (IOException | RuntimeException e) {
+      calendar.close();
+      throw e;
+    }
+
+    calendarLock.writeLock().lock();
+    try {
+      if (shardedCalendar != null) {
+        shardedCalendar.close();
+      }
+      shardedCalendar = calendar;
+      shardedVersion = snapshot.getVersion();
+    } finally {
+      calendarLock.writeLock().unlock();
+    }
+  }
+
+  /** Formats per-shard latencies as {@code shard=nanos} pairs, e.g. {@code 0=1200,3=950}. */
+  private static String formatLatencies(Map<Integer, Long> latencyNanos) {
+    StringBuilder header = new StringBuilder();
+    for (Map.Entry<Integer, Long> entry : latencyNanos.entrySet()) {
+      if (header.length() > 0) {
+        header.append(',');
+      }
+      header.append(entry.getKey()).append('=').append(entry.getValue());
+    }
+    return header.toString();
+  }
 }
@@ -0,0 +1,101 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class AvailabilityHeatmapTest {
+  private static final Collection<Event> NO_EVENTS = Collections.emptySet();
+
+  private static final String PERSON_A = "Person A";
+  private static final String PERSON_B = "Person B";
+  private static final String PERSON_C = "Person C";
+
+  private static final int TIME_0800AM = TimeRange.getTimeInMinutes(8, 0);
+  private static final int TIME_0830AM = TimeRange.getTimeInMinutes(8, 30);
+  private static final int TIME_0900AM = TimeRange.getTimeInMinutes(9, 0);
+  private static final int TIME_0910AM = TimeRange.getTimeInMinutes(9, 10);
+  private static final int TIME_0920AM = TimeRange.getTimeInMinutes(9, 20);
+  private static final int TIME_1000AM = TimeRange.getTimeInMinutes(10, 0);
+
+  @Test
+  public void everyoneFreeWithoutEvents() {
+    AvailabilityHeatmap heatmap =
+        AvailabilityHeatmap.fromEvents(NO_EVENTS, Arrays.asList(PERSON_A, PERSON_B), 30);
+
+    // The whole day is a single run of 48 half-hour buckets.
+    Assert.assertArrayEquals(new int[] {48, 2}, heatmap.getRuns());
+    Assert.assertEquals(2, heatmap.getAttendeeCount());
+  }
+
+  @Test
+  public void countsOverlappingPeople() {
+    Collection<Event> events = Arrays.asList(
+        new Event("Event 1", TimeRange.fromStartEnd(TIME_0800AM, TIME_0900AM, false),
+            Arrays.asList(PERSON_A)),
+        new Event("Event 2", TimeRange.fromStartEnd(TIME_0830AM, TIME_1000AM, false),
+            Arrays.asList(PERSON_B)));
+
+    AvailabilityHeatmap heatmap =
+        AvailabilityHeatmap.fromEvents(events, Arrays.asList(PERSON_A, PERSON_B), 30);
+
+    Assert.assertEquals(2, heatmap.freeCountAt(TIME_0800AM - 1));
+    Assert.assertEquals(1, heatmap.freeCountAt(TIME_0800AM));
+    Assert.assertEquals(0, heatmap.freeCountAt(TIME_0830AM));
+    Assert.assertEquals(1, heatmap.freeCountAt(TIME_0900AM));
+    Assert.assertEquals(2, heatmap.freeCountAt(TIME_1000AM));
+    Assert.assertArrayEquals(new int[] {16, 2, 1, 1, 1, 0, 2, 1, 28, 2}, heatmap.getRuns());
+  }
+
+  @Test
+  public void doubleBookedPersonCountedOnce() {
+    // Both events fall into the same bucket for the same person.
+    Collection<Event> events = Arrays.asList(
+        new Event("Event 1", TimeRange.fromStartEnd(TIME_0900AM, TIME_0910AM, false),
+            Arrays.asList(PERSON_A)),
+        new Event("Event 2", TimeRange.fromStartEnd(TIME_0920AM, TIME_1000AM, false),
+            Arrays.asList(PERSON_A)));
+
+    AvailabilityHeatmap heatmap =
+        AvailabilityHeatmap.fromEvents(events, Arrays.asList(PERSON_A, PERSON_B), 60);
+
+    Assert.assertEquals(1, heatmap.freeCountAt(TIME_0900AM));
+    Assert.assertEquals(2, heatmap.freeCountAt(TIME_1000AM));
+  }
+
+  @Test
+  public void ignoresPeopleNotRequested() {
+    Collection<Event> events = Arrays.asList(
+        new Event("Event 1", TimeRange.fromStartEnd(TIME_0800AM, TIME_0900AM, false),
+            Arrays.asList(PERSON_C)));
+
+    AvailabilityHeatmap heatmap =
+        AvailabilityHeatmap.fromEvents(events, Arrays.asList(PERSON_A), 1);
+
+    Assert.assertArrayEquals(new int[] {TimeRange.WHOLE_DAY.duration(), 1}, heatmap.getRuns());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void rejectsNonPositiveBucket() {
+    AvailabilityHeatmap.fromEvents(NO_EVENTS, Arrays.asList(PERSON_A), 0);
+  }
+}
@@ -0,0 +1,144 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class AvailabilitySnapshotTest {
+  private static final String PERSON_A = "Person A";
+  private static final String PERSON_B = "Person B";
+  private static final String PERSON_C = "Person C";
+
+  private static final int TIME_0800AM = TimeRange.getTimeInMinutes(8, 0);
+  private static final int TIME_0830AM = TimeRange.getTimeInMinutes(8, 30);
+  private static final int TIME_0900AM = TimeRange.getTimeInMinutes(9, 0);
+  private static final int TIME_1000AM = TimeRange.getTimeInMinutes(10, 0);
+  private static final int TIME_1100AM = TimeRange.getTimeInMinutes(11, 0);
+
+  @Rule
+  public final TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void roundTripsMergedRanges() throws IOException {
+    Collection<Event> events = Arrays.asList(
+        new Event("Event 1", TimeRange.fromStartEnd(TIME_0800AM, TIME_0900AM, false),
+            Arrays.asList(PERSON_A)),
+        new Event("Event 2", TimeRange.fromStartEnd(TIME_0830AM, TIME_1000AM, false),
+            Arrays.asList(PERSON_A, PERSON_B)),
+        new Event("Event 3", TimeRange.fromStartEnd(TIME_1100AM, TimeRange.END_OF_DAY, true),
+            Arrays.asList(PERSON_B)));
+
+    AvailabilitySnapshot snapshot = writeAndOpen(events);
+
+    Assert.assertEquals(2, snapshot.getAttendeeCount());
+    Assert.assertEquals(
+        Arrays.asList(TimeRange.fromStartEnd(TIME_0800AM, TIME_1000AM, false)),
+        snapshot.getBusyRanges(PERSON_A));
+    Assert.assertEquals(
+        Arrays.asList(TimeRange.fromStartEnd(TIME_0830AM, TIME_1000AM, false),
+            TimeRange.fromStartEnd(TIME_1100AM, TimeRange.END_OF_DAY, true)),
+        snapshot.getBusyRanges(PERSON_B));
+  }
+
+  @Test
+  public void answersBusyAndFreeQueries() throws IOException {
+    Collection<Event> events = Arrays.asList(
+        new Event("Event 1", TimeRange.fromStartEnd(TIME_0800AM, TIME_0900AM, false),
+            Arrays.asList(PERSON_A)));
+
+    AvailabilitySnapshot snapshot = writeAndOpen(events);
+
+    Assert.assertFalse(snapshot.isBusy(PERSON_A, TIME_0800AM - 1));
+    Assert.assertTrue(snapshot.isBusy(PERSON_A, TIME_0800AM));
+    Assert.assertTrue(snapshot.isBusy(PERSON_A, TIME_0900AM - 1));
+    Assert.assertFalse(snapshot.isBusy(PERSON_A, TIME_0900AM));
+    Assert.assertFalse(snapshot.isBusy(PERSON_C, TIME_0800AM));
+
+    Assert.assertTrue(
+        snapshot.isFree(PERSON_A, TimeRange.fromStartEnd(TIME_0900AM, TIME_1000AM, false)));
+    Assert.assertFalse(
+        snapshot.isFree(PERSON_A, TimeRange.fromStartEnd(TIME_0830AM, TIME_1000AM, false)));
+  }
+
+  @Test
+  public void emptySnapshot() throws IOException {
+    AvailabilitySnapshot snapshot = writeAndOpen(Collections.emptySet());
+
+    Assert.assertEquals(0, snapshot.getAttendeeCount());
+    Assert.assertEquals(Collections.emptyList(), snapshot.getBusyRanges(PERSON_A));
+  }
+
+  @Test
+  public void rewriteReplacesSnapshot() throws IOException {
+    Path path = folder.getRoot().toPath().resolve("availability.snapshot");
+    AvailabilitySnapshot.write(Arrays.asList(
+        new Event("Event 1", TimeRange.fromStartEnd(TIME_0800AM, TIME_0900AM, false),
+            Arrays.asList(PERSON_A))), path);
+    AvailabilitySnapshot.write(Arrays.asList(
+        new Event("Event 1", TimeRange.fromStartEnd(TIME_0800AM, TIME_0900AM, false),
+            Arrays.asList(PERSON_B))), path);
+
+    AvailabilitySnapshot snapshot = AvailabilitySnapshot.open(path);
+
+    Assert.assertFalse(snapshot.isBusy(PERSON_A, TIME_0800AM));
+    Assert.assertTrue(snapshot.isBusy(PERSON_B, TIME_0800AM));
+    // Only the snapshot itself is left behind, no temporary files.
+    Assert.assertEquals(1, folder.getRoot().list().length);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void rejectsOtherFiles() throws IOException {
+    Path path = folder.newFile("not-a-snapshot").toPath();
+    Files.write(path, new byte[] {1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12});
+
+    AvailabilitySnapshot.open(path);
+  }
+
+  @Test
+  public void heatmapMatchesEvents() throws IOException {
+    Collection<Event> events = Arrays.asList(
+        new Event("Event 1", TimeRange.fromStartEnd(TIME_0800AM, TIME_0900AM, false),
+            Arrays.asList(PERSON_A)),
+        new Event("Event 2", TimeRange.fromStartEnd(TIME_0830AM, TIME_1000AM, false),
+            Arrays.asList(PERSON_A, PERSON_B)),
+        new Event("Event 3", TimeRange.fromStartEnd(TIME_1100AM, TimeRange.END_OF_DAY, true),
+            Arrays.asList(PERSON_C)));
+    Collection<String> attendees = Arrays.asList(PERSON_A, PERSON_B, PERSON_C);
+
+    AvailabilitySnapshot snapshot = writeAndOpen(events);
+
+    Assert.assertArrayEquals(
+        AvailabilityHeatmap.fromEvents(events, attendees, 15).getRuns(),
+        AvailabilityHeatmap.fromSnapshot(snapshot, attendees, 15).getRuns());
+  }
+
+  private AvailabilitySnapshot writeAndOpen(Collection<Event> events) throws IOException {
+    Path path = folder.getRoot().toPath().resolve("availability.snapshot");
+    AvailabilitySnapshot.write(events, path);
+    return AvailabilitySnapshot.open(path);
+  }
+}
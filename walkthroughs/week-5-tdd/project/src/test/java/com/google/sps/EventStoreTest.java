@@ -0,0 +1,112 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class EventStoreTest {
+  private static final String PERSON_A = "Person A";
+
+  private static final int TIME_0800AM = TimeRange.getTimeInMinutes(8, 0);
+  private static final int TIME_0900AM = TimeRange.getTimeInMinutes(9, 0);
+
+  private static final Event EVENT_1 = newEvent("Event 1");
+  private static final Event EVENT_2 = newEvent("Event 2");
+  private static final Event EVENT_3 = newEvent("Event 3");
+
+  @Test
+  public void oldSnapshotIsNotAffectedByWrites() {
+    EventStore store = new EventStore(Arrays.asList(EVENT_1));
+    EventStore.Snapshot before = store.snapshot();
+
+    store.addAll(Arrays.asList(EVENT_2, EVENT_3));
+
+    Assert.assertEquals(Arrays.asList(EVENT_1), new ArrayList<>(before.getEvents()));
+    Assert.assertEquals(
+        Arrays.asList(EVENT_1, EVENT_2, EVENT_3), new ArrayList<>(store.snapshot().getEvents()));
+  }
+
+  @Test
+  public void versionIncreasesPerBatch() {
+    EventStore store = new EventStore(Collections.emptyList());
+    long initial = store.snapshot().getVersion();
+
+    store.addAll(Arrays.asList(EVENT_1, EVENT_2));
+    Assert.assertEquals(initial + 1, store.snapshot().getVersion());
+
+    // Empty batches don't publish a new snapshot.
+    store.addAll(Collections.emptyList());
+    Assert.assertEquals(initial + 1, store.snapshot().getVersion());
+
+    store.replaceAll(Arrays.asList(EVENT_3));
+    Assert.assertEquals(initial + 2, store.snapshot().getVersion());
+    Assert.assertEquals(Arrays.asList(EVENT_3), new ArrayList<>(store.snapshot().getEvents()));
+  }
+
+  @Test
+  public void manySmallBatchesKeepAllEvents() {
+    EventStore store = new EventStore(Collections.emptyList());
+    List<Event> expected = new ArrayList<>();
+    for (int i = 0; i < 500; i++) {
+      Event event = newEvent("Event " + i);
+      expected.add(event);
+      store.addAll(Arrays.asList(event));
+    }
+
+    Assert.assertEquals(expected, new ArrayList<>(store.snapshot().getEvents()));
+    Assert.assertEquals(500, store.snapshot().getEvents().size());
+  }
+
+  @Test
+  public void readersSeeWholeBatches() throws InterruptedException {
+    EventStore store = new EventStore(Collections.emptyList());
+    AtomicReference<String> failure = new AtomicReference<>();
+
+    Thread reader = new Thread(() -> {
+      for (int i = 0; i < 10000; i++) {
+        EventStore.Snapshot snapshot = store.snapshot();
+        int counted = 0;
+        for (Event event : snapshot.getEvents()) {
+          counted++;
+        }
+        // Every batch has two events, so a torn read would show an odd count.
+        if (counted % 2 != 0 || counted != snapshot.getEvents().size()) {
+          failure.set("saw " + counted + " events at version " + snapshot.getVersion());
+        }
+      }
+    });
+    reader.start();
+    for (int i = 0; i < 1000; i++) {
+      store.addAll(Arrays.asList(EVENT_1, EVENT_2));
+    }
+    reader.join();
+
+    Assert.assertNull(failure.get());
+  }
+
+  private static Event newEvent(String title) {
+    return new Event(title, TimeRange.fromStartEnd(TIME_0800AM, TIME_0900AM, false),
+        Arrays.asList(PERSON_A));
+  }
+}
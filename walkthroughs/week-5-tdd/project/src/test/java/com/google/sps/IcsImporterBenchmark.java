@@ -0,0 +1,100 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Collections;
+
+/**
+ * Measures how fast {@link IcsImporter} imports a large generated .ics file. This is not run as
+ * part of the unit tests. Run it after {@code mvn test-compile} with:
+ *
+ * <pre>
+ *   java -cp target/classes:target/test-classes com.google.sps.IcsImporterBenchmark [events]
+ * </pre>
+ */
+public final class IcsImporterBenchmark {
+  private static final int WARMUP_ROUNDS = 3;
+  private static final int MEASURED_ROUNDS = 5;
+
+  public static void main(String[] args) throws IOException {
+    int eventCount = args.length > 0 ? Integer.parseInt(args[0]) : 500_000;
+    Path ics = Files.createTempFile("benchmark", ".ics");
+    try {
+      generate(ics, eventCount);
+      System.out.printf("Generated %d events (%d MB)%n", eventCount, Files.size(ics) >> 20);
+
+      for (int round = 0; round < WARMUP_ROUNDS + MEASURED_ROUNDS; round++) {
+        EventStore store = new EventStore(Collections.emptyList());
+        IcsImporter importer =
+            new IcsImporter(store, LocalDate.of(2020, 1, 1), ZoneId.of("America/New_York"), 4096);
+
+        long start = System.nanoTime();
+        int imported;
+        try (BufferedReader reader = Files.newBufferedReader(ics, StandardCharsets.UTF_8)) {
+          imported = importer.importFrom(reader);
+        }
+        long elapsed = System.nanoTime() - start;
+
+        if (round >= WARMUP_ROUNDS) {
+          System.out.printf("Imported %d events in %d ms (%.0f events/s)%n",
+              imported, elapsed / 1_000_000, imported * 1e9 / elapsed);
+        }
+      }
+    } finally {
+      Files.deleteIfExists(ics);
+    }
+  }
+
+  /** Writes {@code eventCount} events spread over the day with a mix of time formats. */
+  private static void generate(Path path, int eventCount) throws IOException {
+    try (BufferedWriter out = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+      out.write("BEGIN:VCALENDAR\r\nVERSION:2.0\r\n");
+      for (int i = 0; i < eventCount; i++) {
+        int hour = i % 23;
+        int minute = (i * 7) % 60;
+        out.write("BEGIN:VEVENT\r\n");
+        out.write("UID:event-" + i + "@example.com\r\n");
+        out.write(
+            "SUMMARY:Generated meeting number " + i + " with a description long enough to\r\n");
+        out.write(" be folded onto a second line\r\n");
+        if (i % 3 == 0) {
+          out.write(String.format("DTSTART:20200101T%02d%02d00Z\r\n", hour, minute));
+          out.write(String.format("DTEND:20200101T%02d%02d00Z\r\n", hour + 1, minute));
+        } else if (i % 3 == 1) {
+          out.write(String.format(
+              "DTSTART;TZID=Europe/Berlin:20200101T%02d%02d00\r\n", hour, minute));
+          out.write("DURATION:PT45M\r\n");
+        } else {
+          out.write(String.format("DTSTART:20200101T%02d%02d00\r\n", hour, minute));
+          out.write(String.format("DTEND:20200101T%02d%02d00\r\n", hour + 1, minute));
+        }
+        out.write("ATTENDEE;CN=Person " + (i % 500) + ":mailto:person" + (i % 500)
+            + "@example.com\r\n");
+        out.write("ATTENDEE;CN=Person " + ((i + 1) % 500) + ":mailto:person" + ((i + 1) % 500)
+            + "@example.com\r\n");
+        out.write("END:VEVENT\r\n");
+      }
+      out.write("END:VCALENDAR\r\n");
+    }
+  }
+}
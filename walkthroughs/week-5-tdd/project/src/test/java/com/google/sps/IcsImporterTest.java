@@ -0,0 +1,248 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class IcsImporterTest {
+  private static final LocalDate DAY = LocalDate.of(2020, 1, 1);
+  private static final ZoneId ZONE = ZoneId.of("America/New_York");
+
+  private static final int TIME_0900AM = TimeRange.getTimeInMinutes(9, 0);
+  private static final int TIME_0930AM = TimeRange.getTimeInMinutes(9, 30);
+  private static final int TIME_1000AM = TimeRange.getTimeInMinutes(10, 0);
+  private static final int TIME_1100AM = TimeRange.getTimeInMinutes(11, 0);
+
+  private EventStore store;
+  private IcsImporter importer;
+
+  @Before
+  public void setUp() {
+    store = new EventStore(Collections.emptyList());
+    importer = new IcsImporter(store, DAY, ZONE, 2);
+  }
+
+  @Test
+  public void importsLocalEvent() throws IOException {
+    int imported = importer.importFrom(new StringReader(calendar(
+        "BEGIN:VEVENT",
+        "SUMMARY:Team Sync",
+        "DTSTART:20200101T090000",
+        "DTEND:20200101T100000",
+        "ATTENDEE;CN=Amelia:mailto:amelia@example.com",
+        "ATTENDEE:mailto:ava@example.com",
+        "END:VEVENT")));
+
+    Assert.assertEquals(1, imported);
+    Assert.assertEquals(
+        Arrays.asList(new Event("Team Sync",
+            TimeRange.fromStartEnd(TIME_0900AM, TIME_1000AM, false),
+            Arrays.asList("Amelia", "ava@example.com"))),
+        events());
+  }
+
+  @Test
+  public void convertsUtcAndTzidToImporterZone() throws IOException {
+    importer.importFrom(new StringReader(calendar(
+        "BEGIN:VEVENT",
+        "SUMMARY:UTC",
+        // 14:00 UTC is 09:00 in New York in January.
+        "DTSTART:20200101T140000Z",
+        "DTEND:20200101T150000Z",
+        "END:VEVENT",
+        "BEGIN:VEVENT",
+        "SUMMARY:Berlin",
+        // 17:00 in Berlin is 11:00 in New York in January.
+        "DTSTART;TZID=Europe/Berlin:20200101T170000",
+        "DURATION:PT30M",
+        "END:VEVENT")));
+
+    List<Event> events = events();
+    Assert.assertEquals(TimeRange.fromStartEnd(TIME_0900AM, TIME_1000AM, false),
+        events.get(0).getWhen());
+    Assert.assertEquals(TimeRange.fromStartDuration(TIME_1100AM, 30), events.get(1).getWhen());
+  }
+
+  @Test
+  public void unfoldsLongLines() throws IOException {
+    importer.importFrom(new StringReader(calendar(
+        "BEGIN:VEVENT",
+        "SUMMARY:Quarterly planning,",
+        "  part two",
+        "DTSTART:20200101T090000",
+        "DTEND:20200101T093000",
+        "ATTENDEE;CN=\"Olivia",
+        "\t: Product\":mailto:olivia@example.com",
+        "END:VEVENT")));
+
+    Event event = events().get(0);
+    Assert.assertEquals("Quarterly planning, part two", event.getTitle());
+    Assert.assertEquals(new HashSet<>(Arrays.asList("Olivia: Product")), event.getAttendees());
+    Assert.assertEquals(TimeRange.fromStartEnd(TIME_0900AM, TIME_0930AM, false), event.getWhen());
+  }
+
+  @Test
+  public void clipsAndSkipsEventsOutsideTheDay() throws IOException {
+    int imported = importer.importFrom(new StringReader(calendar(
+        "BEGIN:VEVENT",
+        "SUMMARY:Yesterday",
+        "DTSTART:20191231T090000",
+        "DTEND:20191231T100000",
+        "END:VEVENT",
+        "BEGIN:VEVENT",
+        "SUMMARY:Overnight",
+        "DTSTART:20191231T220000",
+        "DTEND:20200101T010000",
+        "END:VEVENT",
+        "BEGIN:VEVENT",
+        "SUMMARY:Holiday",
+        "DTSTART;VALUE=DATE:20200101",
+        "END:VEVENT")));
+
+    List<Event> events = events();
+    Assert.assertEquals(2, imported);
+    Assert.assertEquals(TimeRange.fromStartDuration(0, 60), events.get(0).getWhen());
+    Assert.assertEquals(TimeRange.WHOLE_DAY, events.get(1).getWhen());
+  }
+
+  @Test
+  public void addsEventsInBatches() throws IOException {
+    List<String> lines = new ArrayList<>();
+    for (int i = 0; i < 5; i++) {
+      lines.addAll(Arrays.asList("BEGIN:VEVENT", "SUMMARY:Event " + i,
+          "DTSTART:20200101T090000", "DTEND:20200101T100000", "END:VEVENT"));
+    }
+    long before = store.snapshot().getVersion();
+
+    int imported = importer.importFrom(new StringReader(calendar(lines.toArray(new String[0]))));
+
+    // Batches of two: 2 + 2 + 1.
+    Assert.assertEquals(5, imported);
+    Assert.assertEquals(5, store.snapshot().getEvents().size());
+    Assert.assertEquals(before + 3, store.snapshot().getVersion());
+  }
+
+  @Test
+  public void skipsMalformedEvents() throws IOException {
+    int imported = importer.importFrom(new StringReader(calendar(
+        "BEGIN:VEVENT", "SUMMARY:Bad date", "DTSTART:2020-01-01", "END:VEVENT",
+        "BEGIN:VEVENT", "SUMMARY:Bad zone", "DTSTART;TZID=Nowhere/Special:20200101T090000",
+        "END:VEVENT",
+        "BEGIN:VEVENT", "SUMMARY:Bad duration", "DTSTART:20200101T090000", "DURATION:PT1X",
+        "END:VEVENT",
+        "BEGIN:VEVENT", "SUMMARY:Good", "DTSTART:20200101T090000", "DTEND:20200101T100000",
+        "END:VEVENT")));
+
+    Assert.assertEquals(1, imported);
+    Assert.assertEquals(3, importer.getSkippedCount());
+    Assert.assertEquals("Good", events().get(0).getTitle());
+  }
+
+  @Test
+  public void parsesWeekDurations() throws IOException {
+    importer.importFrom(new StringReader(calendar(
+        "BEGIN:VEVENT",
+        "SUMMARY:Offsite",
+        "DTSTART:20191231T090000",
+        "DURATION:P1W",
+        "END:VEVENT")));
+
+    Assert.assertEquals(TimeRange.WHOLE_DAY, events().get(0).getWhen());
+  }
+
+  @Test
+  public void ignoresPropertiesOfNestedComponents() throws IOException {
+    importer.importFrom(new StringReader(calendar(
+        "BEGIN:VEVENT",
+        "SUMMARY:Team Sync",
+        "DTSTART:20200101T090000",
+        "BEGIN:VALARM",
+        "ACTION:EMAIL",
+        "TRIGGER:-PT15M",
+        "DURATION:PT5M",
+        "ATTENDEE:mailto:reminders@example.com",
+        "END:VALARM",
+        "DURATION:PT1H",
+        "ATTENDEE;CN=Amelia:mailto:amelia@example.com",
+        "END:VEVENT")));
+
+    Event event = events().get(0);
+    Assert.assertEquals(TimeRange.fromStartEnd(TIME_0900AM, TIME_1000AM, false), event.getWhen());
+    Assert.assertEquals(new HashSet<>(Arrays.asList("Amelia")), event.getAttendees());
+  }
+
+  @Test(expected = IOException.class)
+  public void rejectsOverlongLines() throws IOException {
+    char[] summary = new char[100 * 1024];
+    Arrays.fill(summary, 'x');
+    importer.importFrom(new StringReader(calendar(
+        "BEGIN:VEVENT", "SUMMARY:" + new String(summary), "END:VEVENT")));
+  }
+
+  @Test(expected = IOException.class)
+  public void rejectsEndlessLinesWithoutReadingThemWhole() throws IOException {
+    Reader endless = new Reader() {
+      @Override
+      public int read(char[] buffer, int offset, int length) {
+        Arrays.fill(buffer, offset, offset + length, 'x');
+        return length;
+      }
+
+      @Override
+      public void close() {}
+    };
+    importer.importFrom(endless);
+  }
+
+  @Test
+  public void acceptsBareLineFeedsAndCarriageReturns() throws IOException {
+    String ics = calendar(
+        "BEGIN:VEVENT",
+        "SUMMARY:Standup",
+        "DTSTART:20200101T090000",
+        "DTEND:20200101T100000",
+        "END:VEVENT");
+
+    Assert.assertEquals(1, importer.importFrom(new StringReader(ics.replace("\r\n", "\n"))));
+    Assert.assertEquals(1, importer.importFrom(new StringReader(ics.replace("\r\n", "\r"))));
+  }
+
+  private List<Event> events() {
+    return new ArrayList<>(store.snapshot().getEvents());
+  }
+
+  private static String calendar(String... lines) {
+    StringBuilder ics = new StringBuilder("BEGIN:VCALENDAR\r\nVERSION:2.0\r\n");
+    for (String line : lines) {
+      ics.append(line).append("\r\n");
+    }
+    return ics.append("END:VCALENDAR\r\n").toString();
+  }
+}
@@ -0,0 +1,169 @@
+// Copyright 2019 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package com.google.sps;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+@RunWith(JUnit4.class)
+public final class ShardedCalendarTest {
+  private static final int SHARD_COUNT = 4;
+
+  private static final String PERSON_A = "Person A";
+  private static final String PERSON_B = "Person B";
+  private static final String PERSON_C = "Person C";
+
+  private static final int TIME_0800AM = TimeRange.getTimeInMinutes(8, 0);
+  private static final int TIME_0830AM = TimeRange.getTimeInMinutes(8, 30);
+  private static final int TIME_0900AM = TimeRange.getTimeInMinutes(9, 0);
+  private static final int TIME_1000AM = TimeRange.getTimeInMinutes(10, 0);
+
+  private static final int DURATION_30_MINUTES = 30;
+  private static final int DURATION_60_MINUTES = 60;
+
+  @Test
+  public void mergesBusyRangesAcrossShards() throws IOException {
+    try (ShardedCalendar calendar = new ShardedCalendar(inMemoryShards())) {
+      addExampleEvents(calendar);
+
+      ShardedCalendar.Result result = calendar.query(
+          new MeetingRequest(Arrays.asList(PERSON_A, PERSON_B), DURATION_30_MINUTES));
+
+      Assert.assertEquals(
+          Arrays.asList(TimeRange.fromStartEnd(TimeRange.START_OF_DAY, TIME_0800AM, false),
+              TimeRange.fromStartEnd(TIME_1000AM, TimeRange.END_OF_DAY, true)),
+          result.getOptions());
+    }
+  }
+
+  @Test
+  public void respectsDuration() throws IOException {
+    try (ShardedCalendar calendar = new ShardedCalendar(inMemoryShards())) {
+      calendar.add(new Event("Event 1", TimeRange.fromStartEnd(TIME_0800AM, TIME_0830AM, false),
+          Arrays.asList(PERSON_A)));
+      calendar.add(new Event("Event 2", TimeRange.fromStartEnd(TIME_0900AM, TIME_1000AM, false),
+          Arrays.asList(PERSON_B)));
+
+      ShardedCalendar.Result result = calendar.query(
+          new MeetingRequest(Arrays.asList(PERSON_A, PERSON_B), DURATION_60_MINUTES));
+
+      // The half hour between the events is too short.
+      Assert.assertEquals(
+          Arrays.asList(TimeRange.fromStartEnd(TimeRange.START_OF_DAY, TIME_0800AM, false),
+              TimeRange.fromStartEnd(TIME_1000AM, TimeRange.END_OF_DAY, true)),
+          result.getOptions());
+    }
+  }
+
+  @Test
+  public void onlyQueriesOwningShards() throws IOException {
+    try (ShardedCalendar calendar = new ShardedCalendar(inMemoryShards())) {
+      ShardedCalendar.Result result =
+          calendar.query(new MeetingRequest(Arrays.asList(PERSON_C), DURATION_30_MINUTES));
+
+      Assert.assertEquals(
+          Collections.singleton(ShardedCalendar.shardFor(PERSON_C, SHARD_COUNT)),
+          result.getShardLatencyNanos().keySet());
+      Assert.assertEquals(Arrays.asList(TimeRange.WHOLE_DAY), result.getOptions());
+    }
+  }
+
+  @Test
+  public void remoteShardsGiveSameAnswer() throws IOException {
+    List<CalendarShardServer> servers = new ArrayList<>();
+    List<RemoteCalendarShard> remotes = new ArrayList<>();
+    try {
+      for (int i = 0; i < SHARD_COUNT; i++) {
+        CalendarShardServer server = new CalendarShardServer(new InMemoryCalendarShard(), 0);
+        servers.add(server);
+        remotes.add(new RemoteCalendarShard(server.getPort()));
+      }
+
+      try (ShardedCalendar calendar = new ShardedCalendar(new ArrayList<CalendarShard>(remotes))) {
+        addExampleEvents(calendar);
+
+        ShardedCalendar.Result result = calendar.query(
+            new MeetingRequest(Arrays.asList(PERSON_A, PERSON_B), DURATION_30_MINUTES));
+
+        Assert.assertEquals(
+            Arrays.asList(TimeRange.fromStartEnd(TimeRange.START_OF_DAY, TIME_0800AM, false),
+                TimeRange.fromStartEnd(TIME_1000AM, TimeRange.END_OF_DAY, true)),
+            result.getOptions());
+      }
+    } finally {
+      for (RemoteCalendarShard remote : remotes) {
+        remote.close();
+      }
+      for (CalendarShardServer server : servers) {
+        server.close();
+      }
+    }
+  }
+
+  @Test
+  public void badRequestGetsErrorReply() throws IOException {
+    try (CalendarShardServer server = new CalendarShardServer(new InMemoryCalendarShard(), 0);
+        Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort())) {
+      socket.setSoTimeout(10_000);
+      BufferedReader in = new BufferedReader(
+          new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+      PrintWriter out = new PrintWriter(
+          new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8), true);
+
+      out.println("{\"op\": \"busyRanges\"");
+      Assert.assertTrue(in.readLine().startsWith("\"bad request"));
+      out.println("{\"op\": \"busyRanges\"}");
+      Assert.assertTrue(in.readLine().startsWith("\"bad request"));
+
+      // The connection is still usable after an error.
+      out.println("{\"op\": \"busyRanges\", \"attendees\": []}");
+      Assert.assertEquals("[]", in.readLine());
+    }
+  }
+
+  private static List<CalendarShard> inMemoryShards() {
+    List<CalendarShard> shards = new ArrayList<>();
+    for (int i = 0; i < SHARD_COUNT; i++) {
+      shards.add(new InMemoryCalendarShard());
+    }
+    return shards;
+  }
+
+  private static void addExampleEvents(ShardedCalendar calendar) throws IOException {
+    Collection<Event> events = Arrays.asList(
+        new Event("Event 1", TimeRange.fromStartEnd(TIME_0800AM, TIME_0900AM, false),
+            Arrays.asList(PERSON_A, PERSON_C)),
+        new Event("Event 2", TimeRange.fromStartEnd(TIME_0830AM, TIME_1000AM, false),
+            Arrays.asList(PERSON_B)));
+    for (Event event : events) {
+      calendar.add(event);
+    }
+  }
+}